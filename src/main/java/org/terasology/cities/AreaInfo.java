@@ -18,21 +18,57 @@
 
 import java.awt.Rectangle;
 import java.awt.Shape;
-import java.awt.geom.Path2D;
+import java.util.List;
 
 import org.terasology.math.Vector2i;
 
+import org.terasology.cities.raster.ShapeScanner;
 import org.terasology.commonworld.heightmap.HeightMap;
 
+import com.google.common.collect.Lists;
+
 /**
- * Contains information on whether an area is blocked or not
+ * Contains information on whether an area is blocked or not (thread-safe).
+ * If an area of interest is given, terrain obstacles and blocked shapes are rasterized into
+ * a bit grid, and rectangle queries are answered with four lookups in a summed-area table
+ * of that grid. A grid cell is blocked if a shape touches any part of it. The terrain is
+ * sampled when the grid is queried for the first time; the table is rebuilt lazily - only
+ * from the first row that changed since the last query.
+ * Queries outside of that area fall back to sampling the height map and testing the shapes
+ * that reach beyond the grid one by one.
  */
 public class AreaInfo {
 
-    private final HeightMap heightMap;  
-    private final Path2D blockedArea = new Path2D.Double();
+    private final HeightMap heightMap;
     private final CityTerrainComponent config;
-    
+
+    /**
+     * The blocked shapes that are not completely covered by the grid (guarded by this)
+     */
+    private final List<Shape> blockedShapes = Lists.newArrayList();
+
+    /**
+     * The area that is covered by the grid or <code>null</code>
+     */
+    private final Rectangle gridArea;
+
+    /**
+     * One bit per blocked or non-land cell, every row starts at a new word (guarded by this)
+     */
+    private final long[] occupiedBits;
+
+    private final int wordsPerRow;
+
+    /**
+     * Summed-area table of occupied cells, (width + 1) * (height + 1) entries (guarded by this)
+     */
+    private int[] occupiedSums;
+
+    /**
+     * The first grid row whose sums are outdated (guarded by this)
+     */
+    private int dirtyRow;
+
     /**
      * @param config the world config (sea level, etc)
      * @param hm the height map to use
@@ -41,15 +77,53 @@ public AreaInfo(CityTerrainComponent config, HeightMap hm) {
 
         this.heightMap = hm;
         this.config = config;
+        this.gridArea = null;
+        this.occupiedBits = null;
+        this.wordsPerRow = 0;
     }
 
     /**
-     * Marks an area as blocked 
+     * @param config the world config (sea level, etc)
+     * @param hm the height map to use
+     * @param area the area where most queries are expected (e.g. the city area)
+     */
+    public AreaInfo(CityTerrainComponent config, HeightMap hm, Rectangle area) {
+
+        this.heightMap = hm;
+        this.config = config;
+        this.gridArea = new Rectangle(area);
+        this.wordsPerRow = (area.width + 63) / 64;
+        this.occupiedBits = new long[wordsPerRow * area.height];
+    }
+
+    /**
+     * Marks an area as blocked
      * @param shape the area shape to add
      */
-    public void addBlockedArea(Shape shape) {
-        
-        blockedArea.append(shape, false);
+    public synchronized void addBlockedArea(Shape shape) {
+        Rectangle bounds = shape.getBounds();
+
+        if (gridArea == null || !gridArea.contains(bounds)) {
+            blockedShapes.add(shape);
+        }
+
+        if (gridArea == null) {
+            return;
+        }
+
+        Rectangle clip = gridArea.intersection(bounds);
+        if (clip.isEmpty()) {
+            return;
+        }
+
+        // cells that are only partly covered must be blocked, too
+        new ShapeScanner(shape).scanCovered(clip, new ShapeScanner.SpanVisitor() {
+
+            @Override
+            public void span(int z, int x0, int x1) {
+                setOccupied(z - gridArea.y, x0 - gridArea.x, x1 - gridArea.x);
+            }
+        });
     }
 
     /**
@@ -57,7 +131,16 @@ public void addBlockedArea(Shape shape) {
      * @return true if the rect intersects blocked area or terrain obstacles
      */
     public boolean isBlocked(Rectangle rc) {
-        // TODO: check corners first 
+        if (rc.isEmpty()) {
+            return false;
+        }
+
+        if (gridArea != null && gridArea.contains(rc)) {
+            int x0 = rc.x - gridArea.x;
+            int z0 = rc.y - gridArea.y;
+            return countOccupied(x0, z0, x0 + rc.width, z0 + rc.height) > 0;
+        }
+
         for (int z = rc.y; z < rc.y + rc.height; z++) {
             for (int x = rc.x; x < rc.x + rc.width; x++) {
                 if (getTerrainType(x, z) != TerrainType.LAND) {
@@ -65,21 +148,37 @@ public boolean isBlocked(Rectangle rc) {
                 }
             }
         }
-        
-        return blockedArea.intersects(rc);
+
+        // shapes that are completely inside the grid can only be hit in the grid part of the rect
+        if (gridArea != null) {
+            Rectangle part = gridArea.intersection(rc);
+            if (!part.isEmpty()) {
+                int x0 = part.x - gridArea.x;
+                int z0 = part.y - gridArea.y;
+                if (countOccupied(x0, z0, x0 + part.width, z0 + part.height) > 0) {
+                    return true;
+                }
+            }
+        }
+
+        return intersectsShape(rc);
     }
-    
+
     /**
      * @param x the x coordinate
      * @param z the z coordinate
      * @return true if blocked, false otherwise
      */
     public boolean isBlocked(int x, int z) {
+        if (gridArea != null && gridArea.contains(x, z)) {
+            return isOccupied(x - gridArea.x, z - gridArea.y);
+        }
+
         if (getTerrainType(x, z) != TerrainType.LAND) {
             return true;
         }
-        
-        return blockedArea.contains(x, z);
+
+        return containsShape(x, z);
     }
 
     /**
@@ -89,25 +188,117 @@ public boolean isBlocked(int x, int z) {
     public boolean isBlocked(Vector2i pos) {
         return isBlocked(pos.x, pos.y);
     }
-    
+
+    private synchronized boolean intersectsShape(Rectangle rc) {
+        for (Shape shape : blockedShapes) {
+            if (shape.getBounds().intersects(rc) && shape.intersects(rc)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private synchronized boolean containsShape(int x, int z) {
+        for (Shape shape : blockedShapes) {
+            if (shape.contains(x, z)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Grid-local coordinates, max. values are exclusive
+     */
+    private synchronized int countOccupied(int x0, int z0, int x1, int z1) {
+        updateSums();
+
+        int stride = gridArea.width + 1;
+        return occupiedSums[z1 * stride + x1] - occupiedSums[z0 * stride + x1]
+             - occupiedSums[z1 * stride + x0] + occupiedSums[z0 * stride + x0];
+    }
+
+    /**
+     * Grid-local coordinates
+     */
+    private synchronized boolean isOccupied(int x, int z) {
+        updateSums();
+
+        return (occupiedBits[z * wordsPerRow + (x >>> 6)] & (1L << (x & 63))) != 0;
+    }
+
+    /**
+     * Samples the terrain on first use and updates the sums of all rows that have changed.
+     * Must be called while holding the lock.
+     */
+    private void updateSums() {
+        int width = gridArea.width;
+        int height = gridArea.height;
+        int stride = width + 1;
+
+        if (occupiedSums == null) {
+            for (int z = 0; z < height; z++) {
+                for (int x = 0; x < width; x++) {
+                    if (getTerrainType(gridArea.x + x, gridArea.y + z) != TerrainType.LAND) {
+                        occupiedBits[z * wordsPerRow + (x >>> 6)] |= 1L << (x & 63);
+                    }
+                }
+            }
+            occupiedSums = new int[stride * (height + 1)];
+            dirtyRow = 0;
+        }
+
+        for (int z = dirtyRow; z < height; z++) {
+            int base = z * wordsPerRow;
+            int rowSum = 0;
+            for (int x = 0; x < width; x++) {
+                rowSum += (int) (occupiedBits[base + (x >>> 6)] >>> (x & 63)) & 1;
+                occupiedSums[(z + 1) * stride + x + 1] = occupiedSums[z * stride + x + 1] + rowSum;
+            }
+        }
+        dirtyRow = height;
+    }
+
+    /**
+     * Grid-local coordinates, x1 is exclusive. Must be called while holding the lock.
+     */
+    private void setOccupied(int z, int x0, int x1) {
+        int base = z * wordsPerRow;
+        int firstWord = x0 >>> 6;
+        int lastWord = (x1 - 1) >>> 6;
+
+        for (int w = firstWord; w <= lastWord; w++) {
+            long mask = -1L;
+            if (w == firstWord) {
+                mask &= -1L << (x0 & 63);
+            }
+            if (w == lastWord) {
+                mask &= -1L >>> (63 - ((x1 - 1) & 63));
+            }
+            occupiedBits[base + w] |= mask;
+        }
+
+        dirtyRow = Math.min(dirtyRow, z);
+    }
+
     private TerrainType getTerrainType(int x, int z) {
         int y = heightMap.apply(x, z);
-        
+
         if (y <= config.getSeaLevel()) {
             return TerrainType.WATER;
         }
-        
+
         if (y >= config.getSnowLine()) {
             return TerrainType.SNOW;
         }
-        
+
         return TerrainType.LAND;
     }
-    
+
     private static enum TerrainType {
         LAND,
         WATER,
         SNOW
     }
-        
+
 }
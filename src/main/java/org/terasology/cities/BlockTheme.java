@@ -16,7 +16,6 @@
 
 package org.terasology.cities;
 
-import java.util.Map;
 import java.util.Set;
 
 import org.slf4j.Logger;
@@ -30,28 +29,34 @@
 import org.terasology.world.block.family.BlockFamily;
 
 import com.google.common.base.Function;
-import com.google.common.collect.Maps;
 
 /**
- * A mapping from block types (as defined in {@link BlockTypes}) to actual blocks
+ * A mapping from block types (as defined in {@link BlockTypes}) to actual blocks.
+ * Blocks are resolved when they are registered and stored in tables that are
+ * indexed by the ordinal of the block type (and the side bit mask for families).
  */
 public final class BlockTheme implements Function<BlockTypes, Block> {
 
     private static final Logger logger = LoggerFactory.getLogger(BlockTheme.class);
 
-    private final Map<BlockTypes, Block> map = Maps.newConcurrentMap();
-    private final Map<BlockTypes, BlockFamily> familyMap = Maps.newConcurrentMap();
+    /**
+     * The number of different side bit masks (6 sides)
+     */
+    private static final int SIDE_MASKS = 64;
+
+    private final Block[] blocks = new Block[BlockTypes.values().length];
+    private final Block[][] familyBlocks = new Block[BlockTypes.values().length][];
     private final BlockManager blockManager = CoreRegistry.get(BlockManager.class);
     private final Block defaultBlock;
-    private final BlockFamily defaultFamily;
+    private final Block[] defaultFamilyBlocks;
 
     /**
      * Setup the mapping with defaults 
      */
     public BlockTheme() {
-        map.put(BlockTypes.AIR, BlockManager.getAir());
+        blocks[BlockTypes.AIR.ordinal()] = BlockManager.getAir();
         defaultBlock = blockManager.getBlock("Cities:pink");
-        defaultFamily = blockManager.getBlockFamily("Cities:pink");
+        defaultFamilyBlocks = compile(blockManager.getBlockFamily("Cities:pink"));
     }
 
     /**
@@ -66,36 +71,38 @@ public void register(BlockTypes blockType, String blockUri) {
             block = defaultBlock;
         } 
 
-        map.put(blockType, block);
+        blocks[blockType.ordinal()] = block;
     }
 
     /**
+     * Resolves the blocks for all side combinations of the family
      * @param blockType the block type (as defined in BlockTypes} 
      * @param blockUri the block uri
      */
     public void registerFamily(BlockTypes blockType, String blockUri) {
-        BlockFamily block = blockManager.getBlockFamily(blockUri);
+        BlockFamily family = blockManager.getBlockFamily(blockUri);
         
-        if (block == null) {
+        if (family == null) {
             logger.warn("Could not resolve block URI \"{}\" - using default", blockUri);
-            block = defaultFamily;
-        } 
-
-        familyMap.put(blockType, block);
+            familyBlocks[blockType.ordinal()] = defaultFamilyBlocks;
+        } else {
+            familyBlocks[blockType.ordinal()] = compile(family);
+        }
     }
     
     /**
      * Remove blockType from the mapping
      * @param blockType the block type (as defined in BlockTypes} 
      */
-    public void unregister(String blockType) {
-        map.remove(blockType);
+    public void unregister(BlockTypes blockType) {
+        blocks[blockType.ordinal()] = null;
+        familyBlocks[blockType.ordinal()] = null;
     }
 
     @Override
     public Block apply(BlockTypes input) {
 
-        Block block = map.get(input);
+        Block block = blocks[input.ordinal()];
 
         if (block == null) {
             block = defaultBlock;
@@ -111,24 +118,43 @@ public Block apply(BlockTypes input) {
      * @return the block
      */
     public Block apply(BlockTypes input, Set<Side> side) {
+        return apply(input, SideBitFlag.getSides(side));
+    }
+
+    /**
+     * @param input the block type
+     * @param sides the connected sides as bit mask (see {@link SideBitFlag})
+     * @return the block
+     */
+    public Block apply(BlockTypes input, byte sides) {
 
-        BlockFamily family = familyMap.get(input);
+        Block[] table = familyBlocks[input.ordinal()];
 
-        if (family == null) {
-            family = defaultFamily;
+        if (table == null) {
+            table = defaultFamilyBlocks;
             logger.warn("Could not resolve block type \"{}\" - using default", input);
         }
 
+        return table[sides & (SIDE_MASKS - 1)];
+    }
+
+    private static Block[] compile(BlockFamily family) {
+        Block[] table = new Block[SIDE_MASKS];
+
         BlockUri familyUri = family.getURI().getFamilyUri();
         String identifier = family.getURI().getIdentifier().toString();
-        byte flags = SideBitFlag.getSides(side);
-        BlockUri blockUri = new BlockUri(familyUri, identifier + flags);
-        Block block = family.getBlockFor(blockUri);
-        
-        if (block == null) {
-            block = family.getArchetypeBlock();
+
+        for (int flags = 0; flags < SIDE_MASKS; flags++) {
+            BlockUri blockUri = new BlockUri(familyUri, identifier + flags);
+            Block block = family.getBlockFor(blockUri);
+
+            if (block == null) {
+                block = family.getArchetypeBlock();
+            }
+
+            table[flags] = block;
         }
-        
-        return block;
+
+        return table;
     }
 }
@@ -17,6 +17,7 @@
 package org.terasology.cities;
 
 import org.terasology.entitySystem.Component;
+import org.terasology.rendering.nui.properties.Checkbox;
 import org.terasology.rendering.nui.properties.Range;
 
 /**
@@ -38,6 +39,9 @@ public class CitySpawnComponent implements Component {
     
     @Range(label = "Minimum distance between towns", min = 100, max = 1000, increment = 10, precision = 1)
     private double maxCityDistance = 750d;
+
+    @Checkbox(label = "Sparse Roads", description = "Check to connect only neighboring towns instead of all towns in range")
+    private boolean sparseRoads;
     
     /**
      * @return the minimal number of settlements per sector
@@ -72,5 +76,12 @@ public int getMaxCityRadius() {
      */
     public double getMaxConnectedCitiesDistance() {
         return maxCityDistance;
-    }    
+    }
+
+    /**
+     * @return true if only relative neighbors are connected, false if all settlements in range are connected
+     */
+    public boolean isSparseRoads() {
+        return sparseRoads;
+    }
 }
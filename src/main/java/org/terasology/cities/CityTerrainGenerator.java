@@ -16,45 +16,64 @@
 
 package org.terasology.cities;
 
+import java.awt.Rectangle;
+import java.nio.file.Path;
 import java.util.Collections;
 import java.util.Map;
-import java.util.Set;
 
-import org.terasology.cities.model.City;
-import org.terasology.cities.model.Road;
+import org.terasology.cities.common.CachingFunction;
+import org.terasology.cities.metrics.PipelineStage;
 import org.terasology.cities.raster.Brush;
 import org.terasology.cities.raster.ChunkBrush;
 import org.terasology.cities.raster.RasterRegistry;
+import org.terasology.cities.raster.RecordingBrush;
+import org.terasology.cities.raster.RoadCorridor;
+import org.terasology.cities.raster.SectorElements;
 import org.terasology.cities.raster.TerrainInfo;
-import org.terasology.cities.raster.standard.RoadRasterizer;
+import org.terasology.cities.raster.standard.RoadCorridorRasterizer;
 import org.terasology.cities.raster.standard.StandardRegistry;
-import org.terasology.commonworld.Orientation;
 import org.terasology.commonworld.Sector;
 import org.terasology.commonworld.Sectors;
 import org.terasology.commonworld.heightmap.HeightMap;
-import org.terasology.commonworld.heightmap.HeightMaps;
+import org.terasology.engine.paths.PathManager;
+import org.terasology.math.Vector2i;
+import org.terasology.world.chunks.ChunkConstants;
 import org.terasology.world.chunks.CoreChunk;
 import org.terasology.world.generator.ChunkGenerationPass;
 
-import com.google.common.collect.Sets;
+import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import com.google.common.cache.LoadingCache;
 
 /**
  * Generates roads and settlements on top of a given terrain
  */
 public class CityTerrainGenerator implements ChunkGenerationPass {
 
+    private static final long CITY_DRAWING_CACHE_SIZE = 32;
+
     private final HeightMap heightMap;
 
+    private final CityTerrainComponent terrainConfig;
+
+    private final CitySpawnComponent spawnConfig;
+
     private final BlockTheme theme = new BlockTheme();
     private WorldFacade facade;
 
+    private LoadingCache<Sector, RecordingBrush> cityDrawings;
+
     // private WorldBiomeProvider worldBiomeProvider;
 
     /**
      * @param heightMap the height map to use
+     * @param terrainConfig the terrain configuration
+     * @param spawnConfig the city spawn configuration
      */
-    public CityTerrainGenerator(HeightMap heightMap) {
+    public CityTerrainGenerator(HeightMap heightMap, CityTerrainComponent terrainConfig, CitySpawnComponent spawnConfig) {
         this.heightMap = heightMap;
+        this.terrainConfig = terrainConfig;
+        this.spawnConfig = spawnConfig;
 
         theme.register(BlockTypes.ROAD_SURFACE, "core:Gravel");
         theme.register(BlockTypes.LOT_EMPTY, "core:dirt");
@@ -78,8 +97,35 @@ public CityTerrainGenerator(HeightMap heightMap) {
     @Override
     public void setWorldSeed(String worldSeed) {
 
-        facade = new WorldFacade(worldSeed, heightMap);
+        // generated sectors are stored per seed and configuration, so they can be shared by all saved games
+        Path storeDir = PathManager.getInstance().getHomePath().resolve("cities");
+        if (facade != null) {
+            facade.close();
+        }
+        facade = new WorldFacade(worldSeed, heightMap, terrainConfig, spawnConfig, Optional.of(storeDir));
+
+        cityDrawings = CachingFunction.wrap(new Function<Sector, RecordingBrush>() {
 
+            @Override
+            public RecordingBrush apply(Sector sector) {
+                return recordCities(sector);
+            }
+        }, CITY_DRAWING_CACHE_SIZE);
+
+    }
+
+    /**
+     * @return the facade of the current world seed or <code>null</code> if no seed has been set yet
+     */
+    public WorldFacade getWorldFacade() {
+        return facade;
+    }
+
+    /**
+     * @return the cache of recorded city rasterizations per sector or <code>null</code> if no seed has been set yet
+     */
+    public Function<Sector, RecordingBrush> getCityDrawings() {
+        return cityDrawings;
     }
 
     /**
@@ -100,6 +146,8 @@ public void setInitParameters(Map<String, String> initParameters) {
 
     @Override
     public void generateChunk(CoreChunk chunk) {
+        long start = System.nanoTime();
+
         int wx = chunk.chunkToWorldPositionX(0);
         int wz = chunk.chunkToWorldPositionZ(0);
 
@@ -107,33 +155,44 @@ public void generateChunk(CoreChunk chunk) {
 
         Brush brush = new ChunkBrush(chunk, theme);
 
-        HeightMap cachedHm = HeightMaps.caching(heightMap, brush.getAffectedArea(), 1);
-        TerrainInfo ti = new TerrainInfo(cachedHm);
+        // the height map is backed by the shared tile cache (see CityWorldGenerator) - no need to copy it per chunk
+        TerrainInfo ti = new TerrainInfo(heightMap);
 
-        drawCities(sector, ti, brush);
+        drawCities(sector, brush);
         drawRoads(sector, ti, brush);
+
+        facade.getMetrics().recordSince(PipelineStage.CHUNK_RASTER, start);
     }
 
     private void drawRoads(Sector sector, TerrainInfo ti, Brush brush) {
-        Set<Road> roads = facade.getRoads(sector);
+        RoadCorridor corridor = facade.getRoadCorridor(sector);
 
-        RoadRasterizer rr = new RoadRasterizer();
-        for (Road road : roads) {
-            rr.raster(brush, ti, road);
-        }
+        RoadCorridorRasterizer rr = new RoadCorridorRasterizer();
+        rr.raster(brush, ti, corridor);
     }
 
-    private void drawCities(Sector sector, TerrainInfo ti, Brush brush) {
-        Set<City> cities = Sets.newHashSet(facade.getCities(sector));
+    private void drawCities(Sector sector, Brush brush) {
+        // the cities are rasterized once per sector - only the commands of this chunk are replayed
+        cityDrawings.getUnchecked(sector).replay(brush);
+    }
 
-        for (Orientation dir : Orientation.values()) {
-            cities.addAll(facade.getCities(sector.getNeighbor(dir)));
-        }
+    /**
+     * Rasterizes all city elements of a sector into a recording brush
+     */
+    private RecordingBrush recordCities(Sector sector) {
+        Vector2i coords = sector.getCoords();
+        Rectangle area = new Rectangle(coords.x * Sector.SIZE, coords.y * Sector.SIZE, Sector.SIZE, Sector.SIZE);
+        RecordingBrush recorder = new RecordingBrush(area, ChunkConstants.SIZE_X, ChunkConstants.SIZE_Z);
 
+        SectorElements elements = facade.getSectorElements(sector);
+        TerrainInfo ti = new TerrainInfo(heightMap);
         RasterRegistry registry = StandardRegistry.getInstance();
 
-        for (City city : cities) {
-            registry.rasterize(brush, ti, city);
+        for (Object element : elements.getElements()) {
+            registry.rasterize(recorder, ti, element);
         }
+
+        recorder.compact();
+        return recorder;
     }
 }
@@ -18,6 +18,11 @@
 
 import java.util.Map;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.cities.common.TiledHeightCache;
+import org.terasology.cities.raster.RecordingBrush;
+import org.terasology.commonworld.Sector;
 import org.terasology.commonworld.heightmap.HeightMap;
 import org.terasology.commonworld.heightmap.HeightMaps;
 import org.terasology.commonworld.heightmap.NoiseHeightMap;
@@ -27,27 +32,46 @@
 import org.terasology.core.world.generator.facetProviders.World2dPreviewProvider;
 import org.terasology.engine.SimpleUri;
 import org.terasology.entitySystem.Component;
+import org.terasology.entitySystem.entity.EntityManager;
 import org.terasology.entitySystem.entity.EntityRef;
 import org.terasology.logic.spawner.FixedSpawner;
 import org.terasology.logic.spawner.Spawner;
 import org.terasology.math.geom.Vector3f;
+import org.terasology.registry.CoreRegistry;
+import org.terasology.world.WorldComponent;
 import org.terasology.world.generation.World;
 import org.terasology.world.generation.WorldBuilder;
 import org.terasology.world.generator.RegisterWorldGenerator;
 import org.terasology.world.generator.WorldConfigurator;
 
+import com.google.common.base.Function;
 import com.google.common.collect.Maps;
 
 @RegisterWorldGenerator(id = "city", displayName = "City World")
 public class CityWorldGenerator extends AbstractBaseWorldGenerator {
 
+    private static final Logger logger = LoggerFactory.getLogger(CityWorldGenerator.class);
+
     World world;
 
     private final Spawner spawner = new FixedSpawner(0, 0);
 
+    /**
+     * The number of 64x64 height tiles that are shared by all generation passes (about 8KB each)
+     */
+    private static final long HEIGHT_CACHE_TILES = 2048;
+
     private NoiseHeightMap noiseMap;
+    private TiledHeightCache heightCache;
     private HeightMap heightMap;
 
+    private CityTerrainComponent terrainConfig = new CityTerrainComponent();
+    private CitySpawnComponent spawnConfig = new CitySpawnComponent();
+
+    private CityTerrainGenerator cityGenerator;
+
+    private HeightMapCompatibilityFacetProvider heightFacetProvider;
+
     /**
      * @param uri the uri
      */
@@ -58,13 +82,17 @@ public CityWorldGenerator(SimpleUri uri) {
     @Override
     public void initialize() {
 
-        noiseMap = new NoiseHeightMap();
-        heightMap = HeightMaps.symmetric(noiseMap, Symmetries.alongNegativeDiagonal());
+        createHeightMap();
+
+        // the passes keep their config instances, so the configuration must be complete at this point
+        restoreConfig();
 
-        register(new HeightMapTerrainGenerator(heightMap));
+        cityGenerator = new CityTerrainGenerator(heightMap, terrainConfig, spawnConfig);
+
+        register(new HeightMapTerrainGenerator(heightMap, terrainConfig));
 //        register(new BoundaryGenerator(heightMap));
-        register(new CityTerrainGenerator(heightMap));
-        register(new FloraGeneratorFast(heightMap));
+        register(cityGenerator);
+        register(new FloraGeneratorFast(heightMap, terrainConfig));
 
         world.initialize();
     }
@@ -76,14 +104,19 @@ public void setWorldSeed(String seed) {
         }
 
         if (heightMap == null) {
-            noiseMap = new NoiseHeightMap();
-            heightMap = HeightMaps.symmetric(noiseMap, Symmetries.alongNegativeDiagonal());
+            createHeightMap();
         }
 
         noiseMap.setSeed(seed);
+        heightCache.invalidateAll();
+
+        if (heightFacetProvider != null) {
+            heightFacetProvider.close();
+        }
+        heightFacetProvider = new HeightMapCompatibilityFacetProvider(heightMap);
 
         world = new WorldBuilder()
-                .addProvider(new HeightMapCompatibilityFacetProvider(heightMap))
+                .addProvider(heightFacetProvider)
                 .addProvider(new SeaLevelProvider(2))
                 .addProvider(new World2dPreviewProvider())
                 .build();
@@ -91,6 +124,39 @@ public void setWorldSeed(String seed) {
         super.setWorldSeed(seed);
     }
 
+    /**
+     * The configurator is only used when a new world is created. The chosen components are stored
+     * in the world entity, so they are read from there for reloaded and remote worlds, too.
+     * World generators are not injected, so the entity manager is taken from the registry.
+     */
+    private void restoreConfig() {
+        EntityManager entityManager = CoreRegistry.get(EntityManager.class);
+        if (entityManager == null) {
+            logger.warn("No entity manager available - using the current city configuration");
+            return;
+        }
+
+        for (EntityRef entity : entityManager.getEntitiesWith(WorldComponent.class)) {
+            CityTerrainComponent storedTerrain = entity.getComponent(CityTerrainComponent.class);
+            if (storedTerrain != null) {
+                terrainConfig = storedTerrain;
+            }
+            CitySpawnComponent storedSpawn = entity.getComponent(CitySpawnComponent.class);
+            if (storedSpawn != null) {
+                spawnConfig = storedSpawn;
+            }
+        }
+    }
+
+    /**
+     * The noise is cached before the symmetry is applied, so mirrored columns share their tiles
+     */
+    private void createHeightMap() {
+        noiseMap = new NoiseHeightMap();
+        heightCache = new TiledHeightCache(noiseMap, HEIGHT_CACHE_TILES);
+        heightMap = HeightMaps.symmetric(heightCache, Symmetries.alongNegativeDiagonal());
+    }
+
     @Override
     public WorldConfigurator getConfigurator() {
 
@@ -99,14 +165,19 @@ public WorldConfigurator getConfigurator() {
             @Override
             public Map<String, Component> getProperties() {
                 Map<String, Component> map = Maps.newHashMap();
-                map.put("Terrain", new CityTerrainComponent());
-                map.put("Spawning", new CitySpawnComponent());
+                map.put("Terrain", terrainConfig);
+                map.put("Spawning", spawnConfig);
                 return map;
             }
 
             @Override
             public void setProperty(String key, Component comp) {
-                // TODO Auto-generated method stub
+                if (comp instanceof CityTerrainComponent) {
+                    terrainConfig = (CityTerrainComponent) comp;
+                }
+                if (comp instanceof CitySpawnComponent) {
+                    spawnConfig = (CitySpawnComponent) comp;
+                }
             }
 
         };
@@ -119,6 +190,36 @@ public World getWorld() {
         return world;
     }
 
+    /**
+     * Releases the worker threads and flushes the sector store. World generators don't have
+     * a shutdown hook, so this must be called from outside (see PlayerTracker).
+     */
+    public void close() {
+        if (heightFacetProvider != null) {
+            heightFacetProvider.close();
+        }
+        WorldFacade facade = getWorldFacade();
+        if (facade != null) {
+            facade.close();
+        }
+    }
+
+    /**
+     * @return the facade that provides the city models of the current world
+     * or <code>null</code> if no world seed has been set yet
+     */
+    public WorldFacade getWorldFacade() {
+        return (cityGenerator != null) ? cityGenerator.getWorldFacade() : null;
+    }
+
+    /**
+     * @return the cache of recorded city rasterizations per sector
+     * or <code>null</code> if no world seed has been set yet
+     */
+    public Function<Sector, RecordingBrush> getCityDrawings() {
+        return (cityGenerator != null) ? cityGenerator.getCityDrawings() : null;
+    }
+
     @Override
     public Vector3f getSpawnPosition(EntityRef entity) {
         return spawner.getSpawnPosition(getWorld(), entity);
@@ -35,7 +35,8 @@
 
 /**
  * Generates flowers and high grass. It's fast, because it
- * uses a height map to find the terrain layer.
+ * uses a height map to find the terrain layer. Only columns
+ * where the terrain generator puts grass are checked.
  */
 public class FloraGeneratorFast implements ChunkGenerationPass {
 
@@ -52,16 +53,23 @@ public class FloraGeneratorFast implements ChunkGenerationPass {
     private Block tallGrass3;
     private List<Block> flowers = Lists.newArrayList();
 
+    private static final int NO_GRASS = -1;
+
+    private final Block air = BlockManager.getAir();
+
     private WorldGenerationConfig config = new WorldGenerationConfig();
 
+    private final CityTerrainComponent terrainConfig;
+
     private HeightMap heightMap;
 
     private String worldSeed;
 
     /**
      * @param heightMap the height map to use
+     * @param terrainConfig the terrain configuration
      */
-    public FloraGeneratorFast(HeightMap heightMap) {
+    public FloraGeneratorFast(HeightMap heightMap, CityTerrainComponent terrainConfig) {
         BlockManager blockManager = CoreRegistry.get(BlockManager.class);
         grassBlock = blockManager.getBlock("core:Grass");
         tallGrass1 = blockManager.getBlock("core:TallGrass1");
@@ -72,6 +80,8 @@ public FloraGeneratorFast(HeightMap heightMap) {
         }
 
         this.heightMap = heightMap;
+
+        this.terrainConfig = terrainConfig;
     }
 
     public void setWorldSeed(String seed) {
@@ -80,57 +90,99 @@ public void setWorldSeed(String seed) {
 
     @Override
     public void generateChunk(CoreChunk chunk) {
-        int seed = Objects.hash(worldSeed.hashCode(), chunk.getPosition());
+        int sizeX = chunk.getChunkSizeX();
+        int sizeY = chunk.getChunkSizeY();
+        int sizeZ = chunk.getChunkSizeZ();
+
+        int wx = chunk.chunkToWorldPositionX(0);
+        int wy = chunk.chunkToWorldPositionY(0);
+        int wz = chunk.chunkToWorldPositionZ(0);
+
+        // the local surface height of all columns that have grass on top (and room above it)
+        int[] grassMask = new int[sizeX * sizeZ];
+        boolean anyGrass = false;
+
+        for (int z = 0; z < sizeZ; z++) {
+            for (int x = 0; x < sizeX; x++) {
+                int height = heightMap.apply(wx + x, wz + z);
+                int y = height - wy;
+                boolean grass = isGrass(height) && y >= 0 && y + 1 < sizeY;
+                grassMask[z * sizeX + x] = grass ? y : NO_GRASS;
+                anyGrass |= grass;
+            }
+        }
+
+        // the surface is not in this chunk
+        if (!anyGrass) {
+            return;
+        }
 
+        int seed = Objects.hash(worldSeed.hashCode(), chunk.getPosition());
         Random random = new FastRandom(seed);
-        for (int x = 0; x < chunk.getChunkSizeX(); x++) {
-            for (int z = 0; z < chunk.getChunkSizeZ(); z++) {
-                int y = heightMap.apply(x, z);
-                Block targetBlock = chunk.getBlock(x, y, z);
-
-                // check for grass and air above
-                if (targetBlock.equals(grassBlock)) {
-                    Block blockOnTop = chunk.getBlock(x, y + 1, z);
-
-                    if (blockOnTop.equals(BlockManager.getAir())) {
-                        generateGrassAndFlowers(chunk, x, y, z, random);
-                    }
+        float density = config.getGrassDensity(CoreBiome.PLAINS);
+
+        // one placement value per column and three more per selected column - all of them are
+        // drawn before the blocks are checked, so the stream does not depend on the chunk content
+        for (int z = 0; z < sizeZ; z++) {
+            for (int x = 0; x < sizeX; x++) {
+                if (random.nextFloat() >= density) {
+                    continue;
+                }
+
+                double grassRand = random.nextGaussian();
+                double flowerRand = random.nextGaussian();
+                Block flower = random.nextItem(flowers);
+
+                int y = grassMask[z * sizeX + x];
+                if (y == NO_GRASS) {
+                    continue;
+                }
+
+                // the cities pass could have built something here
+                if (chunk.getBlock(x, y, z).equals(grassBlock) && chunk.getBlock(x, y + 1, z).equals(air)) {
+                    generateGrassAndFlowers(chunk, x, y, z, grassRand, flowerRand, flower);
                 }
             }
         }
     }
 
+    /**
+     * @param height the terrain height
+     * @return true if the terrain generator puts grass on the surface at that height
+     */
+    private boolean isGrass(int height) {
+        return height > terrainConfig.getSeaLevel() + 1 && height < terrainConfig.getSnowLine();
+    }
+
     /**
      * Generates grass or a flower on the given chunk.
      *
-     * @param c      The chunk
-     * @param x      Position on the x-axis
-     * @param y      Position on the y-axis
-     * @param z      Position on the z-axis
-     * @param random the RNG
+     * @param c          The chunk
+     * @param x          Position on the x-axis
+     * @param y          Position on the y-axis
+     * @param z          Position on the z-axis
+     * @param grassRand  a Gaussian random number that selects the grass type
+     * @param flowerRand a Gaussian random number that decides if a flower is placed
+     * @param flower     the flower to place (if any)
      */
-    private void generateGrassAndFlowers(CoreChunk c, int x, int y, int z, Random random) {
-
-        if (random.nextFloat() < config.getGrassDensity(CoreBiome.PLAINS)) {
-            /*
-             * Generate tall grass.
-             */
-            double rand = random.nextGaussian();
-
-            if (rand > -0.4 && rand < 0.4) {
-                c.setBlock(x, y + 1, z, tallGrass1);
-            } else if (rand > -0.6 && rand < 0.6) {
-                c.setBlock(x, y + 1, z, tallGrass2);
-            } else {
-                c.setBlock(x, y + 1, z, tallGrass3);
-            }
+    private void generateGrassAndFlowers(CoreChunk c, int x, int y, int z, double grassRand, double flowerRand, Block flower) {
+
+        /*
+         * Generate tall grass.
+         */
+        if (grassRand > -0.4 && grassRand < 0.4) {
+            c.setBlock(x, y + 1, z, tallGrass1);
+        } else if (grassRand > -0.6 && grassRand < 0.6) {
+            c.setBlock(x, y + 1, z, tallGrass2);
+        } else {
+            c.setBlock(x, y + 1, z, tallGrass3);
+        }
 
-            /*
-             * Generate flowers.
-             */
-            if (random.nextGaussian() < -2) {
-                c.setBlock(x, y + 1, z, random.nextItem(flowers));
-            }
+        /*
+         * Generate flowers.
+         */
+        if (flowerRand < -2) {
+            c.setBlock(x, y + 1, z, flower);
         }
     }
 
@@ -15,20 +15,64 @@
  */
 package org.terasology.cities;
 
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.terasology.cities.common.SharedForkJoinPool;
 import org.terasology.commonworld.heightmap.HeightMap;
-import org.terasology.math.Vector2i;
+import org.terasology.math.Rect2i;
 import org.terasology.world.generation.Border3D;
 import org.terasology.world.generation.FacetProvider;
 import org.terasology.world.generation.GeneratingRegion;
 import org.terasology.world.generation.Produces;
 import org.terasology.world.generation.facets.SurfaceHeightFacet;
 
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+
+/**
+ * Provides the {@link SurfaceHeightFacet} from a height map. The backing array of the
+ * facet is filled row by row; large regions (e.g. the world preview) are split into
+ * bands of rows that are filled in parallel in the {@link SharedForkJoinPool}.
+ * Call {@link #close()} when the provider is no longer used.
+ */
 @Produces(SurfaceHeightFacet.class)
 public class HeightMapCompatibilityFacetProvider implements FacetProvider {
-    HeightMap heightMap;
 
+    /**
+     * Regions with at least this many columns are filled in parallel
+     */
+    private static final int PARALLEL_MIN_AREA = 256 * 256;
+
+    /**
+     * The number of rows that are filled by one task
+     */
+    private static final int ROWS_PER_TASK = 32;
+
+    private final HeightMap heightMap;
+
+    private final ForkJoinPool pool;
+
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    /**
+     * @param heightMap the height map to use (must be thread-safe)
+     */
     public HeightMapCompatibilityFacetProvider(HeightMap heightMap) {
         this.heightMap = heightMap;
+        this.pool = SharedForkJoinPool.acquire();
+    }
+
+    /**
+     * Releases the shared worker pool - can be called more than once
+     */
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            SharedForkJoinPool.release();
+        }
     }
 
     @Override
@@ -40,12 +84,54 @@ public void process(GeneratingRegion region) {
         Border3D border = region.getBorderForFacet(SurfaceHeightFacet.class);
         SurfaceHeightFacet facet = new SurfaceHeightFacet(region.getRegion(), border);
 
-        for (Vector2i pos : facet.getWorldRegion()) {
-            int x = pos.getX();
-            int y = pos.getY();
-            facet.setWorld(pos, heightMap.apply(x, y));
-        }
+        Rect2i worldRegion = facet.getWorldRegion();
+        fill(facet.getInternal(), worldRegion.minX(), worldRegion.minY(), worldRegion.sizeX(), worldRegion.sizeY());
 
         region.setRegionFacet(SurfaceHeightFacet.class, facet);
     }
+
+    /**
+     * Fills an array with the heights of a region, row by row
+     * @param data the target array (sizeX * sizeZ values)
+     * @param minX the min. x world coordinate
+     * @param minZ the min. z world coordinate
+     * @param sizeX the width of the region
+     * @param sizeZ the height of the region
+     */
+    void fill(final float[] data, final int minX, final int minZ, final int sizeX, int sizeZ) {
+        if (sizeX * sizeZ < PARALLEL_MIN_AREA) {
+            fillRows(data, minX, minZ, sizeX, 0, sizeZ);
+        } else {
+            List<Callable<Void>> tasks = Lists.newArrayList();
+            for (int row = 0; row < sizeZ; row += ROWS_PER_TASK) {
+                final int first = row;
+                final int last = Math.min(sizeZ, row + ROWS_PER_TASK);
+                tasks.add(new Callable<Void>() {
+
+                    @Override
+                    public Void call() {
+                        fillRows(data, minX, minZ, sizeX, first, last);
+                        return null;
+                    }
+                });
+            }
+
+            for (Future<Void> future : pool.invokeAll(tasks)) {
+                Futures.getUnchecked(future);
+            }
+        }
+    }
+
+    /**
+     * Writes the heights of the given rows directly into the facet's backing array
+     */
+    private void fillRows(float[] data, int minX, int minZ, int sizeX, int firstRow, int lastRow) {
+        for (int row = firstRow; row < lastRow; row++) {
+            int z = minZ + row;
+            int idx = row * sizeX;
+            for (int x = minX; x < minX + sizeX; x++) {
+                data[idx++] = heightMap.apply(x, z);
+            }
+        }
+    }
 }
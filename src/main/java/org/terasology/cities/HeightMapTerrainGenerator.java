@@ -36,11 +36,10 @@
  */
 public class HeightMapTerrainGenerator implements ChunkGenerationPass {
 
-    private Function<Vector2i, Integer> heightMap;
+    private final HeightMap heightMap;
 
     private final BlockManager blockManager = CoreRegistry.get(BlockManager.class);
 
-    private final Block air = BlockManager.getAir();
     private final Block mantle = blockManager.getBlock("core:MantleStone");
     private final Block stone = blockManager.getBlock("core:Stone");
     private final Block sand = blockManager.getBlock("core:Sand");
@@ -49,16 +48,20 @@ public class HeightMapTerrainGenerator implements ChunkGenerationPass {
     private final Block dirt = blockManager.getBlock("core:Dirt");
     private final Block water = blockManager.getBlock("core:water");
 
+    /**
+     * Liquid data is immutable - all water blocks share the same instance
+     */
+    private final LiquidData waterLiquid = new LiquidData(LiquidType.WATER, LiquidData.MAX_LIQUID_DEPTH);
+
     private final CityTerrainComponent config;
 
     /**
      * @param heightMap the height map to use
+     * @param config the terrain configuration
      */
-    public HeightMapTerrainGenerator(HeightMap heightMap) {
+    public HeightMapTerrainGenerator(HeightMap heightMap, CityTerrainComponent config) {
         this.heightMap = heightMap;
-
-        config = WorldFacade.getWorldEntity().getComponent(CityTerrainComponent.class);
-
+        this.config = config;
     }
 
     /**
@@ -117,34 +120,46 @@ public void generateChunk(CoreChunk chunk) {
         int seaLevel = config.getSeaLevel();
         int snowLine = config.getSnowLine();
 
+        int sizeY = chunk.getChunkSizeY();
+        int wx0 = chunk.chunkToWorldPositionX(0);
+        int wz0 = chunk.chunkToWorldPositionZ(0);
+
+        // ocean: everything from 1 up to sea level is water
+        int waterTop = Math.min(seaLevel, sizeY - 1);
+
         for (int x = 0; x < chunk.getChunkSizeX(); x++) {
             for (int z = 0; z < chunk.getChunkSizeZ(); z++) {
-                int wx = chunk.chunkToWorldPositionX(x);
-                int wz = chunk.chunkToWorldPositionZ(z);
-
-                int surfaceHeight = heightMap.apply(new Vector2i(wx, wz));
-
-                for (int y = chunk.getChunkSizeY() - 1; y >= 0; y--) {
-                    if (y == 0) {
-                        // bedrock/mantle
-                        chunk.setBlock(x, y, z, mantle);
-                    } else if (y <= seaLevel) { // Ocean
-                        chunk.setBlock(x, y, z, water);
-                        chunk.setLiquid(x, y, z, new LiquidData(LiquidType.WATER, LiquidData.MAX_LIQUID_DEPTH));
-                    } else if (y == seaLevel + 1 && y == surfaceHeight) {
-                        chunk.setBlock(x, y, z, sand);
-                    } else if (y < surfaceHeight && surfaceHeight < snowLine) {
-                        chunk.setBlock(x, y, z, dirt);
-                    } else if (y < surfaceHeight && surfaceHeight >= snowLine) {
-                        chunk.setBlock(x, y, z, stone);
-                    } else if (y == surfaceHeight && surfaceHeight < snowLine) {
-                        chunk.setBlock(x, y, z, grass);
-                    } else if (y == surfaceHeight && surfaceHeight >= snowLine) {
-                        chunk.setBlock(x, y, z, snow);
+                int surfaceHeight = heightMap.apply(wx0 + x, wz0 + z);
+
+                // bedrock/mantle
+                if (sizeY > 0) {
+                    chunk.setBlock(x, 0, z, mantle);
+                }
+
+                for (int y = 1; y <= waterTop; y++) {
+                    chunk.setBlock(x, y, z, water);
+                    chunk.setLiquid(x, y, z, waterLiquid);
+                }
+
+                // ground below the surface (above sea level)
+                Block ground = (surfaceHeight < snowLine) ? dirt : stone;
+                int groundTop = Math.min(surfaceHeight, sizeY);
+                for (int y = Math.max(1, seaLevel + 1); y < groundTop; y++) {
+                    chunk.setBlock(x, y, z, ground);
+                }
+
+                // the surface block itself
+                if (surfaceHeight > seaLevel && surfaceHeight > 0 && surfaceHeight < sizeY) {
+                    Block top;
+                    if (surfaceHeight == seaLevel + 1) {
+                        top = sand;
                     } else {
-                        chunk.setBlock(x, y, z, air);
+                        top = (surfaceHeight < snowLine) ? grass : snow;
                     }
+                    chunk.setBlock(x, surfaceHeight, z, top);
                 }
+
+                // the rest is air - new chunks are empty, so there is nothing to write
             }
         }
     }
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities;
+
+import java.awt.Shape;
+import java.awt.geom.PathIterator;
+import java.util.Collection;
+import java.util.Set;
+
+import org.terasology.cities.model.City;
+import org.terasology.cities.model.Lake;
+import org.terasology.cities.model.Lot;
+import org.terasology.cities.model.MedievalTown;
+import org.terasology.cities.model.Road;
+import org.terasology.cities.model.bldg.TownWall;
+import org.terasology.commonworld.contour.Contour;
+
+import com.google.common.cache.Weigher;
+
+/**
+ * Estimates the memory footprint of cached model elements.
+ * The weights are relative - one unit roughly corresponds to one point, lot or building.
+ */
+public final class ModelWeighers {
+
+    private ModelWeighers() {
+        // no instances
+    }
+
+    /**
+     * @return a weigher that counts the elements of a collection (min. 1)
+     */
+    public static Weigher<Object, Collection<?>> collectionSize() {
+        return new Weigher<Object, Collection<?>>() {
+
+            @Override
+            public int weigh(Object key, Collection<?> value) {
+                return value.size() + 1;
+            }
+        };
+    }
+
+    /**
+     * @return a weigher that counts lots, buildings and town wall elements
+     */
+    public static Weigher<Object, Set<City>> cities() {
+        return new Weigher<Object, Set<City>>() {
+
+            @Override
+            public int weigh(Object key, Set<City> cities) {
+                long weight = 1;
+                for (City city : cities) {
+                    weight += 1 + city.getLots().size();
+
+                    for (Lot lot : city.getLots()) {
+                        weight += lot.getBuildings().size();
+                    }
+
+                    if (city instanceof MedievalTown) {
+                        TownWall tw = ((MedievalTown) city).getTownWall().orNull();
+                        if (tw != null) {
+                            weight += tw.getWalls().size() + tw.getTowers().size();
+                        }
+                    }
+                }
+                return clamp(weight);
+            }
+        };
+    }
+
+    /**
+     * @return a weigher that counts the road points
+     */
+    public static Weigher<Object, Set<Road>> roads() {
+        return new Weigher<Object, Set<Road>>() {
+
+            @Override
+            public int weigh(Object key, Set<Road> roads) {
+                long weight = 1;
+                for (Road road : roads) {
+                    weight += road.getPoints().size() + 2;
+                }
+                return clamp(weight);
+            }
+        };
+    }
+
+    /**
+     * @return a weigher that counts the (unflattened) path segments of a shape
+     */
+    public static Weigher<Object, Shape> shape() {
+        return new Weigher<Object, Shape>() {
+
+            @Override
+            public int weigh(Object key, Shape shape) {
+                long weight = 1;
+                PathIterator it = shape.getPathIterator(null);
+                while (!it.isDone()) {
+                    weight++;
+                    it.next();
+                }
+                return clamp(weight);
+            }
+        };
+    }
+
+    /**
+     * @return a weigher that counts the contour points of lakes and their islands
+     */
+    public static Weigher<Object, Set<Lake>> lakes() {
+        return new Weigher<Object, Set<Lake>>() {
+
+            @Override
+            public int weigh(Object key, Set<Lake> lakes) {
+                long weight = 1;
+                for (Lake lake : lakes) {
+                    weight += lake.getContour().getPoints().size();
+
+                    for (Contour island : lake.getIslandContours()) {
+                        weight += island.getPoints().size();
+                    }
+                }
+                return clamp(weight);
+            }
+        };
+    }
+
+    private static int clamp(long weight) {
+        return (int) Math.min(weight, Integer.MAX_VALUE);
+    }
+}
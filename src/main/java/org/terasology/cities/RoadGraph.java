@@ -0,0 +1,247 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities;
+
+import java.awt.Rectangle;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import org.terasology.cities.common.CachingFunction;
+import org.terasology.cities.common.SectorUtils;
+import org.terasology.cities.model.LakeMask;
+import org.terasology.cities.model.Road;
+import org.terasology.cities.model.Site;
+import org.terasology.commonworld.Orientation;
+import org.terasology.commonworld.Sector;
+import org.terasology.commonworld.Sectors;
+import org.terasology.commonworld.UnorderedPair;
+import org.terasology.math.Vector2i;
+
+import com.google.common.base.Function;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * A global road network that grows as sectors are requested. Every connection
+ * between two sites is turned into a road exactly once, no matter how many sectors
+ * it appears in. Every sector holds an index of all roads that cross it,
+ * so that a sector query is a simple lookup once the index exists.
+ * <p>
+ * The roads that cross a sector are taken from the connections of the sector itself
+ * and its direct neighbors. This keeps the result independent of the order in which
+ * sectors are requested.
+ * </p>
+ * This class is thread-safe. There is no global lock: roads are loaded per connection,
+ * so threads only wait for each other if they need the very same road.
+ */
+public class RoadGraph implements Function<Sector, Set<Road>> {
+
+    /**
+     * Roads are rendered wider than their nominal width and with a plaza at each junction
+     */
+    private static final double WIDTH_FACTOR = 1.5;
+    private static final int PLAZA_RADIUS = 10;
+
+    private final Function<Sector, Set<UnorderedPair<Site>>> sectorConnections;
+    private final Function<Sector, LakeMask> lakeMasks;
+
+    /**
+     * Makes sure that equal roads are represented by the same instance, also if they are loaded from disk
+     */
+    private final Interner<Road> interner = Interners.newWeakInterner();
+
+    /**
+     * Builds every road only once, even if several threads request it at the same time.
+     * Evicted roads are re-created on demand - the interner returns the same instance as long as it is in use.
+     */
+    private final LoadingCache<UnorderedPair<Site>, RoadEntry> entries;
+
+    /**
+     * All roads that cross a sector
+     */
+    private final ConcurrentMap<Sector, List<RoadEntry>> sectorIndex = Maps.newConcurrentMap();
+
+    /**
+     * @param sectorConnections the site connections of a sector
+     * @param roadGen creates a road for a connection - it is called at most once per connection
+     * @param lakeMasks the lake mask of a sector - roads that pass through a lake are dropped
+     * @param maxRoads the maximum number of roads that are cached
+     */
+    public RoadGraph(Function<Sector, Set<UnorderedPair<Site>>> sectorConnections,
+                     final Function<UnorderedPair<Site>, Road> roadGen,
+                     Function<Sector, LakeMask> lakeMasks, long maxRoads) {
+        this.sectorConnections = sectorConnections;
+        this.lakeMasks = lakeMasks;
+
+        this.entries = CachingFunction.wrap(new Function<UnorderedPair<Site>, RoadEntry>() {
+
+            @Override
+            public RoadEntry apply(UnorderedPair<Site> conn) {
+                Road road = interner.intern(roadGen.apply(conn));
+                return new RoadEntry(conn, road, getBounds(road), isBlocked(road));
+            }
+        }, maxRoads);
+    }
+
+    /**
+     * @param sector the sector
+     * @return all (not blocked) roads that cross the sector
+     */
+    @Override
+    public Set<Road> apply(Sector sector) {
+        List<RoadEntry> crossing = sectorIndex.get(sector);
+
+        if (crossing == null) {
+            // concurrent builds of the same index contain the same roads - the first one wins
+            crossing = buildIndex(sector);
+            List<RoadEntry> prev = sectorIndex.putIfAbsent(sector, crossing);
+            if (prev != null) {
+                crossing = prev;
+            }
+        }
+
+        Set<Road> roads = Sets.newHashSet();
+        for (RoadEntry entry : crossing) {
+            if (!entry.blocked) {
+                roads.add(entry.road);
+            }
+        }
+
+        return roads;
+    }
+
+    /**
+     * Replaces roads by equal instances that are already known. Roads that are loaded from
+     * disk (rather than generated by this graph) should be passed through this method.
+     * @param roads the roads
+     * @return a set of equal roads that uses shared instances
+     */
+    public Set<Road> intern(Set<Road> roads) {
+        Set<Road> result = Sets.newHashSet();
+        for (Road road : roads) {
+            result.add(interner.intern(road));
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of cached roads in the graph
+     */
+    public int getRoadCount() {
+        return (int) entries.size();
+    }
+
+    /**
+     * Removes the index of all sectors that are not close to any of the given sectors
+     * and all roads that are no longer referenced by any remaining index.
+     * @param active the sectors that should be retained
+     * @param radius the number of sectors around an active sector that are retained
+     */
+    public void retainAround(Collection<Sector> active, int radius) {
+        if (active.isEmpty()) {
+            return;
+        }
+
+        for (Sector sector : Sets.newHashSet(sectorIndex.keySet())) {
+            if (!SectorUtils.isNear(sector, active, radius)) {
+                sectorIndex.remove(sector);
+            }
+        }
+
+        Set<UnorderedPair<Site>> referenced = Sets.newHashSet();
+        for (List<RoadEntry> crossing : sectorIndex.values()) {
+            for (RoadEntry entry : crossing) {
+                referenced.add(entry.connection);
+            }
+        }
+
+        // a road that is loaded concurrently might be dropped here - it is re-created on demand
+        entries.asMap().keySet().retainAll(referenced);
+    }
+
+    private List<RoadEntry> buildIndex(Sector sector) {
+        Vector2i coords = sector.getCoords();
+        Rectangle sectorRect = new Rectangle(coords.x * Sector.SIZE, coords.y * Sector.SIZE, Sector.SIZE, Sector.SIZE);
+
+        Set<RoadEntry> crossing = Sets.newLinkedHashSet();
+        addCrossing(sector, sectorRect, crossing);
+        for (Orientation dir : Orientation.values()) {
+            addCrossing(sector.getNeighbor(dir), sectorRect, crossing);
+        }
+
+        return ImmutableList.copyOf(crossing);
+    }
+
+    private void addCrossing(Sector source, Rectangle sectorRect, Set<RoadEntry> crossing) {
+        for (UnorderedPair<Site> conn : sectorConnections.apply(source)) {
+            RoadEntry entry = entries.getUnchecked(conn);
+            if (entry.bounds.intersects(sectorRect)) {
+                crossing.add(entry);
+            }
+        }
+    }
+
+    /**
+     * @param road the road
+     * @return true if any of the road's points is inside a lake
+     */
+    private boolean isBlocked(Road road) {
+        for (Vector2i pt : road.getPoints()) {
+            Sector sector = Sectors.getSectorForBlock(pt.x, pt.y);
+            if (lakeMasks.apply(sector).isWater(pt.x, pt.y)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static Rectangle getBounds(Road road) {
+        Rectangle rc = new Rectangle(road.getStart().getCoords().x, road.getStart().getCoords().y, 0, 0);
+        rc.add(road.getEnd().getCoords().x, road.getEnd().getCoords().y);
+        for (Vector2i pt : road.getPoints()) {
+            rc.add(pt.x, pt.y);
+        }
+
+        int margin = (int) Math.ceil(road.getWidth() * WIDTH_FACTOR) + PLAZA_RADIUS;
+        rc.grow(margin, margin);
+        return rc;
+    }
+
+    /**
+     * A road with pre-computed properties
+     */
+    private static final class RoadEntry {
+        private final UnorderedPair<Site> connection;
+        private final Road road;
+        private final Rectangle bounds;
+        private final boolean blocked;
+
+        RoadEntry(UnorderedPair<Site> connection, Road road, Rectangle bounds, boolean blocked) {
+            this.connection = connection;
+            this.road = road;
+            this.bounds = bounds;
+            this.blocked = blocked;
+        }
+    }
+}
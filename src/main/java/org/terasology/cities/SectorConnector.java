@@ -44,11 +44,10 @@ public SectorConnector(Function<Sector, Set<Site>> siteMap, Function<Site, Set<S
 
     @Override
     public Set<UnorderedPair<Site>> apply(Sector sector) {
-        Set<Site> sites = Sets.newHashSet(siteMap.apply(sector));
-
         Set<UnorderedPair<Site>> connections = Sets.newHashSet();
         
-        for (Site site : sites) {
+        // the connected sites come from a spatial index - no need to copy the sector's sites
+        for (Site site : siteMap.apply(sector)) {
             Set<Site> conn = connectedCities.apply(site);
             
             for (Site other : conn) {
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities;
+
+import java.util.Deque;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import javax.vecmath.Vector2d;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.commonworld.Sector;
+import org.terasology.commonworld.Sectors;
+
+import com.google.common.base.Function;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Queues;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Predicts which sectors players are heading towards and warms the caches that chunk
+ * generation uses (the {@link WorldFacade} models, road corridors, city elements and
+ * city drawings) for them on a low-priority background pool.
+ * All public methods are expected to be called from the same thread.
+ */
+public class SectorPrefetcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(SectorPrefetcher.class);
+
+    /**
+     * The number of recorded positions per client
+     */
+    private static final int HISTORY_SIZE = 8;
+
+    /**
+     * The maximum number of sectors that are scheduled or in progress
+     */
+    private static final int MAX_IN_FLIGHT = 4;
+
+    /**
+     * How far ahead the movement is extrapolated (in sectors)
+     */
+    private static final double[] LOOK_AHEAD = {0.5, 1.0};
+
+    private final WorldFacade facade;
+
+    private final Function<Sector, ?> cityDrawings;
+
+    private final ExecutorService executor;
+
+    private final Map<String, Deque<Vector2d>> history = Maps.newHashMap();
+    private final Map<String, Set<Sector>> wanted = Maps.newHashMap();
+    private final ConcurrentMap<Sector, Future<?>> inFlight = Maps.newConcurrentMap();
+
+    /**
+     * @param facade the facade whose caches are warmed
+     * @param cityDrawings the (caching) function that records the city rasterization of a sector
+     * @param threads the number of background threads
+     */
+    public SectorPrefetcher(WorldFacade facade, Function<Sector, ?> cityDrawings, int threads) {
+        this.facade = facade;
+        this.cityDrawings = cityDrawings;
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                .setNameFormat("Cities-Prefetch-%d")
+                .setPriority(Thread.MIN_PRIORITY)
+                .setDaemon(true)
+                .build());
+    }
+
+    /**
+     * @return the facade whose caches are warmed
+     */
+    public WorldFacade getFacade() {
+        return facade;
+    }
+
+    /**
+     * Records a new position and schedules the sectors the client is heading towards.
+     * Scheduled sectors that are no longer relevant for any client are cancelled.
+     * @param clientId the client id
+     * @param pos the current position in world block coordinates
+     */
+    public void update(String clientId, Vector2d pos) {
+        Deque<Vector2d> track = history.get(clientId);
+        if (track == null) {
+            track = Queues.newArrayDeque();
+            history.put(clientId, track);
+        }
+
+        track.addLast(new Vector2d(pos));
+        if (track.size() > HISTORY_SIZE) {
+            track.removeFirst();
+        }
+
+        wanted.put(clientId, predict(track));
+
+        cancelIrrelevant();
+
+        for (Sector sector : wanted.get(clientId)) {
+            schedule(sector);
+        }
+    }
+
+    /**
+     * Forgets all information on the given client
+     * @param clientId the client id
+     */
+    public void remove(String clientId) {
+        history.remove(clientId);
+        wanted.remove(clientId);
+        cancelIrrelevant();
+    }
+
+    /**
+     * Cancels all pending work and stops the background threads
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+        inFlight.clear();
+    }
+
+    private Set<Sector> predict(Deque<Vector2d> track) {
+        Set<Sector> sectors = Sets.newLinkedHashSet();
+
+        Vector2d first = track.getFirst();
+        Vector2d last = track.getLast();
+
+        Vector2d dir = new Vector2d(last);
+        dir.sub(first);
+
+        if (dir.lengthSquared() < 1) {
+            return sectors;     // not moving - the current sector is loaded anyway
+        }
+
+        dir.normalize();
+
+        for (double dist : LOOK_AHEAD) {
+            double x = last.x + dir.x * dist * Sector.SIZE;
+            double z = last.y + dir.y * dist * Sector.SIZE;
+            sectors.add(Sectors.getSectorForBlock((int) Math.floor(x), (int) Math.floor(z)));
+        }
+
+        return sectors;
+    }
+
+    private void cancelIrrelevant() {
+        Set<Sector> relevant = Sets.newHashSet();
+        for (Set<Sector> sectors : wanted.values()) {
+            relevant.addAll(sectors);
+        }
+
+        for (Map.Entry<Sector, Future<?>> entry : inFlight.entrySet()) {
+            if (!relevant.contains(entry.getKey())) {
+                // don't interrupt running tasks - this could leave the caches in a weird state
+                entry.getValue().cancel(false);
+                inFlight.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private void schedule(final Sector sector) {
+        if (inFlight.containsKey(sector) || inFlight.size() >= MAX_IN_FLIGHT) {
+            return;
+        }
+
+        Runnable task = new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    facade.getLakes(sector);
+                    facade.getRoads(sector);
+                    facade.getCities(sector);
+
+                    // the rasterized forms are what chunk generation actually reads
+                    facade.getRoadCorridor(sector);
+                    facade.getSectorElements(sector);
+                    cityDrawings.apply(sector);
+                } catch (RuntimeException e) {
+                    logger.warn("Could not prefetch {}", sector, e);
+                }
+            }
+        };
+
+        logger.debug("Prefetching {}", sector);
+
+        // register before execution starts, so that the task can always remove itself
+        FutureTask<Void> future = new FutureTask<Void>(task, null) {
+
+            @Override
+            protected void done() {
+                // the sector might have been cancelled and re-scheduled - remove only this task
+                inFlight.remove(sector, this);
+            }
+        };
+        inFlight.put(sector, future);
+        executor.execute(future);
+    }
+}
@@ -16,19 +16,20 @@
 
 package org.terasology.cities;
 
-import java.awt.Point;
-import java.awt.Polygon;
 import java.awt.Rectangle;
 import java.awt.Shape;
+import java.nio.file.Path;
 import java.util.Collection;
+import java.util.List;
 import java.util.Set;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.terasology.math.Vector2i;
-import javax.vecmath.Vector2d;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.terasology.cities.generator.DefaultTownWallGenerator;
 import org.terasology.cities.generator.LotGeneratorRandom;
 import org.terasology.cities.generator.RoadGeneratorSimple;
@@ -39,12 +40,14 @@
 import org.terasology.cities.generator.SimpleHousingGenerator;
 import org.terasology.cities.generator.SiteConnector;
 import org.terasology.cities.generator.SiteFinderRandom;
+import org.terasology.cities.generator.SiteIndex;
 import org.terasology.cities.generator.TownWallShapeGenerator;
+import org.terasology.cities.generator.WaterBodyLabeler;
 import org.terasology.cities.model.City;
 import org.terasology.cities.model.Junction;
 import org.terasology.cities.model.Lake;
+import org.terasology.cities.model.LakeMask;
 import org.terasology.cities.model.MedievalTown;
-import org.terasology.cities.model.NamedArea;
 import org.terasology.cities.model.Road;
 import org.terasology.cities.model.SimpleFence;
 import org.terasology.cities.model.SimpleLot;
@@ -53,28 +56,33 @@
 import org.terasology.cities.model.bldg.SimpleChurch;
 import org.terasology.cities.model.bldg.TownWall;
 import org.terasology.cities.common.CachingFunction;
+import org.terasology.cities.common.SharedForkJoinPool;
+import org.terasology.cities.common.SectorUtils;
+import org.terasology.cities.metrics.PipelineMetrics;
+import org.terasology.cities.metrics.PipelineStage;
+import org.terasology.cities.metrics.TimedFunction;
+import org.terasology.cities.persistence.SectorStore;
+import org.terasology.cities.raster.RoadCorridor;
+import org.terasology.cities.raster.RoadSegmentIndex;
+import org.terasology.cities.raster.SectorElements;
 import org.terasology.commonworld.Orientation;
 import org.terasology.commonworld.Sector;
+import org.terasology.commonworld.Sectors;
 import org.terasology.commonworld.UnorderedPair;
-import org.terasology.commonworld.contour.Contour;
-import org.terasology.commonworld.contour.ContourTracer;
 import org.terasology.commonworld.heightmap.HeightMap;
 import org.terasology.commonworld.heightmap.HeightMaps;
-import org.terasology.entitySystem.entity.EntityManager;
-import org.terasology.entitySystem.entity.EntityRef;
 import org.terasology.namegenerator.town.DebugTownTheme;
 import org.terasology.namegenerator.town.TownAffinityVector;
 import org.terasology.namegenerator.town.TownNameProvider;
-import org.terasology.namegenerator.waters.DebugWaterTheme;
-import org.terasology.namegenerator.waters.WaterNameProvider;
-import org.terasology.registry.CoreRegistry;
-import org.terasology.world.WorldComponent;
+import org.terasology.world.chunks.ChunkConstants;
 
 import com.google.common.base.Function;
 import com.google.common.base.Functions;
 import com.google.common.base.Objects;
-import com.google.common.base.Stopwatch;
+import com.google.common.base.Optional;
 import com.google.common.cache.LoadingCache;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.collect.Sets;
 
 /**
@@ -82,9 +90,36 @@
  */
 public class WorldFacade {
 
-    private static final Logger logger = LoggerFactory.getLogger(WorldFacade.class);
+    // cache budgets in weight units (see ModelWeighers) - the cheap stages are kept longer
+    private static final long SITE_CACHE_WEIGHT = 50000;
+    private static final long SITE_INDEX_CACHE_SIZE = 1024;
+    private static final long CONNECTION_CACHE_WEIGHT = 100000;
+    private static final long ROAD_CACHE_WEIGHT = 100000;
+    private static final long ROAD_GRAPH_CACHE_SIZE = 4096;
+    private static final long JUNCTION_CACHE_SIZE = 4096;
+    private static final long ROAD_SHAPE_CACHE_WEIGHT = 1000000;
+    private static final long ROAD_CORRIDOR_CACHE_SIZE = 64;
+    private static final long LAKE_CACHE_WEIGHT = 200000;
+    private static final long LAKE_MASK_CACHE_SIZE = 256;
+    private static final long CITY_CACHE_WEIGHT = 50000;
+    private static final long SECTOR_ELEMENTS_CACHE_SIZE = 64;
 
-    private LoadingCache<Sector, Set<City>> decoratedCities;
+    /**
+     * Part of the sector store key. Increase it whenever a change affects the generated
+     * models, so that sectors of older versions are not loaded anymore.
+     */
+    private static final int GENERATOR_VERSION = 4;
+
+    /**
+     * Decorates the sites of a sector in parallel - released in {@link #close()}
+     */
+    private final ForkJoinPool decorationPool = SharedForkJoinPool.acquire();
+
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private final LoadingCache<Sector, Set<City>> decoratedCities;
+
+    private final LoadingCache<Sector, SectorElements> sectorElements;
 
     private Function<Site, Set<Site>> connectedCities;
 
@@ -92,20 +127,59 @@ public class WorldFacade {
 
     private Function<Vector2i, Junction> junctions;
 
-    private Function<Sector, Set<Road>> roadMap;
+    private final RoadGraph roadGraph;
 
-    private Function<Sector, Shape> roadShapeFunc;
+    private final LoadingCache<Sector, Set<Road>> roadMap;
 
-    private Function<Sector, Set<Lake>> lakeMap;
+    private final LoadingCache<Sector, Shape> roadShapeFunc;
+
+    private final LoadingCache<Sector, RoadCorridor> roadCorridors;
+
+    private final WaterBodyLabeler waterLabeler;
+
+    private final LoadingCache<Sector, Set<Lake>> lakeMap;
+
+    private final LoadingCache<Sector, LakeMask> lakeMasks;
+
+    private final PipelineMetrics metrics = new PipelineMetrics();
+
+    private final Optional<SectorStore> store;
 
     /**
+     * Creates a facade without a persistent sector store
      * @param seed the seed value
-     * @param heightMap the height map to use
+     * @param heightMap the height map to use (must be thread-safe)
+     * @param terrainConfig the terrain configuration
+     * @param spawnConfig the city spawn configuration
      */
-    public WorldFacade(final String seed, final HeightMap heightMap) {
+    public WorldFacade(final String seed, final HeightMap heightMap,
+                       final CityTerrainComponent terrainConfig, final CitySpawnComponent spawnConfig) {
+        this(seed, heightMap, terrainConfig, spawnConfig, Optional.<Path>absent());
+    }
 
-        final CityTerrainComponent terrainConfig = WorldFacade.getWorldEntity().getComponent(CityTerrainComponent.class);
-        final CitySpawnComponent spawnConfig = WorldFacade.getWorldEntity().getComponent(CitySpawnComponent.class);
+    /**
+     * All getters are thread-safe. Every sector model is built only once, even if it is
+     * requested by several threads at the same time (as long as it is not evicted).
+     * @param seed the seed value
+     * @param heightMap the height map to use (must be thread-safe)
+     * @param terrainConfig the terrain configuration
+     * @param spawnConfig the city spawn configuration
+     * @param storeDir the base directory of the persistent sector store (if available)
+     */
+    public WorldFacade(final String seed, final HeightMap heightMap,
+                       final CityTerrainComponent terrainConfig, final CitySpawnComponent spawnConfig,
+                       Optional<Path> storeDir) {
+
+        if (storeDir.isPresent()) {
+            String key = SectorStore.createKey(seed, GENERATOR_VERSION,
+                    terrainConfig.getSeaLevel(), terrainConfig.getSnowLine(), terrainConfig.isSymmetric(),
+                    spawnConfig.getMinCitiesPerSector(), spawnConfig.getMaxCitiesPerSector(),
+                    spawnConfig.getMinCityRadius(), spawnConfig.getMaxCityRadius(),
+                    spawnConfig.getMaxConnectedCitiesDistance(), spawnConfig.isSparseRoads());
+            store = Optional.of(new SectorStore(storeDir.get(), key));
+        } else {
+            store = Optional.absent();
+        }
 
         junctions = new Function<Vector2i, Junction>() {
 
@@ -115,63 +189,35 @@ public Junction apply(Vector2i input) {
             }
 
         };
-        junctions = CachingFunction.wrap(junctions);
-
-        lakeMap = CachingFunction.wrap(new Function<Sector, Set<Lake>>() {
+        junctions = CachingFunction.wrap(junctions, JUNCTION_CACHE_SIZE);
 
-            @Override
-            public Set<Lake> apply(Sector sector) {
-
-                Integer salt = 2354234;
-                int ngseed = Objects.hashCode(salt, seed, sector);
-                WaterNameProvider ng = new WaterNameProvider(ngseed, new DebugWaterTheme());
+        waterLabeler = new WaterBodyLabeler(seed, heightMap, terrainConfig.getSeaLevel());
 
-                int minSize = 16;
-
-                int scale = 8;
-                int size = Sector.SIZE / scale;
-                HeightMap orgHm = HeightMaps.scalingArea(heightMap, scale);
-                Vector2i coords = sector.getCoords();
+        Function<Sector, Set<Lake>> lakeFunc = waterLabeler;
+        lakeFunc = TimedFunction.wrap(lakeFunc, metrics.get(PipelineStage.LAKES));
 
-                Rectangle sectorRect = new Rectangle(coords.x * size, coords.y * size, size, size);
-                ContourTracer ct = new ContourTracer(orgHm, sectorRect, terrainConfig.getSeaLevel());
+        if (store.isPresent()) {
+            final Function<Sector, Set<Lake>> storedLakes = store.get().lakes(lakeFunc);
 
-                Set<Lake> lakes = Sets.newHashSet();
+            // lakes that are loaded from disk are replaced by the shared instances
+            lakeFunc = new Function<Sector, Set<Lake>>() {
 
-                for (Contour c : ct.getOuterContours()) {
-                    Contour scaledContour = c.scale(scale);
-                    Polygon polyLake = scaledContour.getPolygon();
-
-                    if (polyLake.getBounds().width > minSize
-                     && polyLake.getBounds().height > minSize) {
-                        Lake lake = new Lake(scaledContour, ng.generateName());
-
-                        for (Contour isl : ct.getInnerContours()) {
-                            Rectangle bboxIsland = isl.getPolygon().getBounds();
-
-                            if (polyLake.getBounds().contains(bboxIsland)) {
-                                if (allInside(polyLake, isl.getPoints())) {
-                                    lake.addIsland(isl);
-                                }
-                            }
-                        }
-
-                        lakes.add(lake);
-                    }
+                @Override
+                public Set<Lake> apply(Sector sector) {
+                    return waterLabeler.intern(storedLakes.apply(sector));
                 }
+            };
+        }
 
-                return lakes;
-            }
+        lakeMap = CachingFunction.wrap(lakeFunc, LAKE_CACHE_WEIGHT, ModelWeighers.lakes());
 
-            private boolean allInside(Polygon polygon, Collection<Point> points) {
-                for (Point pt : points) {
-                    if (!polygon.contains(pt)) {
-                        return false;
-                    }
-                }
-                return true;
+        lakeMasks = CachingFunction.wrap(new Function<Sector, LakeMask>() {
+
+            @Override
+            public LakeMask apply(Sector sector) {
+                return LakeMask.create(sector, lakeMap.getUnchecked(sector));
             }
-        });
+        }, LAKE_MASK_CACHE_SIZE);
 
         int minCitiesPerSector = spawnConfig.getMinCitiesPerSector();
         int maxCitiesPerSector = spawnConfig.getMaxCitiesPerSector();
@@ -182,14 +228,20 @@ private boolean allInside(Polygon polygon, Collection<Point> points) {
 
         Function<? super Sector, AreaInfo> sectorInfos = Functions.constant(globalAreaInfo);
         SiteFinderRandom cpr = new SiteFinderRandom(seed, sectorInfos, minCitiesPerSector, maxCitiesPerSector, minSize, maxSize);
-        final Function<Sector, Set<Site>> siteMap = CachingFunction.wrap(cpr);
+        Function<Sector, Set<Site>> timedCpr = TimedFunction.wrap(cpr, metrics.get(PipelineStage.SITES));
+        final Function<Sector, Set<Site>> siteMap = CachingFunction.wrap(timedCpr, SITE_CACHE_WEIGHT, ModelWeighers.collectionSize());
 
         double maxDist = spawnConfig.getMaxConnectedCitiesDistance();
-        connectedCities = new SiteConnector(siteMap, maxDist);
-        connectedCities = CachingFunction.wrap(connectedCities);
+        SiteIndex siteIndex = new SiteIndex(siteMap, SITE_INDEX_CACHE_SIZE);
+        SiteConnector.Topology topology = spawnConfig.isSparseRoads()
+                ? SiteConnector.Topology.RELATIVE_NEIGHBORHOOD
+                : SiteConnector.Topology.ALL_IN_RANGE;
+        connectedCities = new SiteConnector(siteIndex, maxDist, topology);
+        connectedCities = CachingFunction.wrap(connectedCities, CONNECTION_CACHE_WEIGHT, ModelWeighers.collectionSize());
 
         sectorConnections = new SectorConnector(siteMap, connectedCities);
-        sectorConnections = CachingFunction.wrap(sectorConnections);
+        sectorConnections = TimedFunction.wrap(sectorConnections, metrics.get(PipelineStage.SITE_CONNECTIONS));
+        sectorConnections = CachingFunction.wrap(sectorConnections, CONNECTION_CACHE_WEIGHT, ModelWeighers.collectionSize());
 
         Function<UnorderedPair<Site>, Road> rg = new Function<UnorderedPair<Site>, Road>() {
             private RoadGeneratorSimple rgs = new RoadGeneratorSimple(junctions);
@@ -197,63 +249,61 @@ private boolean allInside(Polygon polygon, Collection<Point> points) {
 
             @Override
             public Road apply(UnorderedPair<Site> input) {
-                Road road = rgs.apply(input);
-                rmr.apply(road);
-                return road;
+                return rmr.apply(rgs.apply(input));
             }
 
         };
 
-        final Function<UnorderedPair<Site>, Road> cachedRoadgen = CachingFunction.wrap(rg);
-
-        roadMap = new Function<Sector, Set<Road>>() {
+        roadGraph = new RoadGraph(sectorConnections, rg, lakeMasks, ROAD_GRAPH_CACHE_SIZE);
 
-            @Override
-            public Set<Road> apply(Sector sector) {
-                Set<Road> allRoads = Sets.newHashSet();
+        Function<Sector, Set<Road>> roadFunc = roadGraph;
+        roadFunc = TimedFunction.wrap(roadFunc, metrics.get(PipelineStage.ROADS));
 
-                Set<UnorderedPair<Site>> localConns = sectorConnections.apply(sector);
-                Set<UnorderedPair<Site>> allConns = Sets.newHashSet(localConns);
-                Set<Lake> allBlockedAreas = Sets.newHashSet(lakeMap.apply(sector));
+        if (store.isPresent()) {
+            final Function<Sector, Set<Road>> storedRoads = store.get().roads(roadFunc, junctions);
 
-                // add all neighbors, because their roads might be passing through
-                for (Orientation dir : Orientation.values()) {
-                    Sector neighbor = sector.getNeighbor(dir);
+            // roads that are loaded from disk are replaced by the shared instances
+            roadFunc = new Function<Sector, Set<Road>>() {
 
-                    allConns.addAll(sectorConnections.apply(neighbor));
-                    allBlockedAreas.addAll(lakeMap.apply(sector));
+                @Override
+                public Set<Road> apply(Sector sector) {
+                    return roadGraph.intern(storedRoads.apply(sector));
                 }
+            };
+        }
 
-                for (UnorderedPair<Site> conn : allConns) {
-                    Road road = cachedRoadgen.apply(conn);
-
-                    if (!isBlocked(road, lakeMap.apply(sector))) {
-                        allRoads.add(road);
-                    }
-                }
+        roadMap = CachingFunction.wrap(roadFunc, ROAD_CACHE_WEIGHT, ModelWeighers.roads());
 
-                return allRoads;
-            }
+        // roadMap holds only the roads that cross a sector, but cities reach into neighboring sectors
+        Function<Sector, Set<Road>> nearbyRoads = new Function<Sector, Set<Road>>() {
 
-            public boolean isBlocked(Road road, Set<? extends NamedArea> blockedAreas) {
-                for (Vector2i pt : road.getPoints()) {
-                    Vector2d v = new Vector2d(pt.x, pt.y);
-                    for (NamedArea area : blockedAreas) {
-                        if (area.contains(v)) {
-                            return true;
-                        }
-                    }
+            @Override
+            public Set<Road> apply(Sector sector) {
+                Set<Road> roads = Sets.newHashSet(roadMap.getUnchecked(sector));
+                for (Orientation dir : Orientation.values()) {
+                    roads.addAll(roadMap.getUnchecked(sector.getNeighbor(dir)));
                 }
-
-                return false;
+                return roads;
             }
         };
 
+        RoadShapeGenerator blockedRoads = new RoadShapeGenerator(nearbyRoads, spawnConfig.getMaxCityRadius());
+        Function<Sector, Shape> roadShapeGen = TimedFunction.wrap(blockedRoads, metrics.get(PipelineStage.ROAD_SHAPE));
+        roadShapeFunc = CachingFunction.wrap(roadShapeGen, ROAD_SHAPE_CACHE_WEIGHT, ModelWeighers.shape());
 
-        roadMap = CachingFunction.wrap(roadMap);
+        // terrain heights at the segment ends are sampled only once per sector - the segments
+        // are only needed to build the corridor, so they are not cached themselves
+        roadCorridors = CachingFunction.wrap(new Function<Sector, RoadCorridor>() {
 
-        roadShapeFunc = new RoadShapeGenerator(roadMap);
-        roadShapeFunc = CachingFunction.wrap(roadShapeFunc);
+            @Override
+            public RoadCorridor apply(Sector sector) {
+                Vector2i coords = sector.getCoords();
+                Rectangle area = new Rectangle(coords.x * Sector.SIZE, coords.y * Sector.SIZE, Sector.SIZE, Sector.SIZE);
+                RoadSegmentIndex segments = RoadSegmentIndex.create(roadMap.getUnchecked(sector), heightMap, area,
+                        ChunkConstants.SIZE_X, ChunkConstants.SIZE_Z);
+                return RoadCorridor.create(sector, segments);
+            }
+        }, ROAD_CORRIDOR_CACHE_SIZE);
 
         final DefaultTownWallGenerator twg = new DefaultTownWallGenerator(seed, heightMap);
         final LotGeneratorRandom housingLotGenerator = new LotGeneratorRandom(seed);
@@ -262,111 +312,164 @@ public boolean isBlocked(Road road, Set<? extends NamedArea> blockedAreas) {
         final SimpleFenceGenerator sfg = new SimpleFenceGenerator(seed);
         final SimpleChurchGenerator sacg = new SimpleChurchGenerator(seed, heightMap);
 
-        decoratedCities = CachingFunction.wrap(new Function<Sector, Set<City>>() {
+        Function<Sector, Set<City>> cityFunc = new Function<Sector, Set<City>>() {
 
             @Override
             public Set<City> apply(Sector input) {
 
                 int sectorSeed = Objects.hashCode(seed, input);
                 TownNameProvider nameGen = new TownNameProvider(sectorSeed, new DebugTownTheme());
-                Stopwatch pAll = null;
-                Stopwatch pSites = null;
-                Stopwatch pRoads = null;
 
-                if (logger.isInfoEnabled()) {
-                    pAll = Stopwatch.createStarted();
-                }
+                // sites and roads are timed in their own stages
+                Set<Site> sites = siteMap.apply(input);
+                Shape roadShape = roadShapeFunc.apply(input);
 
-                if (logger.isInfoEnabled()) {
-                    pSites = Stopwatch.createStarted();
-                }
+                long start = System.nanoTime();
 
-                Set<Site> sites = siteMap.apply(input);
+                // names are drawn from a sequential generator -> assign them in iteration order first
+                List<Callable<MedievalTown>> tasks = Lists.newArrayList();
+                for (final Site site : sites) {
+                    final String name = nameGen.generateName(TownAffinityVector.create().prefix(0.2).postfix(0.2));
+                    final Sector sector = input;
+                    final Shape blockedShape = roadShape;
+                    tasks.add(new Callable<MedievalTown>() {
 
-                if (logger.isInfoEnabled()) {
-                    logger.info("Generated settlement sites for {} in {}ms.", input, pSites.elapsed(TimeUnit.MILLISECONDS));
+                        @Override
+                        public MedievalTown call() {
+                            return decorate(sector, site, name, blockedShape);
+                        }
+                    });
                 }
 
-                if (logger.isInfoEnabled()) {
-                    pRoads = Stopwatch.createStarted();
+                Set<City> cities = Sets.newHashSet();
+
+                if (closed.get()) {
+                    // the pool has been released in close() - decorate in the calling thread
+                    for (Callable<MedievalTown> task : tasks) {
+                        cities.add(ForkJoinTask.adapt(task).invoke());
+                    }
+                } else {
+                    // sites are decorated in parallel, but collected in the original order
+                    for (Future<MedievalTown> future : decorationPool.invokeAll(tasks)) {
+                        cities.add(Futures.getUnchecked(future));
+                    }
                 }
 
-                Shape roadShape = roadShapeFunc.apply(input);
+                metrics.recordSince(PipelineStage.CITIES, start);
 
-                if (logger.isInfoEnabled()) {
-                    logger.info("Generated roads for {} in {}ms.", input, pRoads.elapsed(TimeUnit.MILLISECONDS));
-                }
+                return cities;
+            }
 
-                Set<City> cities = Sets.newHashSet();
+            private MedievalTown decorate(Sector sector, Site site, String name, Shape roadShape) {
 
-                for (Site site : sites) {
+                int minX = site.getPos().x - site.getRadius();
+                int minZ = site.getPos().y - site.getRadius();
 
-                    Stopwatch pSite = null;
-                    if (logger.isInfoEnabled()) {
-                        pSite = Stopwatch.createStarted();
-                    }
+                Rectangle cityArea = new Rectangle(minX, minZ, site.getRadius() * 2, site.getRadius() * 2);
+                HeightMap cityAreaHeightMap = HeightMaps.caching(heightMap, cityArea, 4);
 
-                    int minX = site.getPos().x - site.getRadius();
-                    int minZ = site.getPos().y - site.getRadius();
+                // every site gets its own copy of the blocked area
+                AreaInfo si = new AreaInfo(terrainConfig, cityAreaHeightMap, cityArea);
+                si.addBlockedArea(roadShape);
 
-                    Rectangle cityArea = new Rectangle(minX, minZ, site.getRadius() * 2, site.getRadius() * 2);
-                    HeightMap cityAreaHeightMap = HeightMaps.caching(heightMap, cityArea, 4);
+                MedievalTown town = new MedievalTown(name, site.getPos(), site.getRadius());
 
-                    AreaInfo si = new AreaInfo(terrainConfig, cityAreaHeightMap);
-                    si.addBlockedArea(roadShape);
+                // add a town wall if radius is larger than 1/4
+                int minRadForTownWall = (spawnConfig.getMinCityRadius() * 3 + spawnConfig.getMaxCityRadius()) / 4;
 
-                    String name = nameGen.generateName(TownAffinityVector.create().prefix(0.2).postfix(0.2));
-                    MedievalTown town = new MedievalTown(name, site.getPos(), site.getRadius());
+                if (town.getRadius() > minRadForTownWall) {
+                    long start = System.nanoTime();
+                    TownWall tw = twg.generate(town, si);
+                    town.setTownWall(tw);
 
-                    // add a town wall if radius is larger than 1/4
-                    int minRadForTownWall = (spawnConfig.getMinCityRadius() * 3 + spawnConfig.getMaxCityRadius()) / 4;
+                    TownWallShapeGenerator twsg = new TownWallShapeGenerator();
+                    Shape townWallShape = twsg.computeShape(tw);
+                    si.addBlockedArea(townWallShape);
+                    metrics.recordSince(PipelineStage.TOWN_WALL, start);
+                }
+
+                // lots and buildings are interleaved - sum up their times and record them once per city
+                long lotStart = System.nanoTime();
+                Set<SimpleLot> churchLots = churchLotGenerator.generate(town, si);
+                long lotNanos = System.nanoTime() - lotStart;
+
+                long bldgStart = System.nanoTime();
+                if (!churchLots.isEmpty()) {
+                    SimpleLot lot = churchLots.iterator().next();
+                    SimpleChurch church = sacg.generate(lot);
+                    lot.addBuilding(church);
+                    town.add(lot);
+                }
+                long bldgNanos = System.nanoTime() - bldgStart;
 
-                    if (town.getRadius() > minRadForTownWall) {
-                        TownWall tw = twg.generate(town, si);
-                        town.setTownWall(tw);
+                lotStart = System.nanoTime();
+                Set<SimpleLot> housingLots = housingLotGenerator.generate(town, si);
+                lotNanos += System.nanoTime() - lotStart;
 
-                        TownWallShapeGenerator twsg = new TownWallShapeGenerator();
-                        Shape townWallShape = twsg.computeShape(tw);
-                        si.addBlockedArea(townWallShape);
-                    }
+                bldgStart = System.nanoTime();
+                for (SimpleLot lot : housingLots) {
+                    town.add(lot);
 
-                    Set<SimpleLot> churchLots = churchLotGenerator.generate(town, si);
-                    if (!churchLots.isEmpty()) {
-                        SimpleLot lot = churchLots.iterator().next();
-                        SimpleChurch church = sacg.generate(lot);
-                        lot.addBuilding(church);
-                        town.add(lot);
+                    for (SimpleBuilding bldg : blgGenerator.apply(lot)) {
+                        lot.addBuilding(bldg);
+                        SimpleFence fence = sfg.createFence(town, lot.getShape());
+                        lot.setFence(fence);
                     }
+                }
+                bldgNanos += System.nanoTime() - bldgStart;
 
-                    Set<SimpleLot> housingLots = housingLotGenerator.generate(town, si);
+                metrics.get(PipelineStage.LOTS).record(lotNanos);
+                metrics.get(PipelineStage.BUILDINGS).record(bldgNanos);
 
-                    for (SimpleLot lot : housingLots) {
-                        town.add(lot);
+                return town;
+            }
+        };
 
-                        for (SimpleBuilding bldg : blgGenerator.apply(lot)) {
-                            lot.addBuilding(bldg);
-                            SimpleFence fence = sfg.createFence(town, lot.getShape());
-                            lot.setFence(fence);
-                        }
-                    }
+        if (store.isPresent()) {
+            cityFunc = store.get().cities(cityFunc);
+        }
 
-                    if (logger.isInfoEnabled()) {
-                        logger.info("Generated city '{}' in {} in {}ms.", town, input, pSite.elapsed(TimeUnit.MILLISECONDS));
-                    }
+        // loading caches guarantee that a sector is built only once, even if several threads request it
+        decoratedCities = CachingFunction.wrap(cityFunc, CITY_CACHE_WEIGHT, ModelWeighers.cities());
 
-                    cities.add(town);
-                }
+        // cities can reach into neighboring sectors -> collect from the whole neighborhood, but only what overlaps the sector
+        sectorElements = CachingFunction.wrap(new Function<Sector, SectorElements>() {
 
-                if (logger.isInfoEnabled()) {
-                    logger.info("Generated {} .. in {}ms.", input, pAll.elapsed(TimeUnit.MILLISECONDS));
+            @Override
+            public SectorElements apply(Sector sector) {
+                List<City> cities = Lists.newArrayList(decoratedCities.getUnchecked(sector));
+                for (Orientation dir : Orientation.values()) {
+                    cities.addAll(decoratedCities.getUnchecked(sector.getNeighbor(dir)));
                 }
 
-                return cities;
+                Vector2i coords = sector.getCoords();
+                Rectangle area = new Rectangle(coords.x * Sector.SIZE, coords.y * Sector.SIZE, Sector.SIZE, Sector.SIZE);
+                return SectorElements.create(cities, area);
             }
-        });
+        }, SECTOR_ELEMENTS_CACHE_SIZE);
+    }
+
+    /**
+     * @return the latency histograms of all pipeline stages
+     */
+    public PipelineMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Writes all pending models to the sector store and closes it. Releases the worker pool.
+     * The facade can still be used afterwards, but new models are not stored anymore and
+     * cities are decorated in the calling thread. Calling this more than once has no effect.
+     */
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
 
-        // this required by WorldEventReceiver
-        CoreRegistry.put(WorldFacade.class, this);
+        if (store.isPresent()) {
+            store.get().close();
+        }
+        SharedForkJoinPool.release();
     }
 
     /**
@@ -374,6 +477,43 @@ public Set<City> apply(Sector input) {
      */
     public void expungeCache() {
         decoratedCities.invalidateAll();
+        sectorElements.invalidateAll();
+    }
+
+    /**
+     * Evicts the expensive per-sector models (cities, roads, lakes) of all sectors
+     * that are not close to any of the given sectors. Sites and connections are cheap
+     * and are left to the weight-based eviction.
+     * @param active the sectors that should be retained (e.g. where players are)
+     * @param radius the number of sectors around an active sector that are retained
+     */
+    public void retainAround(Collection<Sector> active, int radius) {
+        if (active.isEmpty()) {
+            return;
+        }
+
+        evictDistant(decoratedCities, active, radius);
+        evictDistant(sectorElements, active, radius);
+        evictDistant(roadShapeFunc, active, radius);
+        evictDistant(roadMap, active, radius);
+        evictDistant(roadCorridors, active, radius);
+        evictDistant(lakeMap, active, radius);
+        evictDistant(lakeMasks, active, radius);
+
+        roadGraph.retainAround(active, radius);
+        waterLabeler.retainAround(active, radius);
+    }
+
+    private static void evictDistant(LoadingCache<Sector, ?> cache, Collection<Sector> active, int radius) {
+        List<Sector> distant = Lists.newArrayList();
+
+        for (Sector sector : cache.asMap().keySet()) {
+            if (!SectorUtils.isNear(sector, active, radius)) {
+                distant.add(sector);
+            }
+        }
+
+        cache.invalidateAll(distant);
     }
 
     /**
@@ -384,6 +524,14 @@ public Set<Road> getRoads(Sector sector) {
         return roadMap.apply(sector);
     }
 
+    /**
+     * @param sector the sector
+     * @return the rasterized road corridors of that sector
+     */
+    public RoadCorridor getRoadCorridor(Sector sector) {
+        return roadCorridors.getUnchecked(sector);
+    }
+
     /**
      * @param sector the sector
      * @return all cities in that sector
@@ -392,6 +540,14 @@ public Set<City> getCities(Sector sector) {
         return decoratedCities.apply(sector);
     }
 
+    /**
+     * @param sector the sector
+     * @return the city elements that overlap that sector (including parts of neighboring cities)
+     */
+    public SectorElements getSectorElements(Sector sector) {
+        return sectorElements.getUnchecked(sector);
+    }
+
     /**
      * @param sector the sector
      * @return a set of all lakes in that sector
@@ -400,13 +556,13 @@ public Set<Lake> getLakes(Sector sector) {
         return lakeMap.apply(sector);
     }
 
-
-    public static EntityRef getWorldEntity() {
-        EntityManager entityManager = CoreRegistry.get(EntityManager.class);
-
-        for (EntityRef entity : entityManager.getEntitiesWith(WorldComponent.class)) {
-            return entity;
-        }
-        return EntityRef.NULL;
+    /**
+     * @param x the x world coordinate
+     * @param z the z world coordinate
+     * @return the lake at that position, if there is one
+     */
+    public Optional<Lake> getLake(int x, int z) {
+        Sector sector = Sectors.getSectorForBlock(x, z);
+        return lakeMasks.getUnchecked(sector).getLake(x, z);
     }
 }
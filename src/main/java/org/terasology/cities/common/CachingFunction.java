@@ -20,6 +20,7 @@
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Weigher;
 
 /**
  * Caches function calls (thread-safe)
@@ -36,4 +37,30 @@
     public static <F, T> LoadingCache<F, T> wrap(Function<F, T> function) {
         return CacheBuilder.newBuilder().build(CacheLoader.from(function));
     }
+
+    /**
+     * Creates a bounded cache. If more than the given number of entries are cached,
+     * entries that have not been accessed recently are evicted first.
+     * @param function the function to wrap
+     * @param maxSize the maximum number of cached entries
+     * @return the caching function
+     */
+    public static <F, T> LoadingCache<F, T> wrap(Function<F, T> function, long maxSize) {
+        return CacheBuilder.newBuilder().maximumSize(maxSize).build(CacheLoader.from(function));
+    }
+
+    /**
+     * Creates a bounded cache. If the total weight of all entries exceeds the given
+     * maximum, entries that have not been accessed recently are evicted first.
+     * @param function the function to wrap
+     * @param maxWeight the maximum total weight of all cached entries
+     * @param weigher estimates the (relative) memory footprint of an entry
+     * @return the caching function
+     */
+    public static <F, T> LoadingCache<F, T> wrap(Function<F, T> function, long maxWeight, Weigher<? super F, ? super T> weigher) {
+        return CacheBuilder.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher(weigher)
+                .build(CacheLoader.from(function));
+    }
 }
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.terasology.cities.common;
+
+import java.util.Collection;
+
+import org.terasology.commonworld.Sector;
+import org.terasology.math.Vector2i;
+
+/**
+ * Sector-related helpers that are not provided by {@link org.terasology.commonworld.Sectors}
+ */
+public final class SectorUtils {
+
+    private SectorUtils() {
+        // no instances
+    }
+
+    /**
+     * @param sector the sector to test
+     * @param active the reference sectors
+     * @param radius the max. distance in sectors (per axis)
+     * @return true if the sector is at most <code>radius</code> sectors away from any of the reference sectors
+     */
+    public static boolean isNear(Sector sector, Collection<Sector> active, int radius) {
+        Vector2i pos = sector.getCoords();
+        for (Sector other : active) {
+            Vector2i otherPos = other.getCoords();
+            if (Math.abs(pos.x - otherPos.x) <= radius && Math.abs(pos.y - otherPos.y) <= radius) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.common;
+
+import java.util.concurrent.ForkJoinPool;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Provides one fork/join pool that is shared by all parallel generation stages.
+ * The pool is created when it is acquired for the first time and shut down
+ * when the last user releases it.
+ */
+public final class SharedForkJoinPool {
+
+    private static ForkJoinPool pool;
+    private static int users;
+
+    private SharedForkJoinPool() {
+        // no instances
+    }
+
+    /**
+     * Every call must be matched by exactly one call to {@link #release()}
+     * @return the shared pool
+     */
+    public static synchronized ForkJoinPool acquire() {
+        if (pool == null) {
+            pool = new ForkJoinPool();
+        }
+        users++;
+        return pool;
+    }
+
+    /**
+     * Shuts the pool down once all users have released it
+     */
+    public static synchronized void release() {
+        Preconditions.checkState(users > 0, "The pool has not been acquired");
+
+        users--;
+        if (users == 0) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+}
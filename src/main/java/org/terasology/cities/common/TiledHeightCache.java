@@ -0,0 +1,125 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.terasology.cities.common;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.terasology.commonworld.heightmap.HeightMap;
+import org.terasology.commonworld.heightmap.HeightMapAdapter;
+import org.terasology.math.Vector2i;
+
+import com.google.common.base.Function;
+import com.google.common.cache.LoadingCache;
+import com.google.common.primitives.Shorts;
+
+/**
+ * A height map that evaluates another (expensive) height map in square tiles and keeps
+ * the results as <code>short[]</code> tiles in a shared, bounded cache (thread-safe).
+ * Tiles are loaded only once, even if several threads request them concurrently.
+ * Tiles that have not been accessed recently are evicted first.
+ */
+public class TiledHeightCache extends HeightMapAdapter {
+
+    private static final int TILE_BITS = 6;
+    private static final int TILE_SIZE = 1 << TILE_BITS;
+    private static final int TILE_MASK = TILE_SIZE - 1;
+
+    /**
+     * Recently used tiles are looked up in this direct-mapped table first
+     */
+    private static final int RECENT_BITS = 8;
+    private static final int RECENT_MASK = (1 << RECENT_BITS) - 1;
+
+    private final HeightMap source;
+    private final LoadingCache<Vector2i, Tile> tiles;
+    private final AtomicReferenceArray<Tile> recent = new AtomicReferenceArray<>(1 << RECENT_BITS);
+
+    /**
+     * @param source the height map to evaluate
+     * @param maxTiles the maximum number of cached tiles (64x64 blocks each)
+     */
+    public TiledHeightCache(HeightMap source, long maxTiles) {
+        this.source = source;
+        this.tiles = CachingFunction.wrap(new Function<Vector2i, Tile>() {
+
+            @Override
+            public Tile apply(Vector2i coords) {
+                return load(coords.x, coords.y);
+            }
+        }, maxTiles);
+    }
+
+    @Override
+    public int apply(int x, int z) {
+        Tile tile = getTile(x >> TILE_BITS, z >> TILE_BITS);
+        return tile.heights[((z & TILE_MASK) << TILE_BITS) | (x & TILE_MASK)];
+    }
+
+    private Tile getTile(int tx, int tz) {
+        int slot = (tx * 31 + tz) & RECENT_MASK;
+        Tile tile = recent.get(slot);
+        if (tile == null || tile.tx != tx || tile.tz != tz) {
+            tile = tiles.getUnchecked(new Vector2i(tx, tz));
+            recent.set(slot, tile);
+        }
+        return tile;
+    }
+
+    /**
+     * Drops all cached tiles, e.g. when the source changes
+     */
+    public void invalidateAll() {
+        tiles.invalidateAll();
+        for (int i = 0; i < recent.length(); i++) {
+            recent.set(i, null);
+        }
+    }
+
+    /**
+     * @return the number of cached tiles
+     */
+    public long size() {
+        return tiles.size();
+    }
+
+    private Tile load(int tx, int tz) {
+        short[] heights = new short[TILE_SIZE * TILE_SIZE];
+        int x0 = tx << TILE_BITS;
+        int z0 = tz << TILE_BITS;
+
+        for (int z = 0; z < TILE_SIZE; z++) {
+            for (int x = 0; x < TILE_SIZE; x++) {
+                heights[(z << TILE_BITS) | x] = Shorts.saturatedCast(source.apply(x0 + x, z0 + z));
+            }
+        }
+
+        return new Tile(tx, tz, heights);
+    }
+
+    private static final class Tile {
+        private final int tx;
+        private final int tz;
+        private final short[] heights;
+
+        Tile(int tx, int tz, short[] heights) {
+            this.tx = tx;
+            this.tz = tz;
+            this.heights = heights;
+        }
+    }
+}
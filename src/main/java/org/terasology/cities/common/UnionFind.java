@@ -0,0 +1,87 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.common;
+
+import java.util.Arrays;
+
+/**
+ * A disjoint-set forest over consecutive int IDs with path halving and union by size (not thread-safe)
+ */
+public class UnionFind {
+
+    private int[] parent = new int[64];
+    private int[] size = new int[64];
+    private int count;
+
+    /**
+     * @return the ID of a new singleton set
+     */
+    public int add() {
+        if (count == parent.length) {
+            parent = Arrays.copyOf(parent, count * 2);
+            size = Arrays.copyOf(size, count * 2);
+        }
+
+        parent[count] = count;
+        size[count] = 1;
+        return count++;
+    }
+
+    /**
+     * @param id the element ID
+     * @return the representative of the set that contains the element
+     */
+    public int find(int id) {
+        int x = id;
+        while (parent[x] != x) {
+            parent[x] = parent[parent[x]];
+            x = parent[x];
+        }
+        return x;
+    }
+
+    /**
+     * @param a the first element
+     * @param b the second element
+     * @return the representative of the merged set
+     */
+    public int union(int a, int b) {
+        int ra = find(a);
+        int rb = find(b);
+
+        if (ra == rb) {
+            return ra;
+        }
+
+        if (size[ra] < size[rb]) {
+            int tmp = ra;
+            ra = rb;
+            rb = tmp;
+        }
+
+        parent[rb] = ra;
+        size[ra] += size[rb];
+        return ra;
+    }
+
+    /**
+     * @return the number of elements
+     */
+    public int size() {
+        return count;
+    }
+}
@@ -24,7 +24,10 @@
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.terasology.cities.CityWorldGenerator;
+import org.terasology.cities.SectorPrefetcher;
 import org.terasology.cities.WorldFacade;
+import org.terasology.cities.model.Lake;
 import org.terasology.cities.model.NamedArea;
 import org.terasology.commonworld.Sector;
 import org.terasology.commonworld.Sectors;
@@ -35,13 +38,17 @@
 import org.terasology.logic.characters.events.OnEnterBlockEvent;
 import org.terasology.logic.console.Console;
 import org.terasology.logic.location.LocationComponent;
+import org.terasology.math.TeraMath;
 import org.terasology.math.geom.Vector3f;
 import org.terasology.network.Client;
+import org.terasology.network.ClientComponent;
 import org.terasology.network.NetworkSystem;
-import org.terasology.registry.CoreRegistry;
+import org.terasology.network.events.DisconnectedEvent;
 import org.terasology.registry.In;
 import org.terasology.rendering.FontColor;
+import org.terasology.world.generator.WorldGenerator;
 
+import com.google.common.base.Optional;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
@@ -53,14 +60,34 @@ public class PlayerTracker extends BaseComponentSystem {
 
     private static final Logger logger = LoggerFactory.getLogger(PlayerTracker.class);
 
+    /**
+     * The number of sectors around a player for which generated models are retained
+     */
+    private static final int RETAIN_RADIUS = 2;
+
     @In
     private NetworkSystem networkSystem;
 
     @In
     private Console console;
 
+    /**
+     * Not available on remote clients
+     */
+    @In
+    private WorldGenerator worldGenerator;
+
     private final Map<String, NamedArea> prevAreaMap = Maps.newHashMap();
 
+    private final Map<String, Sector> sectorMap = Maps.newHashMap();
+
+    /**
+     * Maps client entities to client IDs - the client might be gone when the disconnect event arrives
+     */
+    private final Map<EntityRef, String> clientIds = Maps.newHashMap();
+
+    private SectorPrefetcher prefetcher;
+
     /**
      * Called whenever a block is entered
      * @param event the event
@@ -83,17 +110,30 @@ public void onEnterBlock(OnEnterBlockEvent event, EntityRef entity) {
         String id = client.getId();
         String name = client.getName();
 
-        // TODO: facade is null if a different WorldGenerator is used
-        WorldFacade facade = CoreRegistry.get(WorldFacade.class);
+        clientIds.put(client.getEntity(), id);
+
+        WorldFacade facade = getFacade();
         if (facade != null) {
 
+            Sector prevSector = sectorMap.put(id, sector);
+            if (!sector.equals(prevSector)) {
+                facade.retainAround(sectorMap.values(), RETAIN_RADIUS);
+            }
+
+            getPrefetcher(facade).update(id, worldPos);
+
             NamedArea prevArea = prevAreaMap.get(id);        // can be null !
             NamedArea newArea = null;
 
             Set<NamedArea> areas = Sets.newHashSet();
 
             areas.addAll(facade.getCities(sector));
-            areas.addAll(facade.getLakes(sector));
+
+            // lakes are looked up in the pre-computed lake mask
+            Optional<Lake> lake = facade.getLake(TeraMath.floorToInt(worldPos3d.x), TeraMath.floorToInt(worldPos3d.z));
+            if (lake.isPresent()) {
+                areas.add(lake.get());
+            }
 
             for (NamedArea area : areas) {
                 if (area.contains(worldPos)) {
@@ -119,6 +159,63 @@ public void onEnterBlock(OnEnterBlockEvent event, EntityRef entity) {
         }
     }
 
+    /**
+     * Called when a client disconnects - drops all data that is kept for that client
+     * @param event the event
+     * @param entity the client entity
+     */
+    @ReceiveEvent(components = ClientComponent.class)
+    public void onDisconnect(DisconnectedEvent event, EntityRef entity) {
+        String id = clientIds.remove(entity);
+        if (id == null) {
+            return;
+        }
+
+        sectorMap.remove(id);
+        prevAreaMap.remove(id);
+
+        if (prefetcher != null) {
+            prefetcher.remove(id);
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        stopPrefetcher();
+
+        // world generators don't have a shutdown hook - this is the last chance to flush the sector store
+        if (worldGenerator instanceof CityWorldGenerator) {
+            ((CityWorldGenerator) worldGenerator).close();
+        }
+    }
+
+    /**
+     * @return the facade of the city world generator or <code>null</code> if a different world generator is used
+     */
+    private WorldFacade getFacade() {
+        if (worldGenerator instanceof CityWorldGenerator) {
+            return ((CityWorldGenerator) worldGenerator).getWorldFacade();
+        }
+        return null;
+    }
+
+    private void stopPrefetcher() {
+        if (prefetcher != null) {
+            prefetcher.shutdown();
+            prefetcher = null;
+        }
+    }
+
+    private SectorPrefetcher getPrefetcher(WorldFacade facade) {
+        // the facade (and the city drawings) are re-created when a new world is generated
+        if (prefetcher == null || prefetcher.getFacade() != facade) {
+            stopPrefetcher();
+            CityWorldGenerator generator = (CityWorldGenerator) worldGenerator;
+            prefetcher = new SectorPrefetcher(facade, generator.getCityDrawings(), 1);
+        }
+        return prefetcher;
+    }
+
     /**
      * Called whenever a named area is entered
      * @param event the event
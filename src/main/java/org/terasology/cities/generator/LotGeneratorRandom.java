@@ -18,6 +18,8 @@
 
 import java.awt.Rectangle;
 import java.awt.geom.Rectangle2D;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 
@@ -33,14 +35,34 @@
 import org.terasology.utilities.random.FastRandom;
 import org.terasology.utilities.random.Random;
 
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Sets;
 
 /**
  * A very simple lot generator. It places square-shaped lots 
  * randomly in a circular area and checks whether it intersects or not.  
+ * Placed lots are kept in a spatial hash, so that the free space around a
+ * candidate position is computed from nearby lots only.
  */
 public class LotGeneratorRandom {
 
+    /**
+     * Defines how candidate positions for lots are chosen
+     */
+    public enum Sampling {
+        /**
+         * Independent, uniformly distributed angle and radius
+         */
+        UNIFORM,
+
+        /**
+         * A Poisson-disk distribution with the min. lot size as min. distance
+         * (candidates that are closer than this can never both become lots)
+         */
+        POISSON_DISK
+    }
+
     private static final Logger logger = LoggerFactory.getLogger(LotGeneratorRandom.class);
     
     private final String seed;
@@ -49,6 +71,7 @@ public class LotGeneratorRandom {
     private final double maxSize;
     private final int maxTries;
     private final int maxLots;
+    private final Sampling sampling;
     
     /**
      * @param seed the random seed
@@ -58,22 +81,31 @@ public class LotGeneratorRandom {
      * @param maxTries maximum number of tries to create lots
      */
     public LotGeneratorRandom(String seed, double minSize, double maxSize, int maxLots, int maxTries) {
+        this(seed, minSize, maxSize, maxLots, maxTries, Sampling.UNIFORM);
+    }
+
+    /**
+     * @param seed the random seed
+     * @param minSize minimum lot size
+     * @param maxSize maximum lot size
+     * @param maxLots maximum number of lots
+     * @param maxTries maximum number of tries (candidate positions) to create lots
+     * @param sampling the way candidate positions are chosen
+     */
+    public LotGeneratorRandom(String seed, double minSize, double maxSize, int maxLots, int maxTries, Sampling sampling) {
         this.seed = seed;
         this.minSize = minSize;
         this.maxSize = maxSize;
         this.maxLots = maxLots;
         this.maxTries = maxTries;
+        this.sampling = sampling;
     }
     
     /**
      * @param seed the random seed
      */
     public LotGeneratorRandom(String seed) {
-        this.seed = seed;
-        this.minSize = 10d;
-        this.maxSize = 18d;
-        this.maxTries = 100;
-        this.maxLots = maxTries;
+        this(seed, 10d, 18d, 100, 100);
     }
 
     /**
@@ -95,17 +127,30 @@ public Set<SimpleLot> generate(City city, AreaInfo si) {
             return lots;        // which is empty
         }
         
+        Iterator<Point2d> candidates = null;
+        if (sampling == Sampling.POISSON_DISK) {
+            candidates = PoissonDiskSampler.sample(rand, center.x, center.y, minRad, maxRad, minSize).iterator();
+        }
+
+        // only lots that are closer than half the max. size can restrict a new lot
+        LotHash hash = new LotHash(maxSize, maxSize * 0.5);
+
         for (int i = 0; i < maxTries && lots.size() < maxLots;  i++) {
-            double ang = rand.nextDouble(0, Math.PI * 2.0);
-            double rad = rand.nextDouble(minRad, maxRad);
+            Point2d pos;
+            if (candidates == null) {
+                double ang = rand.nextDouble(0, Math.PI * 2.0);
+                double rad = rand.nextDouble(minRad, maxRad);
+                pos = new Point2d(center.x + rad * Math.cos(ang), center.y + rad * Math.sin(ang));
+            } else if (candidates.hasNext()) {
+                pos = candidates.next();
+            } else {
+                break;
+            }
+
             double desSizeX = rand.nextDouble(minSize, maxSize);
             double desSizeZ = rand.nextDouble(minSize, maxSize);
             
-            double x = center.x + rad * Math.cos(ang);
-            double z = center.y + rad * Math.sin(ang);
-            
-            Point2d pos = new Point2d(x, z);
-            Vector2d maxSpace = getMaxSpace(pos, lots);
+            Vector2d maxSpace = getMaxSpace(pos, hash.getNearby(pos));
 
             int sizeX = (int) Math.min(desSizeX, maxSpace.x);
             int sizeZ = (int) Math.min(desSizeZ, maxSpace.y);
@@ -127,6 +172,7 @@ public Set<SimpleLot> generate(City city, AreaInfo si) {
             // all tests passed -> create and add
             SimpleLot lot = new SimpleLot(shape);
             lots.add(lot);
+            hash.add(lot);
         }
         
         logger.debug("Generated {} lots for city {}", lots.size(), city);
@@ -134,7 +180,7 @@ public Set<SimpleLot> generate(City city, AreaInfo si) {
         return lots;
     }
 
-    private Vector2d getMaxSpace(Point2d pos, Set<SimpleLot> lots) {
+    private Vector2d getMaxSpace(Point2d pos, List<SimpleLot> lots) {
         double maxX = Double.MAX_VALUE;
         double maxZ = Double.MAX_VALUE;
         
@@ -178,4 +224,42 @@ private Vector2d getMaxSpace(Point2d pos, Set<SimpleLot> lots) {
         
         return new Vector2d(2 * maxX, 2 * maxZ);
     }
+
+    /**
+     * A spatial hash of lots. Every lot is stored in all cells that its bounds,
+     * grown by the search margin, overlap. The cell of a position then contains all
+     * lots whose grown bounds might contain it.
+     */
+    private static final class LotHash {
+
+        private final double cellSize;
+        private final double margin;
+        private final ListMultimap<Vector2i, SimpleLot> cells = ArrayListMultimap.create();
+
+        LotHash(double cellSize, double margin) {
+            this.cellSize = cellSize;
+            this.margin = margin;
+        }
+
+        void add(SimpleLot lot) {
+            Rectangle rc = lot.getShape();
+            int minX = toCell(rc.getMinX() - margin);
+            int minZ = toCell(rc.getMinY() - margin);
+            int maxX = toCell(rc.getMaxX() + margin);
+            int maxZ = toCell(rc.getMaxY() + margin);
+            for (int z = minZ; z <= maxZ; z++) {
+                for (int x = minX; x <= maxX; x++) {
+                    cells.put(new Vector2i(x, z), lot);
+                }
+            }
+        }
+
+        List<SimpleLot> getNearby(Point2d pos) {
+            return cells.get(new Vector2i(toCell(pos.x), toCell(pos.y)));
+        }
+
+        private int toCell(double v) {
+            return (int) Math.floor(v / cellSize);
+        }
+    }
 }
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.terasology.cities.generator;
+
+import java.util.List;
+
+import javax.vecmath.Point2d;
+
+import org.terasology.utilities.random.Random;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Creates random points in a ring with a guaranteed minimum distance between them
+ * (Bridson's algorithm). The result depends only on the state of the given random
+ * number generator.
+ */
+public final class PoissonDiskSampler {
+
+    private static final int CANDIDATES_PER_POINT = 30;
+
+    private PoissonDiskSampler() {
+        // no instances
+    }
+
+    /**
+     * @param rand the random number generator
+     * @param cx the center x coord
+     * @param cz the center z coord
+     * @param minRad the inner radius of the ring
+     * @param maxRad the outer radius of the ring
+     * @param minDist the minimum distance between two points
+     * @return a list of points in random order
+     */
+    public static List<Point2d> sample(Random rand, double cx, double cz, double minRad, double maxRad, double minDist) {
+        List<Point2d> points = Lists.newArrayList();
+
+        if (minRad >= maxRad) {
+            return points;
+        }
+
+        // every grid cell can hold at most one point
+        double cellSize = minDist / Math.sqrt(2);
+        int gridSize = (int) Math.ceil(2 * maxRad / cellSize) + 1;
+        double originX = cx - maxRad;
+        double originZ = cz - maxRad;
+        int[] grid = new int[gridSize * gridSize];      // point index + 1, or 0 for empty cells
+
+        List<Point2d> active = Lists.newArrayList();
+
+        double ang = rand.nextDouble(0, Math.PI * 2.0);
+        double rad = rand.nextDouble(minRad, maxRad);
+        Point2d first = new Point2d(cx + rad * Math.cos(ang), cz + rad * Math.sin(ang));
+        points.add(first);
+        active.add(first);
+        grid[cellIndex(first, originX, originZ, cellSize, gridSize)] = points.size();
+
+        while (!active.isEmpty()) {
+            int idx = rand.nextInt(active.size());
+            Point2d p = active.get(idx);
+            boolean found = false;
+
+            for (int k = 0; k < CANDIDATES_PER_POINT; k++) {
+                double candAng = rand.nextDouble(0, Math.PI * 2.0);
+                double candDist = rand.nextDouble(minDist, 2 * minDist);
+                Point2d cand = new Point2d(p.x + candDist * Math.cos(candAng), p.y + candDist * Math.sin(candAng));
+
+                double dist = cand.distance(new Point2d(cx, cz));
+                if (dist < minRad || dist >= maxRad) {
+                    continue;
+                }
+
+                if (isFree(cand, points, grid, originX, originZ, cellSize, gridSize, minDist)) {
+                    points.add(cand);
+                    active.add(cand);
+                    grid[cellIndex(cand, originX, originZ, cellSize, gridSize)] = points.size();
+                    found = true;
+                    break;
+                }
+            }
+
+            if (!found) {
+                // swap-remove - the order is still deterministic
+                active.set(idx, active.get(active.size() - 1));
+                active.remove(active.size() - 1);
+            }
+        }
+
+        // the points grow outwards from the first one - shuffle them (Fisher-Yates)
+        for (int i = points.size() - 1; i > 0; i--) {
+            int j = rand.nextInt(i + 1);
+            Point2d tmp = points.get(i);
+            points.set(i, points.get(j));
+            points.set(j, tmp);
+        }
+
+        return points;
+    }
+
+    private static boolean isFree(Point2d cand, List<Point2d> points, int[] grid,
+            double originX, double originZ, double cellSize, int gridSize, double minDist) {
+        int gx = (int) ((cand.x - originX) / cellSize);
+        int gz = (int) ((cand.y - originZ) / cellSize);
+
+        // points closer than minDist are at most two cells away
+        for (int z = Math.max(0, gz - 2); z <= Math.min(gridSize - 1, gz + 2); z++) {
+            for (int x = Math.max(0, gx - 2); x <= Math.min(gridSize - 1, gx + 2); x++) {
+                int entry = grid[z * gridSize + x];
+                if (entry != 0 && points.get(entry - 1).distanceSquared(cand) < minDist * minDist) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static int cellIndex(Point2d p, double originX, double originZ, double cellSize, int gridSize) {
+        int gx = (int) ((p.x - originX) / cellSize);
+        int gz = (int) ((p.y - originZ) / cellSize);
+        return gz * gridSize + gx;
+    }
+}
@@ -16,6 +16,8 @@
 
 package org.terasology.cities.generator;
 
+import java.util.List;
+
 import org.terasology.math.Vector2i;
 
 import org.terasology.cities.model.Junction;
@@ -25,6 +27,7 @@
 import org.terasology.commonworld.geom.Vector2iUtils;
 
 import com.google.common.base.Function;
+import com.google.common.collect.Lists;
 
 /**
  * Creates a simple, straight, road with no segments for a connection
@@ -52,9 +55,8 @@ public Road apply(UnorderedPair<Site> pair) {
 
         Junction junA = junctions.apply(posA);
         Junction junB = junctions.apply(posB);
-        Road road = new Road(junA, junB);
 
-        addSegments(road, avgSegmentLength);
+        List<Vector2i> segments = createSegments(posA, posB, avgSegmentLength);
 
         // here we define width as the log of the smaller site's size
         double avgSize = Math.min(a.getRadius(), b.getRadius());
@@ -62,20 +64,18 @@ public Road apply(UnorderedPair<Site> pair) {
         width = (float) Math.floor(width * 0.5);
         
         // TODO: check and remove
-        road.setWidth(5.0f);
-
-        return road;
+        return new Road(junA, junB, segments, 5.0f);
     }
 
     /**
-     * @param road the road
+     * @param coordsA the start point
+     * @param coordsB the end point
      * @param avgDist average length of a segment measured in sectors
-     * @return a road with segments
+     * @return the points between start and end
      */
-    protected Road addSegments(Road road, double avgDist) {
-        Vector2i coordsA = road.getStart().getCoords();
-        Vector2i coordsB = road.getEnd().getCoords();
-        
+    protected List<Vector2i> createSegments(Vector2i coordsA, Vector2i coordsB, double avgDist) {
+        List<Vector2i> points = Lists.newArrayList();
+
         double dist = Vector2iUtils.distance(coordsA, coordsB);
 
         int segments = (int) (dist / avgDist + 0.5);
@@ -83,9 +83,9 @@ protected Road addSegments(Road road, double avgDist) {
         for (int i = 1; i < segments; i++) {
             Vector2i p = Vector2iUtils.interpolate(coordsA, coordsB, i / (double) segments);
 
-            road.add(p);
+            points.add(p);
         }
 
-        return road;
+        return points;
     }
 }
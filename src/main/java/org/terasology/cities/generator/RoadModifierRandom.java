@@ -16,6 +16,7 @@
 
 package org.terasology.cities.generator;
 
+import java.util.List;
 import java.util.Objects;
 
 import org.terasology.math.Vector2i;
@@ -28,10 +29,14 @@
 import org.terasology.utilities.random.FastRandom;
 import org.terasology.utilities.random.Random;
 
+import com.google.common.base.Function;
+import com.google.common.collect.Lists;
+
 /**
- * Applies an overlay of different random wavelets to all road segments
+ * Applies an overlay of different random wavelets to all road segments.
+ * The given road is not modified - a new road with new points is returned.
  */
-public class RoadModifierRandom  {
+public class RoadModifierRandom implements Function<Road, Road> {
 
     private final double randomness;
 
@@ -52,9 +57,11 @@ public RoadModifierRandom(double randomness) {
 
     /**
      * Applies a Gaussian random number to all segments
-     * @param road the road to modify
+     * @param road the original road
+     * @return a new road with the same junctions and width, but modified points
      */
-    public void apply(Road road) {
+    @Override
+    public Road apply(Road road) {
         Vector2i startPos = road.getStart().getCoords();
         Vector2i endPos = road.getEnd().getCoords();
         Random r = new FastRandom(Objects.hash(startPos, endPos));
@@ -69,6 +76,7 @@ public void apply(Road road) {
         Wave w2 = Wave.getHat(0.25, new double[] {r.nextDouble() - 0.5, r.nextDouble() - 0.5, r.nextDouble() - 0.5, r.nextDouble() - 0.5});
 
         int cnt = road.getPoints().size();
+        List<Vector2i> points = Lists.newArrayListWithCapacity(cnt);
         for (int i = 0; i < cnt; i++) {
             double ip = (i + 1.0) / (cnt + 1);
             Point2md seg = Point2d.ipol(start, end, ip);
@@ -80,9 +88,9 @@ public void apply(Road road) {
             int x = (int) (seg.getX() + 0.5);
             int y = (int) (seg.getY() + 0.5);
 
-            Vector2i pt = road.getPoints().get(i); 
-            pt.x = x;
-            pt.y = y;
+            points.add(new Vector2i(x, y));
         }
+
+        return new Road(road.getStart(), road.getEnd(), points, road.getWidth());
     }
 }
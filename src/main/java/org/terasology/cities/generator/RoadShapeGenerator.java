@@ -42,12 +42,23 @@
 public class RoadShapeGenerator implements Function<Sector, Shape> {
 
     private final Function<Sector, Set<Road>> roadFunc;
+
+    private final int clipMargin;
     
     /**
      * @param roadFunc the road function
      */
     public RoadShapeGenerator(Function<Sector, Set<Road>> roadFunc) {
+        this(roadFunc, 0);
+    }
+
+    /**
+     * @param roadFunc the road function - should provide all roads that cross the clip area
+     * @param clipMargin roads are kept if they are closer than this to the sector (in blocks)
+     */
+    public RoadShapeGenerator(Function<Sector, Set<Road>> roadFunc, int clipMargin) {
         this.roadFunc = roadFunc;
+        this.clipMargin = clipMargin;
     }
 
     /**
@@ -65,15 +76,15 @@ public Shape apply(Sector sector) {
         
         for (Road road : roads) {
 
-            junctions.add(road.getStart());
-            junctions.add(road.getEnd());
-            
             Shape shape = getRoadShape(road);
 
             if (!hitClip(sector, shape)) {
                 continue;
             }
 
+            junctions.add(road.getStart());
+            junctions.add(road.getEnd());
+
             allPaths.append(shape, false);
         }
 
@@ -111,6 +122,7 @@ private boolean hitClip(Sector sector, Shape shape) {
         int bx = coords.x * Sector.SIZE;
         int bz = coords.y * Sector.SIZE;
         Rectangle secRect = new Rectangle(bx, bz, Sector.SIZE, Sector.SIZE);
+        secRect.grow(clipMargin, clipMargin);
         
         return shapeBounds.intersects(secRect);
     }
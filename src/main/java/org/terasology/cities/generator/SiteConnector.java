@@ -16,36 +16,98 @@
 
 package org.terasology.cities.generator;
 
+import java.util.List;
 import java.util.Set;
 
-import org.terasology.math.Vector2i;
-
 import org.terasology.cities.model.Site;
 import org.terasology.commonworld.Orientation;
 import org.terasology.commonworld.Sector;
-import org.terasology.commonworld.geom.Vector2iUtils;
 
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 /**
  * Defines connections of a site to other sites in the same and neighboring sectors.
- * All sites within a given radius are connected. If none are found the closest site
+ * All sites within a given radius are candidates. Depending on the {@link Topology}, either all
+ * of them or only the relative neighbors among them are connected. If none are found the closest site
  * is connected.
  */
 public class SiteConnector implements Function<Site, Set<Site>> {
-  
-    private final Function<Sector, Set<Site>> siteMap;
+
+    /**
+     * Defines which of the sites in range are connected
+     */
+    public enum Topology {
+
+        /**
+         * All sites in range are connected
+         */
+        ALL_IN_RANGE,
+
+        /**
+         * Sites are connected only if no third site is (much) closer to both of them.
+         * This is a superset of the minimum spanning tree, so every site that can be reached
+         * through sites in range remains reachable. The result depends only on the sites
+         * within the connection distance, so both ends agree on every connection as long as the
+         * max. distance does not exceed the sector size.
+         */
+        RELATIVE_NEIGHBORHOOD
+    }
+
+    /**
+     * A few extra connections make the road network less tree-like
+     */
+    private static final double DEFAULT_LENIENCE = 1.1;
+
+    private static final long INDEX_CACHE_SIZE = 1024;
+
+    private final SiteIndex siteIndex;
     private final double maxDist;
+    private final Topology topology;
+    private final double lenience;
 
     /**
      * @param siteMap a function that defines sites
      * @param maxDist the maximum distance between two connected sites
      */
     public SiteConnector(Function<Sector, Set<Site>> siteMap, double maxDist) {
-        this.siteMap = siteMap;
+        this(new SiteIndex(siteMap, INDEX_CACHE_SIZE), maxDist);
+    }
+
+    /**
+     * @param siteIndex a spatial index of all sites
+     * @param maxDist the maximum distance between two connected sites
+     */
+    public SiteConnector(SiteIndex siteIndex, double maxDist) {
+        this(siteIndex, maxDist, Topology.ALL_IN_RANGE);
+    }
+
+    /**
+     * @param siteIndex a spatial index of all sites
+     * @param maxDist the maximum distance between two connected sites
+     * @param topology the connection topology
+     */
+    public SiteConnector(SiteIndex siteIndex, double maxDist, Topology topology) {
+        this(siteIndex, maxDist, topology, DEFAULT_LENIENCE);
+    }
+
+    /**
+     * @param siteIndex a spatial index of all sites
+     * @param maxDist the maximum distance between two connected sites
+     * @param topology the connection topology
+     * @param lenience a connection is dropped only if a third site is closer than its length / lenience
+     * to both ends. 1 gives the relative neighborhood graph, larger values keep more connections.
+     */
+    public SiteConnector(SiteIndex siteIndex, double maxDist, Topology topology, double lenience) {
+        Preconditions.checkArgument(lenience >= 1, "lenience must be >= 1");
+
+        this.siteIndex = siteIndex;
         this.maxDist = maxDist;
+        this.topology = topology;
+        this.lenience = lenience;
     }
     
     /**
@@ -56,22 +118,20 @@ public SiteConnector(Function<Sector, Set<Site>> siteMap, double maxDist) {
     public Set<Site> apply(Site site) {
         
         Sector sector = site.getSector();
-        
-        Set<Site> directNeighs = siteMap.apply(sector);
-        Set<Site> sites = Sets.newHashSet(directNeighs); 
 
+        List<Sector> sectors = Lists.newArrayListWithCapacity(9);
+        sectors.add(sector);
         for (Orientation dir : Orientation.values()) {
-            Sector neighbor = sector.getNeighbor(dir);
-            Set<Site> neighCities = siteMap.apply(neighbor);
-            sites.addAll(neighCities);
+            sectors.add(sector.getNeighbor(dir));
         }
         
-        sites.remove(site);
-        
-        Set<Site> result = sitesInRange(site, sites);
+        List<Site> inRange = siteIndex.getSitesInRange(sectors, site, maxDist);
+        Set<Site> result = (topology == Topology.RELATIVE_NEIGHBORHOOD)
+                ? getRelativeNeighbors(site, inRange)
+                : Sets.newHashSet(inRange);
         
         if (result.isEmpty()) {
-            Optional<Site> closest = getClosest(site, sites);
+            Optional<Site> closest = siteIndex.getClosest(sectors, site);
             if (closest.isPresent()) {
                 result.add(closest.get());
             }
@@ -81,48 +141,40 @@ public Set<Site> apply(Site site) {
     }
 
     /**
+     * A site in range is a relative neighbor if no other site is closer to both ends.
+     * Such a witness is always closer to the site than the neighbor, so it is in range, too.
      * @param site the site
-     * @param sites a set of sites in the neighborhood
-     * @return the closest site from the set
+     * @param inRange all other sites in range
+     * @return the relative neighbors
      */
-    private Optional<Site> getClosest(Site site, Set<Site> sites) {
-        
-        double minDist = Double.MAX_VALUE;
-        Optional<Site> best = Optional.absent();
-        Vector2i pos = site.getPos();
-
-        for (Site other : sites) {
-            double distSq = Vector2iUtils.distanceSquared(pos, other.getPos());
-            if (distSq < minDist) {
-                minDist = distSq;
-                best = Optional.of(other);
+    private Set<Site> getRelativeNeighbors(Site site, List<Site> inRange) {
+        Set<Site> result = Sets.newHashSet();
+        double scale = 1.0 / (lenience * lenience);
+
+        for (Site other : inRange) {
+            double limit = distanceSquared(site, other) * scale;
+            boolean dominated = false;
+
+            for (Site witness : inRange) {
+                if (witness != other
+                        && distanceSquared(site, witness) < limit
+                        && distanceSquared(other, witness) < limit) {
+                    dominated = true;
+                    break;
+                }
             }
-        }
 
-        return best;
-    }
-
-    /**
-     * @param site the site
-     * @param neighbors a set of sites in the neighborhood
-     * @return all sites within maxDist
-     */
-    private Set<Site> sitesInRange(Site site, Set<Site> neighbors) {
-        Set<Site> closeCities = Sets.newHashSet(); 
-
-        Vector2i pos1 = site.getPos();
-
-        for (Site other : neighbors) {
-            Vector2i pos2 = other.getPos();
-            double distSq = Vector2iUtils.distanceSquared(pos1, pos2);
-
-            if (distSq < maxDist * maxDist) {
-                closeCities.add(other);
+            if (!dominated) {
+                result.add(other);
             }
         }
-        
-        return closeCities;
-    }
 
+        return result;
+    }
 
+    private static double distanceSquared(Site a, Site b) {
+        double dx = a.getPos().x - b.getPos().x;
+        double dz = a.getPos().y - b.getPos().y;
+        return dx * dx + dz * dz;
+    }
 }
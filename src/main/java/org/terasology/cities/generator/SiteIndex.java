@@ -0,0 +1,247 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.terasology.cities.generator;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import org.terasology.math.Vector2i;
+
+import org.terasology.cities.common.CachingFunction;
+import org.terasology.cities.model.Site;
+import org.terasology.commonworld.Sector;
+
+import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+
+/**
+ * A spatial index of sites. The sites of every sector are bucketed into a grid of cells
+ * once, so that range and nearest-site queries only look at cells close to the query position.
+ * The buckets of a sector are cached.
+ */
+public class SiteIndex {
+
+    private static final int CELL_SIZE = 64;
+
+    private final Function<Sector, SectorSites> buckets;
+
+    /**
+     * @param siteMap defines the sites of a sector
+     * @param maxCachedSectors the max. number of sectors whose buckets are cached
+     */
+    public SiteIndex(final Function<? super Sector, Set<Site>> siteMap, long maxCachedSectors) {
+        this.buckets = CachingFunction.wrap(new Function<Sector, SectorSites>() {
+
+            @Override
+            public SectorSites apply(Sector sector) {
+                return new SectorSites(siteMap.apply(sector));
+            }
+        }, maxCachedSectors);
+    }
+
+    /**
+     * @param sectors the sectors to search
+     * @param site the site of interest (is never part of the result, compared by identity)
+     * @param maxDist the max. distance (exclusive)
+     * @return all sites in the given sectors that are closer than maxDist
+     */
+    public List<Site> getSitesInRange(Iterable<Sector> sectors, Site site, double maxDist) {
+        List<Site> result = Lists.newArrayList();
+        Vector2i pos = site.getPos();
+        double maxDistSq = maxDist * maxDist;
+
+        for (Sector sector : sectors) {
+            SectorSites bucket = buckets.apply(sector);
+            if (bucket.isEmpty() || bucket.distanceSquared(pos.x, pos.y) >= maxDistSq) {
+                continue;
+            }
+
+            int cx0 = bucket.toCellX(pos.x - maxDist);
+            int cx1 = bucket.toCellX(pos.x + maxDist);
+            int cz0 = bucket.toCellZ(pos.y - maxDist);
+            int cz1 = bucket.toCellZ(pos.y + maxDist);
+
+            for (int cz = cz0; cz <= cz1; cz++) {
+                for (int cx = cx0; cx <= cx1; cx++) {
+                    int cell = cz * bucket.cellsX + cx;
+                    for (int i = bucket.cellStart[cell]; i < bucket.cellStart[cell + 1]; i++) {
+                        Site other = bucket.sites[i];
+                        if (other != site && distanceSquared(pos, other.getPos()) < maxDistSq) {
+                            result.add(other);
+                        }
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Ties are broken by the position of the sites, so the result does not depend on the order of sectors.
+     * @param sectors the sectors to search
+     * @param site the site of interest (is never part of the result, compared by identity)
+     * @return the closest site in the given sectors
+     */
+    public Optional<Site> getClosest(Iterable<Sector> sectors, Site site) {
+        Vector2i pos = site.getPos();
+        Site best = null;
+        double bestDistSq = Double.MAX_VALUE;
+
+        for (Sector sector : sectors) {
+            SectorSites bucket = buckets.apply(sector);
+            if (bucket.isEmpty() || bucket.distanceSquared(pos.x, pos.y) > bestDistSq) {
+                continue;
+            }
+
+            // search rings of cells around the cell that is closest to the position
+            int hx = bucket.toCellX(pos.x);
+            int hz = bucket.toCellZ(pos.y);
+            int maxRing = Math.max(bucket.cellsX, bucket.cellsZ);
+
+            for (int ring = 0; ring < maxRing; ring++) {
+                // all cells of this ring are at least (ring - 1) cells away
+                double minDist = (ring - 1) * (double) CELL_SIZE;
+                if (ring > 1 && minDist * minDist > bestDistSq) {
+                    break;
+                }
+
+                for (int cz = Math.max(0, hz - ring); cz <= Math.min(bucket.cellsZ - 1, hz + ring); cz++) {
+                    boolean edgeRow = (cz == hz - ring || cz == hz + ring);
+                    int step = edgeRow ? 1 : 2 * ring;
+                    for (int cx = hx - ring; cx <= hx + ring; cx += step) {
+                        if (cx < 0 || cx >= bucket.cellsX) {
+                            continue;
+                        }
+                        int cell = cz * bucket.cellsX + cx;
+                        for (int i = bucket.cellStart[cell]; i < bucket.cellStart[cell + 1]; i++) {
+                            Site other = bucket.sites[i];
+                            if (other == site) {
+                                continue;
+                            }
+                            double distSq = distanceSquared(pos, other.getPos());
+                            if (distSq < bestDistSq || (distSq == bestDistSq && isBefore(other, best))) {
+                                bestDistSq = distSq;
+                                best = other;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        return Optional.fromNullable(best);
+    }
+
+    private static boolean isBefore(Site a, Site b) {
+        Vector2i pa = a.getPos();
+        Vector2i pb = b.getPos();
+        return pa.x < pb.x || (pa.x == pb.x && pa.y < pb.y);
+    }
+
+    private static double distanceSquared(Vector2i a, Vector2i b) {
+        double dx = a.x - b.x;
+        double dz = a.y - b.y;
+        return dx * dx + dz * dz;
+    }
+
+    /**
+     * The sites of one sector, sorted by grid cell. The grid covers the bounding box of the sites.
+     */
+    private static final class SectorSites {
+
+        private final int minX;
+        private final int minZ;
+        private final int maxX;
+        private final int maxZ;
+        private final int cellsX;
+        private final int cellsZ;
+
+        /**
+         * The sites of cell i are stored at [cellStart[i], cellStart[i + 1])
+         */
+        private final int[] cellStart;
+        private final Site[] sites;
+
+        SectorSites(Set<Site> input) {
+            int x0 = Integer.MAX_VALUE;
+            int z0 = Integer.MAX_VALUE;
+            int x1 = Integer.MIN_VALUE;
+            int z1 = Integer.MIN_VALUE;
+            for (Site site : input) {
+                Vector2i pos = site.getPos();
+                x0 = Math.min(x0, pos.x);
+                z0 = Math.min(z0, pos.y);
+                x1 = Math.max(x1, pos.x);
+                z1 = Math.max(z1, pos.y);
+            }
+
+            minX = x0;
+            minZ = z0;
+            maxX = x1;
+            maxZ = z1;
+            cellsX = input.isEmpty() ? 0 : (x1 - x0) / CELL_SIZE + 1;
+            cellsZ = input.isEmpty() ? 0 : (z1 - z0) / CELL_SIZE + 1;
+
+            // counting sort by cell index
+            cellStart = new int[cellsX * cellsZ + 1];
+            for (Site site : input) {
+                cellStart[cellOf(site) + 1]++;
+            }
+            for (int i = 0; i < cellsX * cellsZ; i++) {
+                cellStart[i + 1] += cellStart[i];
+            }
+
+            int[] next = Arrays.copyOf(cellStart, cellStart.length);
+            sites = new Site[input.size()];
+            for (Site site : input) {
+                sites[next[cellOf(site)]++] = site;
+            }
+        }
+
+        boolean isEmpty() {
+            return sites.length == 0;
+        }
+
+        /**
+         * @return the squared distance to the bounding box of all sites
+         */
+        double distanceSquared(int x, int z) {
+            double dx = Math.max(0, Math.max(minX - x, x - maxX));
+            double dz = Math.max(0, Math.max(minZ - z, z - maxZ));
+            return dx * dx + dz * dz;
+        }
+
+        int toCellX(double x) {
+            int cx = (int) Math.floor((x - minX) / CELL_SIZE);
+            return Math.max(0, Math.min(cellsX - 1, cx));
+        }
+
+        int toCellZ(double z) {
+            int cz = (int) Math.floor((z - minZ) / CELL_SIZE);
+            return Math.max(0, Math.min(cellsZ - 1, cz));
+        }
+
+        private int cellOf(Site site) {
+            Vector2i pos = site.getPos();
+            return ((pos.y - minZ) / CELL_SIZE) * cellsX + (pos.x - minX) / CELL_SIZE;
+        }
+    }
+}
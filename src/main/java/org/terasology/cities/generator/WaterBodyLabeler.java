@@ -0,0 +1,705 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.generator;
+
+import java.awt.Point;
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+import org.terasology.cities.common.CachingFunction;
+import org.terasology.cities.common.SectorUtils;
+import org.terasology.cities.common.UnionFind;
+import org.terasology.cities.model.Lake;
+import org.terasology.commonworld.Sector;
+import org.terasology.commonworld.Sectors;
+import org.terasology.commonworld.contour.Contour;
+import org.terasology.commonworld.contour.ContourTracer;
+import org.terasology.commonworld.heightmap.HeightMap;
+import org.terasology.commonworld.heightmap.HeightMapAdapter;
+import org.terasology.commonworld.heightmap.HeightMaps;
+import org.terasology.math.Vector2i;
+import org.terasology.namegenerator.waters.DebugWaterTheme;
+import org.terasology.namegenerator.waters.WaterNameProvider;
+
+import com.google.common.base.Function;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Queues;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Finds lakes on a downscaled height grid. Water cells of each sector are labeled
+ * as connected components, and components that touch across a sector border are merged
+ * with a union-find. The outline of a water body is traced only once, after all sectors
+ * that it touches have been labeled. Lakes are kept in a shared store, so every sector
+ * that sees the same water body gets the same {@link Lake} instance.
+ * <p>
+ * Water bodies that span more than {@link #MAX_BODY_SECTORS} sectors are considered seas.
+ * They are clipped at sector borders and traced (once) per sector.
+ * </p>
+ * This class is thread-safe. Only the component labels are guarded by a shared lock.
+ * Height samples are taken per sector and outlines are traced per water body without it.
+ */
+public class WaterBodyLabeler implements Function<Sector, Set<Lake>> {
+
+    /**
+     * The maximum number of sectors that a single lake can touch
+     */
+    public static final int MAX_BODY_SECTORS = 16;
+
+    private static final Integer NAME_SALT = 2354234;
+
+    private static final int SCALE = 8;
+    private static final int CELLS = Sector.SIZE / SCALE;
+
+    /**
+     * The minimum lake width and height in blocks
+     */
+    private static final int MIN_SIZE = 16;
+
+    private static final int DRY = -1;
+
+    /**
+     * Flood-filled sectors are kept only until they are merged into the shared components
+     */
+    private static final int LOCAL_LABEL_CACHE_SIZE = 64;
+
+    /**
+     * Traced water bodies are re-traced on demand if they have been evicted
+     */
+    private static final int BODY_CACHE_SIZE = 256;
+
+    private final String seed;
+    private final HeightMap scaledHeightMap;
+    private final int seaLevel;
+
+    /**
+     * Flood-fills a sector with local component IDs - threads that need the same sector wait for each other
+     */
+    private final LoadingCache<Sector, int[]> localLabels;
+
+    /**
+     * The component ID of every cell or DRY (guarded by this)
+     */
+    private final Map<Sector, int[]> labels = Maps.newHashMap();
+
+    /**
+     * Merges components across sector borders (guarded by this). IDs are re-numbered
+     * when sectors are removed, so that the forest does not grow forever.
+     */
+    private UnionFind components = new UnionFind();
+
+    /**
+     * The lakes of every complete water body and of every sea part
+     */
+    private final Cache<BodyKey, Set<Lake>> bodies = CacheBuilder.newBuilder().maximumSize(BODY_CACHE_SIZE).build();
+
+    /**
+     * All lakes indexed by the first point of their contour
+     */
+    private final ConcurrentMap<Point, Lake> lakeStore = Maps.newConcurrentMap();
+
+    /**
+     * @param seed the seed for lake names
+     * @param heightMap the (unscaled) height map
+     * @param seaLevel all cells at or below this height are water
+     */
+    public WaterBodyLabeler(String seed, HeightMap heightMap, int seaLevel) {
+        this.seed = seed;
+        this.scaledHeightMap = HeightMaps.scalingArea(heightMap, SCALE);
+        this.seaLevel = seaLevel;
+
+        this.localLabels = CachingFunction.wrap(new Function<Sector, int[]>() {
+
+            @Override
+            public int[] apply(Sector sector) {
+                return floodFill(sector);
+            }
+        }, LOCAL_LABEL_CACHE_SIZE);
+    }
+
+    /**
+     * @param sector the sector
+     * @return all lakes that overlap with the sector
+     */
+    @Override
+    public Set<Lake> apply(Sector sector) {
+        Set<Lake> lakes = Sets.newHashSet();
+        for (Body body : findBodies(sector)) {
+            lakes.addAll(getLakes(body));
+        }
+
+        return lakes;
+    }
+
+    /**
+     * Replaces lakes by equal instances from the shared store (e.g. after loading them from disk)
+     * @param lakes the lakes
+     * @return the shared lake instances
+     */
+    public Set<Lake> intern(Set<Lake> lakes) {
+        Set<Lake> result = Sets.newHashSet();
+        for (Lake lake : lakes) {
+            result.add(intern(lake));
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of water components that are currently allocated
+     */
+    public synchronized int getComponentCount() {
+        return components.size();
+    }
+
+    /**
+     * Forgets labels and lakes of all sectors that are not close to any of the given sectors
+     * @param active the sectors that should be retained
+     * @param radius the number of sectors around an active sector that are retained
+     */
+    public synchronized void retainAround(Collection<Sector> active, int radius) {
+        if (active.isEmpty()) {
+            return;
+        }
+
+        boolean removed = false;
+        Iterator<Sector> it = labels.keySet().iterator();
+        while (it.hasNext()) {
+            if (!SectorUtils.isNear(it.next(), active, radius + 1)) {
+                it.remove();
+                removed = true;
+            }
+        }
+
+        if (removed) {
+            compact();
+        }
+
+        Iterator<BodyKey> bodyIt = bodies.asMap().keySet().iterator();
+        while (bodyIt.hasNext()) {
+            if (!SectorUtils.isNear(bodyIt.next().getSector(), active, radius + 1)) {
+                bodyIt.remove();
+            }
+        }
+
+        Iterator<Point> lakeIt = lakeStore.keySet().iterator();
+        while (lakeIt.hasNext()) {
+            Point pt = lakeIt.next();
+            if (!SectorUtils.isNear(Sectors.getSectorForBlock(pt.x, pt.y), active, radius + 1)) {
+                lakeIt.remove();
+            }
+        }
+    }
+
+    /**
+     * Re-numbers the components of all remaining sectors, so that the IDs of removed sectors are freed.
+     * Components that were merged before keep sharing one ID. Must be called while holding the lock.
+     */
+    private void compact() {
+        UnionFind compacted = new UnionFind();
+        Map<Integer, Integer> newIds = Maps.newHashMap();
+
+        for (int[] grid : labels.values()) {
+            for (int i = 0; i < grid.length; i++) {
+                if (grid[i] != DRY) {
+                    int root = components.find(grid[i]);
+                    Integer id = newIds.get(root);
+                    if (id == null) {
+                        id = compacted.add();
+                        newIds.put(root, id);
+                    }
+                    grid[i] = id;
+                }
+            }
+        }
+
+        components = compacted;
+    }
+
+    private Set<Lake> getLakes(final Body body) {
+        try {
+            // every water body (or sea part) is traced only once, even if requested by several threads
+            return bodies.get(body.key, new Callable<Set<Lake>>() {
+
+                @Override
+                public Set<Lake> call() {
+                    return trace(body);
+                }
+            });
+        } catch (ExecutionException e) {
+            throw new UncheckedExecutionException(e.getCause());
+        }
+    }
+
+    /**
+     * Labels the sector and all sectors that its water bodies touch. Sectors are flood-filled
+     * without holding the lock, so the exploration is repeated until no sector is missing.
+     * @param sector the sector
+     * @return all water bodies that overlap with the sector
+     */
+    private List<Body> findBodies(Sector sector) {
+        Set<Sector> missing = Sets.newLinkedHashSet();
+        missing.add(sector);
+
+        List<Body> found;
+        do {
+            for (Sector other : missing) {
+                label(other);
+            }
+            missing.clear();
+            found = collectBodies(sector, missing);
+        } while (!missing.isEmpty());
+
+        return found;
+    }
+
+    /**
+     * @param sector the sector
+     * @param missing receives all sectors that must be labeled first
+     * @return the water bodies in the sector (incomplete if sectors are missing)
+     */
+    private synchronized List<Body> collectBodies(Sector sector, Set<Sector> missing) {
+        int[] grid = labels.get(sector);
+        if (grid == null) {
+            // removed concurrently
+            missing.add(sector);
+            return Collections.emptyList();
+        }
+
+        Set<Integer> roots = Sets.newLinkedHashSet();
+        for (int id : grid) {
+            if (id != DRY) {
+                roots.add(components.find(id));
+            }
+        }
+
+        List<Body> found = Lists.newArrayList();
+        for (int root : roots) {
+            Set<Sector> extent = explore(sector, root, missing);
+
+            if (extent.size() > MAX_BODY_SECTORS) {
+                // too large for a lake - trace only the part in this sector
+                found.add(createBody(getCellRect(sector), root));
+            } else if (missing.isEmpty()) {
+                found.add(createBody(getBounds(extent, root), root));
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * Finds all sectors that the water body touches. Must be called while holding the lock.
+     * @param start the start sector
+     * @param root the representative component of the water body
+     * @param missing receives all touched sectors that are not labeled yet
+     * @return all sectors that the water body touches, stops after exceeding {@link #MAX_BODY_SECTORS}
+     */
+    private Set<Sector> explore(Sector start, int root, Set<Sector> missing) {
+        Set<Sector> visited = Sets.newLinkedHashSet();
+        Deque<Sector> queue = Queues.newArrayDeque();
+        visited.add(start);
+        queue.add(start);
+
+        while (!queue.isEmpty() && visited.size() <= MAX_BODY_SECTORS) {
+            Sector sector = queue.poll();
+            int[] grid = labels.get(sector);
+            if (grid == null) {
+                missing.add(sector);
+                continue;
+            }
+
+            Vector2i coords = sector.getCoords();
+
+            // index of the first border cell and step width for west, east, north, south
+            int[][] borders = {{0, CELLS}, {CELLS - 1, CELLS}, {0, 1}, {(CELLS - 1) * CELLS, 1}};
+            int[][] offsets = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+
+            for (int b = 0; b < borders.length; b++) {
+                if (touchesBorder(grid, borders[b][0], borders[b][1], root)) {
+                    Sector neighbor = Sectors.getSector(coords.x + offsets[b][0], coords.y + offsets[b][1]);
+                    if (visited.add(neighbor)) {
+                        queue.add(neighbor);
+                    }
+                }
+            }
+        }
+
+        return visited;
+    }
+
+    private boolean touchesBorder(int[] grid, int first, int step, int root) {
+        for (int i = 0; i < CELLS; i++) {
+            int cell = grid[first + i * step];
+            if (cell != DRY && components.find(cell) == root) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Makes sure that the sector is labeled and merged with the components of labeled neighbors
+     * @param sector the sector
+     */
+    private void label(Sector sector) {
+        synchronized (this) {
+            if (labels.containsKey(sector)) {
+                return;
+            }
+        }
+
+        // the expensive part runs without holding the lock
+        int[] local = localLabels.getUnchecked(sector);
+        register(sector, local);
+        localLabels.invalidate(sector);
+    }
+
+    /**
+     * Adds the local components of a sector to the shared components
+     * @param sector the sector
+     * @param local the local component IDs of all cells
+     */
+    private synchronized void register(Sector sector, int[] local) {
+        if (labels.containsKey(sector)) {
+            return;
+        }
+
+        int base = components.size();
+        int count = 0;
+        int[] grid = new int[local.length];
+        for (int i = 0; i < local.length; i++) {
+            if (local[i] == DRY) {
+                grid[i] = DRY;
+            } else {
+                grid[i] = base + local[i];
+                count = Math.max(count, local[i] + 1);
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            components.add();
+        }
+
+        // merge across the seams with all neighbors that are labeled already
+        Vector2i coords = sector.getCoords();
+        mergeSeam(grid, 0, labels.get(Sectors.getSector(coords.x - 1, coords.y)), CELLS - 1, CELLS);
+        mergeSeam(grid, CELLS - 1, labels.get(Sectors.getSector(coords.x + 1, coords.y)), 0, CELLS);
+        mergeSeam(grid, 0, labels.get(Sectors.getSector(coords.x, coords.y - 1)), (CELLS - 1) * CELLS, 1);
+        mergeSeam(grid, (CELLS - 1) * CELLS, labels.get(Sectors.getSector(coords.x, coords.y + 1)), 0, 1);
+
+        labels.put(sector, grid);
+    }
+
+    /**
+     * Labels the water cells of a sector with 4-connectivity
+     * @param sector the sector
+     * @return the local component IDs (starting at 0) of all cells
+     */
+    private int[] floodFill(Sector sector) {
+        Vector2i coords = sector.getCoords();
+        int x0 = coords.x * CELLS;
+        int z0 = coords.y * CELLS;
+
+        int[] grid = new int[CELLS * CELLS];
+        boolean[] water = new boolean[CELLS * CELLS];
+        for (int z = 0; z < CELLS; z++) {
+            for (int x = 0; x < CELLS; x++) {
+                water[z * CELLS + x] = scaledHeightMap.apply(x0 + x, z0 + z) <= seaLevel;
+                grid[z * CELLS + x] = DRY;
+            }
+        }
+
+        int nextId = 0;
+        int[] stack = new int[CELLS * CELLS];
+        for (int start = 0; start < grid.length; start++) {
+            if (!water[start] || grid[start] != DRY) {
+                continue;
+            }
+
+            int id = nextId++;
+            int top = 0;
+            stack[top++] = start;
+            grid[start] = id;
+
+            while (top > 0) {
+                int idx = stack[--top];
+                int x = idx % CELLS;
+                int z = idx / CELLS;
+
+                if (x > 0 && water[idx - 1] && grid[idx - 1] == DRY) {
+                    grid[idx - 1] = id;
+                    stack[top++] = idx - 1;
+                }
+                if (x < CELLS - 1 && water[idx + 1] && grid[idx + 1] == DRY) {
+                    grid[idx + 1] = id;
+                    stack[top++] = idx + 1;
+                }
+                if (z > 0 && water[idx - CELLS] && grid[idx - CELLS] == DRY) {
+                    grid[idx - CELLS] = id;
+                    stack[top++] = idx - CELLS;
+                }
+                if (z < CELLS - 1 && water[idx + CELLS] && grid[idx + CELLS] == DRY) {
+                    grid[idx + CELLS] = id;
+                    stack[top++] = idx + CELLS;
+                }
+            }
+        }
+
+        return grid;
+    }
+
+    private void mergeSeam(int[] grid, int first, int[] other, int otherFirst, int step) {
+        if (other == null) {
+            return;
+        }
+
+        for (int i = 0; i < CELLS; i++) {
+            int a = grid[first + i * step];
+            int b = other[otherFirst + i * step];
+            if (a != DRY && b != DRY) {
+                components.union(a, b);
+            }
+        }
+    }
+
+    private static Rectangle getCellRect(Sector sector) {
+        Vector2i coords = sector.getCoords();
+        return new Rectangle(coords.x * CELLS, coords.y * CELLS, CELLS, CELLS);
+    }
+
+    /**
+     * @param extent all sectors that contain the water body
+     * @param root the representative component of the water body
+     * @return the bounding box of the water body in cells, grown by one cell
+     */
+    private Rectangle getBounds(Set<Sector> extent, int root) {
+        Rectangle bounds = null;
+        for (Sector sector : extent) {
+            int[] grid = labels.get(sector);
+            Vector2i coords = sector.getCoords();
+            for (int i = 0; i < grid.length; i++) {
+                if (grid[i] != DRY && components.find(grid[i]) == root) {
+                    int x = coords.x * CELLS + i % CELLS;
+                    int z = coords.y * CELLS + i / CELLS;
+                    if (bounds == null) {
+                        bounds = new Rectangle(x, z, 1, 1);
+                    } else {
+                        bounds.add(new Rectangle(x, z, 1, 1));
+                    }
+                }
+            }
+        }
+
+        bounds.grow(1, 1);
+        return bounds;
+    }
+
+    /**
+     * Copies the cells of a water body, so that it can be traced without holding the lock
+     * @param area the area in cells
+     * @param root the representative component of the water body
+     * @return the cells of the water body within the area
+     */
+    private Body createBody(Rectangle area, int root) {
+        boolean[] mask = new boolean[area.width * area.height];
+        Point anchor = null;
+        int count = 0;
+
+        for (int z = area.y; z < area.y + area.height; z++) {
+            int sz = floorDiv(z, CELLS);
+            for (int x = area.x; x < area.x + area.width; x++) {
+                int sx = floorDiv(x, CELLS);
+                int[] grid = labels.get(Sectors.getSector(sx, sz));
+                if (grid == null) {
+                    continue;
+                }
+
+                int cell = grid[(z - sz * CELLS) * CELLS + (x - sx * CELLS)];
+                if (cell != DRY && components.find(cell) == root) {
+                    mask[(z - area.y) * area.width + (x - area.x)] = true;
+                    if (anchor == null) {
+                        anchor = new Point(x, z);
+                    }
+                    count++;
+                }
+            }
+        }
+
+        return new Body(new BodyKey(anchor, count), area, mask);
+    }
+
+    /**
+     * Traces only the cells of a single water body
+     * @param body the water body
+     * @return the lakes that were found
+     */
+    private Set<Lake> trace(Body body) {
+        final Rectangle area = body.area;
+        final boolean[] mask = body.mask;
+        final int water = seaLevel - 1;
+        final int land = seaLevel + 1;
+
+        HeightMap bodyOnly = new HeightMapAdapter() {
+
+            @Override
+            public int apply(int x, int z) {
+                if (!area.contains(x, z)) {
+                    return land;
+                }
+
+                return mask[(z - area.y) * area.width + (x - area.x)] ? water : land;
+            }
+        };
+
+        ContourTracer ct = new ContourTracer(bodyOnly, area, seaLevel);
+
+        Set<Lake> lakes = Sets.newHashSet();
+
+        for (Contour c : ct.getOuterContours()) {
+            Contour scaledContour = c.scale(SCALE);
+            Polygon polyLake = scaledContour.getPolygon();
+
+            if (polyLake.getBounds().width > MIN_SIZE
+             && polyLake.getBounds().height > MIN_SIZE) {
+                Point anchor = getAnchor(scaledContour);
+                Lake lake = new Lake(scaledContour, createName(anchor));
+
+                for (Contour isl : ct.getInnerContours()) {
+                    Contour scaledIsland = isl.scale(SCALE);
+                    Rectangle bboxIsland = scaledIsland.getPolygon().getBounds();
+
+                    if (polyLake.getBounds().contains(bboxIsland)) {
+                        if (allInside(polyLake, scaledIsland.getPoints())) {
+                            lake.addIsland(scaledIsland);
+                        }
+                    }
+                }
+
+                lakes.add(intern(lake));
+            }
+        }
+
+        return lakes;
+    }
+    private Lake intern(Lake lake) {
+        Lake prev = lakeStore.putIfAbsent(getAnchor(lake.getContour()), lake);
+        return (prev != null) ? prev : lake;
+    }
+
+    private String createName(Point anchor) {
+        int ngseed = Objects.hash(NAME_SALT, seed, anchor.x, anchor.y);
+        WaterNameProvider ng = new WaterNameProvider(ngseed, new DebugWaterTheme());
+        return ng.generateName();
+    }
+
+    /**
+     * @param contour the contour
+     * @return the top-most, left-most point of the contour - independent of tracing order
+     */
+    private static Point getAnchor(Contour contour) {
+        Point anchor = null;
+        for (Point pt : contour.getPoints()) {
+            if (anchor == null || pt.y < anchor.y || (pt.y == anchor.y && pt.x < anchor.x)) {
+                anchor = pt;
+            }
+        }
+        return new Point(anchor);
+    }
+
+    private static boolean allInside(Polygon polygon, Collection<Point> points) {
+        for (Point pt : points) {
+            if (!polygon.contains(pt)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int floorDiv(int x, int y) {
+        int q = x / y;
+        if ((x % y != 0) && ((x ^ y) < 0)) {
+            q--;
+        }
+        return q;
+    }
+
+    /**
+     * Identifies a water body (or the part of a sea in one sector) independent of component IDs
+     */
+    private static final class BodyKey {
+        private final Point anchor;
+        private final int cellCount;
+
+        /**
+         * @param anchor the top-most, left-most cell
+         * @param cellCount the number of cells
+         */
+        BodyKey(Point anchor, int cellCount) {
+            this.anchor = anchor;
+            this.cellCount = cellCount;
+        }
+
+        Sector getSector() {
+            return Sectors.getSector(floorDiv(anchor.x, CELLS), floorDiv(anchor.y, CELLS));
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(anchor, cellCount);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof BodyKey)) {
+                return false;
+            }
+            BodyKey other = (BodyKey) obj;
+            return cellCount == other.cellCount && anchor.equals(other.anchor);
+        }
+    }
+
+    /**
+     * A copy of the cells of a water body
+     */
+    private static final class Body {
+        private final BodyKey key;
+        private final Rectangle area;
+        private final boolean[] mask;
+
+        Body(BodyKey key, Rectangle area, boolean[] mask) {
+            this.key = key;
+            this.area = area;
+            this.mask = mask;
+        }
+    }
+}
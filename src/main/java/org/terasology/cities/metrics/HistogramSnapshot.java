@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An immutable copy of a {@link LatencyHistogram}. All values are in nanoseconds.
+ */
+public final class HistogramSnapshot {
+
+    private final long[] buckets;
+    private final long count;
+    private final long total;
+    private final long max;
+
+    HistogramSnapshot(long[] buckets, long count, long total, long max) {
+        this.buckets = buckets;
+        this.count = count;
+        this.total = total;
+        this.max = max;
+    }
+
+    /**
+     * @return the number of recorded values
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the sum of all recorded values
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * @return the largest recorded value
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * @return the average of all recorded values or 0 if empty
+     */
+    public double getMean() {
+        return (count == 0) ? 0 : (double) total / count;
+    }
+
+    /**
+     * @param percentile the percentile in [0..100]
+     * @return the (upper bound of the) value below which the given percentage of values fall or 0 if empty
+     */
+    public long getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be in [0..100]: " + percentile);
+        }
+
+        long bucketTotal = 0;
+        for (long c : buckets) {
+            bucketTotal += c;
+        }
+
+        if (bucketTotal == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(bucketTotal * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                if (i + 1 >= buckets.length) {
+                    return max;
+                }
+                return Math.min(LatencyHistogram.lowerBound(i + 1) - 1, max);
+            }
+        }
+
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d, mean=%.2fms, p50=%.2fms, p90=%.2fms, p99=%.2fms, max=%.2fms",
+                count, toMillis(getMean()),
+                toMillis(getPercentile(50)), toMillis(getPercentile(90)), toMillis(getPercentile(99)),
+                toMillis(max));
+    }
+
+    private static double toMillis(double nanos) {
+        return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
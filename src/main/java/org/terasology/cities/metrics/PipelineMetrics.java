@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Collects latency histograms for all {@link PipelineStage}s (thread-safe)
+ */
+public class PipelineMetrics {
+
+    private final Map<PipelineStage, LatencyHistogram> histograms;
+
+    /**
+     * Creates empty histograms for all stages
+     */
+    public PipelineMetrics() {
+        EnumMap<PipelineStage, LatencyHistogram> map = Maps.newEnumMap(PipelineStage.class);
+        for (PipelineStage stage : PipelineStage.values()) {
+            map.put(stage, new LatencyHistogram());
+        }
+        histograms = map;
+    }
+
+    /**
+     * @param stage the pipeline stage
+     * @return the histogram of that stage, never <code>null</code>
+     */
+    public LatencyHistogram get(PipelineStage stage) {
+        return histograms.get(stage);
+    }
+
+    /**
+     * @param stage the pipeline stage
+     * @param startNanos the start time as returned by {@link System#nanoTime()}
+     */
+    public void recordSince(PipelineStage stage, long startNanos) {
+        histograms.get(stage).recordSince(startNanos);
+    }
+
+    /**
+     * @return a snapshot of all stages
+     */
+    public Map<PipelineStage, HistogramSnapshot> snapshot() {
+        EnumMap<PipelineStage, HistogramSnapshot> map = Maps.newEnumMap(PipelineStage.class);
+        for (PipelineStage stage : PipelineStage.values()) {
+            map.put(stage, histograms.get(stage).snapshot());
+        }
+        return map;
+    }
+
+    /**
+     * Resets the histograms of all stages
+     */
+    public void reset() {
+        for (LatencyHistogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+    }
+}
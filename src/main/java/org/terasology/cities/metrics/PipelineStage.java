@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.metrics;
+
+/**
+ * The stages of the generation pipeline that are measured. The sector stages up to {@link #LAKES}
+ * record only their own work, so their times can be summed up. {@link #CITIES} and
+ * {@link #CHUNK_RASTER} record the total time and include the stages that run inside them.
+ */
+public enum PipelineStage {
+
+    /**
+     * Finding settlement sites in a sector
+     */
+    SITES,
+
+    /**
+     * Connecting sites within and across sectors
+     */
+    SITE_CONNECTIONS,
+
+    /**
+     * Generating the roads of a sector
+     */
+    ROADS,
+
+    /**
+     * Computing the area that is covered by the roads of a sector
+     */
+    ROAD_SHAPE,
+
+    /**
+     * Tracing the lake contours of a sector
+     */
+    LAKES,
+
+    /**
+     * Decorating all cities of a sector, including {@link #TOWN_WALL}, {@link #LOTS} and {@link #BUILDINGS}
+     * (which run in parallel). Sites and road shapes are not included.
+     */
+    CITIES,
+
+    /**
+     * Generating the town wall of a single city
+     */
+    TOWN_WALL,
+
+    /**
+     * Generating the lots of a single city
+     */
+    LOTS,
+
+    /**
+     * Generating buildings and fences on the lots of a single city
+     */
+    BUILDINGS,
+
+    /**
+     * Rasterizing roads and cities into a single chunk, including all sector stages that
+     * are not cached yet
+     */
+    CHUNK_RASTER
+}
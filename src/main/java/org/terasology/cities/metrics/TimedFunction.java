@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.metrics;
+
+import com.google.common.base.Function;
+
+/**
+ * Records the duration of every function call in a histogram. Only the function's own work is
+ * recorded: time spent in other timed functions that are called from it in the same thread
+ * (e.g. the lakes that are needed to build the roads) is subtracted. Waiting for a value
+ * that another thread is loading counts as own work.
+ * @param <F> the argument type
+ * @param <T> the return value type
+ */
+public final class TimedFunction<F, T> implements Function<F, T> {
+
+    /**
+     * The sum of all durations that have been recorded by timed functions in the current thread
+     */
+    private static final ThreadLocal<long[]> RECORDED = new ThreadLocal<long[]>() {
+
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+
+    private final Function<F, T> function;
+    private final LatencyHistogram histogram;
+
+    private TimedFunction(Function<F, T> function, LatencyHistogram histogram) {
+        this.function = function;
+        this.histogram = histogram;
+    }
+
+    /**
+     * @param function the function to wrap
+     * @param histogram the histogram that receives the durations
+     * @return the timed function
+     */
+    public static <F, T> Function<F, T> wrap(Function<F, T> function, LatencyHistogram histogram) {
+        return new TimedFunction<>(function, histogram);
+    }
+
+    @Override
+    public T apply(F input) {
+        long[] recorded = RECORDED.get();
+        long nestedStart = recorded[0];
+        long start = System.nanoTime();
+        try {
+            return function.apply(input);
+        } finally {
+            long nested = recorded[0] - nestedStart;
+            long own = System.nanoTime() - start - nested;
+            histogram.record(own);
+
+            // the callers subtract nested and own time alike
+            recorded[0] += Math.max(0, own);
+        }
+    }
+}
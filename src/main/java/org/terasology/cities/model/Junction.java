@@ -16,19 +16,15 @@
 
 package org.terasology.cities.model;
 
-import java.util.Collections;
-import java.util.Set;
-
 import org.terasology.math.Vector2i;
 
-import com.google.common.collect.Sets;
-
 /**
- * A site where two or more roads meet
+ * A site where two or more roads meet. Junctions are plain values - they are
+ * equal if they are at the same position, so they can be created independently
+ * by different sectors and threads.
  */
 public class Junction {
-    private final Set<Road> roads = Sets.newHashSet();
-    
+
     private final Vector2i coords;
     
     /**
@@ -45,22 +41,25 @@ public Vector2i getCoords() {
         return coords;
     }
 
-    /**
-     * @param road the road to add to this junction
-     */
-    public void addRoad(Road road) {
-        roads.add(road);
+    @Override
+    public int hashCode() {
+        return coords.hashCode();
     }
-    
-    /**
-     * @return an unmodifiable view on the connected roads (can be empty, but never <code>null</code>)
-     */
-     public Set<Road> getRoads() {
-        return Collections.unmodifiableSet(roads);
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof Junction)) {
+            return false;
+        }
+        Junction other = (Junction) obj;
+        return coords.equals(other.coords);
     }
-    
+
     @Override
     public String toString() {
-        return "Junction [" + coords + ", " + roads.size() + " roads]";
+        return "Junction [" + coords + "]";
     }
 }
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.model;
+
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.util.Collection;
+import java.util.List;
+
+import org.terasology.commonworld.Sector;
+import org.terasology.commonworld.contour.Contour;
+import org.terasology.math.Vector2i;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A coarse raster of the lakes in a sector. Every cell is either dry, completely
+ * covered by a single lake or on a lake shore. Only shore cells require an exact
+ * (and expensive) contour test, so most look-ups are a simple array access.
+ * Islands are considered part of the lake, just as in {@link Lake#contains}.
+ */
+public final class LakeMask {
+
+    private static final int CELL_BITS = 3;
+
+    /**
+     * The edge length of a cell in blocks - matches the resolution of the contour tracer
+     */
+    public static final int CELL_SIZE = 1 << CELL_BITS;
+
+    private static final short DRY = 0;
+    private static final short SHORE = -1;
+
+    private static final LakeMask NONE = new LakeMask(0, 0, 0, new short[0], ImmutableList.<Lake>of(), new Rectangle[0]);
+
+    private final int minX;
+    private final int minZ;
+    private final int cellsPerSide;
+
+    /**
+     * Contains either DRY, SHORE or the lake index + 1
+     */
+    private final short[] cells;
+    private final List<Lake> lakes;
+    private final Rectangle[] bounds;
+
+    private LakeMask(int minX, int minZ, int cellsPerSide, short[] cells, List<Lake> lakes, Rectangle[] bounds) {
+        this.minX = minX;
+        this.minZ = minZ;
+        this.cellsPerSide = cellsPerSide;
+        this.cells = cells;
+        this.lakes = lakes;
+        this.bounds = bounds;
+    }
+
+    /**
+     * @return a mask without any water
+     */
+    public static LakeMask none() {
+        return NONE;
+    }
+
+    /**
+     * @param sector the sector to cover
+     * @param lakes the lakes in that sector
+     * @return the lake mask for the sector
+     */
+    public static LakeMask create(Sector sector, Collection<Lake> lakes) {
+        Vector2i coords = sector.getCoords();
+        int minX = coords.x * Sector.SIZE;
+        int minZ = coords.y * Sector.SIZE;
+        int cellsPerSide = (Sector.SIZE + CELL_SIZE - 1) / CELL_SIZE;
+        short[] cells = new short[cellsPerSide * cellsPerSide];
+        List<Lake> lakeList = ImmutableList.copyOf(lakes);
+        Rectangle[] bounds = new Rectangle[lakeList.size()];
+
+        if (lakeList.size() >= Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many lakes in " + sector + ": " + lakeList.size());
+        }
+
+        for (int i = 0; i < lakeList.size(); i++) {
+            Polygon poly = lakeList.get(i).getContour().getPolygon();
+            Rectangle bbox = poly.getBounds();
+            bounds[i] = bbox;
+
+            // arithmetic shifts round towards negative infinity
+            int cx0 = Math.max(0, (bbox.x - minX) >> CELL_BITS);
+            int cz0 = Math.max(0, (bbox.y - minZ) >> CELL_BITS);
+            int cx1 = Math.min(cellsPerSide - 1, (bbox.x + bbox.width - minX) >> CELL_BITS);
+            int cz1 = Math.min(cellsPerSide - 1, (bbox.y + bbox.height - minZ) >> CELL_BITS);
+
+            for (int cz = cz0; cz <= cz1; cz++) {
+                for (int cx = cx0; cx <= cx1; cx++) {
+                    // the cell rectangle is grown by one block to be safe at the contour boundary
+                    Rectangle cellRect = new Rectangle(minX + cx * CELL_SIZE - 1, minZ + cz * CELL_SIZE - 1, CELL_SIZE + 2, CELL_SIZE + 2);
+                    int idx = cz * cellsPerSide + cx;
+
+                    if (poly.contains(cellRect)) {
+                        if (cells[idx] == DRY) {
+                            cells[idx] = (short) (i + 1);
+                        }
+                    } else if (poly.intersects(cellRect)) {
+                        cells[idx] = SHORE;
+                    }
+                }
+            }
+        }
+
+        return new LakeMask(minX, minZ, cellsPerSide, cells, lakeList, bounds);
+    }
+
+    /**
+     * @param x the x world coordinate
+     * @param z the z world coordinate
+     * @return true if the position is inside a lake of this sector
+     */
+    public boolean isWater(int x, int z) {
+        return indexOf(x, z) >= 0;
+    }
+
+    /**
+     * @param x the x world coordinate
+     * @param z the z world coordinate
+     * @return the lake at that position if it is inside this sector
+     */
+    public Optional<Lake> getLake(int x, int z) {
+        int idx = indexOf(x, z);
+        return (idx >= 0) ? Optional.of(lakes.get(idx)) : Optional.<Lake>absent();
+    }
+
+    private int indexOf(int x, int z) {
+        int cx = (x - minX) >> CELL_BITS;
+        int cz = (z - minZ) >> CELL_BITS;
+
+        if (cx < 0 || cz < 0 || cx >= cellsPerSide || cz >= cellsPerSide) {
+            return -1;
+        }
+
+        short cell = cells[cz * cellsPerSide + cx];
+
+        if (cell == DRY) {
+            return -1;
+        }
+
+        if (cell != SHORE) {
+            return cell - 1;
+        }
+
+        // exact fallback close to the shore line
+        for (int i = 0; i < lakes.size(); i++) {
+            if (bounds[i].contains(x, z)) {
+                Contour contour = lakes.get(i).getContour();
+                if (contour.isInside(x, z)) {
+                    return i;
+                }
+            }
+        }
+
+        return -1;
+    }
+}
@@ -18,49 +18,49 @@
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 
 import org.terasology.math.Vector2i;
 
+import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 
 /**
  * A road contains a start and an end junction point and a list of points between them.
  * The point list goes from start to end, but does not contain the start and end points.
+ * Roads are immutable and equal if all of their properties are equal.
  */
 public class Road {
 
-    private final List<Vector2i> points = Lists.newArrayList();
+    private final List<Vector2i> points;
     private final Junction end;
     private final Junction start;
-    private double width = 1.0f;
+    private final double width;
+    private final int hashCode;
 
     /**
      * The point list goes from start to end, but does not contain them
      * @param start the start point
      * @param end the end point
+     * @param points the points between start and end (will be copied)
+     * @param width the width of the road in blocks
      */
-    public Road(Junction start, Junction end) {
+    public Road(Junction start, Junction end, List<Vector2i> points, double width) {
+        Preconditions.checkArgument(start != null, "start must not be null");
+        Preconditions.checkArgument(end != null, "end must not be null");
+
         this.start = start;
         this.end = end;
-        
-        start.addRoad(this);
-        end.addRoad(this);
-    }
-
-    /**
-     * @param width the width of the road in blocks
-     */
-    public void setWidth(double width) {
         this.width = width;
+
+        List<Vector2i> copy = Lists.newArrayListWithCapacity(points.size());
+        for (Vector2i pt : points) {
+            copy.add(new Vector2i(pt));
+        }
+        this.points = Collections.unmodifiableList(copy);
+        this.hashCode = Objects.hash(start, end, this.points, width);
     }
-    
-    /**
-     * @param pt a point on the road
-     */
-    public void add(Vector2i pt) {
-        points.add(pt);
-    }
-    
+
     /**
      * @return the end
      */
@@ -76,10 +76,11 @@ public Junction getStart() {
     }
 
     /**
-     * @return an unmodifiable view on the segment points (can be empty, but never <code>null</code>)
+     * @return an unmodifiable list of the segment points (can be empty, but never <code>null</code>).
+     * The points must not be modified.
      */
     public List<Vector2i> getPoints() {
-        return Collections.unmodifiableList(points);
+        return points;
     }
     
     /**
@@ -89,6 +90,27 @@ public double getWidth() {
         return width;
     }
     
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof Road)) {
+            return false;
+        }
+        Road other = (Road) obj;
+        return hashCode == other.hashCode
+            && Objects.equals(start, other.start)
+            && Objects.equals(end, other.end)
+            && Objects.equals(points, other.points)
+            && Double.compare(width, other.width) == 0;
+    }
+
     @Override
     public String toString() {
         return "Road [" + start + " -> " + end + ", " + (points.size() + 1) + " segments]";
@@ -69,7 +69,14 @@ public int hashCode() {
 
     @Override
     public boolean equals(Object obj) {
-        return Objects.equals(coords, radius);
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof Site)) {
+            return false;
+        }
+        Site other = (Site) obj;
+        return radius == other.radius && Objects.equals(coords, other.coords);
     }
 
     @Override
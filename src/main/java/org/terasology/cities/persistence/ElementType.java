@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.persistence;
+
+import java.io.IOException;
+
+/**
+ * The type tags of polymorphic model elements in the binary format.
+ * The ordinal is written to the stream, so new entries must be appended at the end.
+ */
+public enum ElementType {
+
+    /**
+     * {@link org.terasology.cities.model.bldg.SimpleHome}
+     */
+    SIMPLE_HOME,
+
+    /**
+     * {@link org.terasology.cities.model.bldg.SimpleChurch}
+     */
+    SIMPLE_CHURCH,
+
+    /**
+     * {@link org.terasology.cities.model.bldg.SimpleTower}
+     */
+    SIMPLE_TOWER,
+
+    /**
+     * {@link org.terasology.cities.model.bldg.RoundHouse}
+     */
+    ROUND_HOUSE,
+
+    /**
+     * {@link org.terasology.cities.model.roof.FlatRoof}
+     */
+    ROOF_FLAT,
+
+    /**
+     * {@link org.terasology.cities.model.roof.BattlementRoof}
+     */
+    ROOF_BATTLEMENT,
+
+    /**
+     * {@link org.terasology.cities.model.roof.HipRoof}
+     */
+    ROOF_HIP,
+
+    /**
+     * {@link org.terasology.cities.model.roof.DomeRoof}
+     */
+    ROOF_DOME,
+
+    /**
+     * {@link org.terasology.cities.model.roof.SaddleRoof}
+     */
+    ROOF_SADDLE,
+
+    /**
+     * {@link org.terasology.cities.model.roof.PentRoof}
+     */
+    ROOF_PENT,
+
+    /**
+     * {@link org.terasology.cities.model.roof.ConicRoof}
+     */
+    ROOF_CONIC,
+
+    /**
+     * {@link org.terasology.cities.model.bldg.SolidWallSegment}
+     */
+    WALL_SOLID,
+
+    /**
+     * {@link org.terasology.cities.model.bldg.GateWallSegment}
+     */
+    WALL_GATE;
+
+    private static final ElementType[] VALUES = values();
+
+    /**
+     * @param tag the tag as read from the stream
+     * @return the element type
+     * @throws IOException if the tag is unknown
+     */
+    public static ElementType fromTag(int tag) throws IOException {
+        if (tag < 0 || tag >= VALUES.length) {
+            throw new IOException("Unknown element type tag " + tag);
+        }
+        return VALUES[tag];
+    }
+}
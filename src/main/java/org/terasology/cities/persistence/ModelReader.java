@@ -0,0 +1,438 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.persistence;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.io.DataInput;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+import org.terasology.cities.model.City;
+import org.terasology.cities.model.Junction;
+import org.terasology.cities.model.Lake;
+import org.terasology.cities.model.MedievalTown;
+import org.terasology.cities.model.Road;
+import org.terasology.cities.model.SimpleFence;
+import org.terasology.cities.model.SimpleLot;
+import org.terasology.cities.model.bldg.AbstractBuilding;
+import org.terasology.cities.model.bldg.Building;
+import org.terasology.cities.model.bldg.GateWallSegment;
+import org.terasology.cities.model.bldg.MultipartBuilding;
+import org.terasology.cities.model.bldg.RoundHouse;
+import org.terasology.cities.model.bldg.SimpleBuildingPart;
+import org.terasology.cities.model.bldg.SimpleChurch;
+import org.terasology.cities.model.bldg.SimpleDoor;
+import org.terasology.cities.model.bldg.SimpleHome;
+import org.terasology.cities.model.bldg.SimpleTower;
+import org.terasology.cities.model.bldg.SimpleWindow;
+import org.terasology.cities.model.bldg.SolidWallSegment;
+import org.terasology.cities.model.bldg.Tower;
+import org.terasology.cities.model.bldg.TownWall;
+import org.terasology.cities.model.roof.BattlementRoof;
+import org.terasology.cities.model.roof.ConicRoof;
+import org.terasology.cities.model.roof.DomeRoof;
+import org.terasology.cities.model.roof.FlatRoof;
+import org.terasology.cities.model.roof.HipRoof;
+import org.terasology.cities.model.roof.PentRoof;
+import org.terasology.cities.model.roof.Roof;
+import org.terasology.cities.model.roof.SaddleRoof;
+import org.terasology.commonworld.Orientation;
+import org.terasology.commonworld.contour.Contour;
+import org.terasology.math.Vector2i;
+
+import com.google.common.base.Function;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+/**
+ * Reads model elements that were written by {@link ModelWriter}.
+ * The model objects are created directly while the input is streamed.
+ */
+public class ModelReader {
+
+    private static final Orientation[] ORIENTATIONS = Orientation.values();
+
+    private final DataInput in;
+    private final int originX;
+    private final int originZ;
+
+    /**
+     * @param in the input to read from
+     * @param origin the origin that was used for writing
+     */
+    public ModelReader(DataInput in, Vector2i origin) {
+        this.in = in;
+        this.originX = origin.x;
+        this.originZ = origin.y;
+    }
+
+    /**
+     * Reads and verifies magic number and format version
+     * @throws IOException if reading fails or the header does not match
+     */
+    public void readHeader() throws IOException {
+        int magic = in.readInt();
+        if (magic != ModelWriter.MAGIC) {
+            throw new IOException("Unexpected magic number " + Integer.toHexString(magic));
+        }
+
+        int version = VarInts.readUnsigned(in);
+        if (version != ModelWriter.VERSION) {
+            throw new IOException("Unsupported format version " + version);
+        }
+    }
+
+    /**
+     * @return the set of cities
+     * @throws IOException if reading fails or the data is corrupt
+     */
+    public Set<City> readCities() throws IOException {
+        int count = readCount();
+        Set<City> cities = Sets.newHashSet();
+        for (int i = 0; i < count; i++) {
+            cities.add(readCity());
+        }
+        return cities;
+    }
+
+    /**
+     * @param junctions provides junctions based on their location
+     * @return the set of roads
+     * @throws IOException if reading fails or the data is corrupt
+     */
+    public Set<Road> readRoads(Function<Vector2i, Junction> junctions) throws IOException {
+        int count = readCount();
+        Set<Road> roads = Sets.newHashSet();
+        for (int i = 0; i < count; i++) {
+            roads.add(readRoad(junctions));
+        }
+        return roads;
+    }
+
+    /**
+     * @return the set of lakes
+     * @throws IOException if reading fails or the data is corrupt
+     */
+    public Set<Lake> readLakes() throws IOException {
+        int count = readCount();
+        Set<Lake> lakes = Sets.newHashSet();
+        for (int i = 0; i < count; i++) {
+            lakes.add(readLake());
+        }
+        return lakes;
+    }
+
+    private City readCity() throws IOException {
+        String name = in.readUTF();
+        Vector2i pos = readPos();
+        int radius = readInt();
+
+        MedievalTown town = new MedievalTown(name, pos, radius);
+
+        int lotCount = readCount();
+        for (int i = 0; i < lotCount; i++) {
+            town.add(readLot());
+        }
+
+        if (in.readBoolean()) {
+            town.setTownWall(readTownWall());
+        }
+
+        return town;
+    }
+
+    private SimpleLot readLot() throws IOException {
+        SimpleLot lot = new SimpleLot(readRect());
+
+        int bldgCount = readCount();
+        for (int i = 0; i < bldgCount; i++) {
+            lot.addBuilding(readBuilding());
+        }
+
+        if (in.readBoolean()) {
+            Rectangle rc = readRect();
+            Orientation gateOrient = readOrientation();
+            Vector2i gate = readPos();
+            lot.setFence(new SimpleFence(rc, gateOrient, gate));
+        }
+
+        return lot;
+    }
+
+    private Building readBuilding() throws IOException {
+        ElementType type = readType();
+        switch (type) {
+        case SIMPLE_HOME: {
+            Rectangle layout = readRect();
+            int baseHeight = readInt();
+            int wallHeight = readInt();
+            Roof roof = readRoof();
+            SimpleDoor door = readDoor();
+            SimpleHome home = new SimpleHome(layout, roof, baseHeight, wallHeight, door);
+            readWindows(home);
+            return home;
+        }
+
+        case SIMPLE_TOWER: {
+            Rectangle layout = readRect();
+            int baseHeight = readInt();
+            int wallHeight = readInt();
+            SimpleTower tower = new SimpleTower(layout, baseHeight, wallHeight);
+            readWindows(tower);
+            return tower;
+        }
+
+        case ROUND_HOUSE: {
+            Vector2i center = readPos();
+            int radius = readInt();
+            int baseHeight = readInt();
+            int wallHeight = readInt();
+            RoundHouse house = new RoundHouse(center, radius, baseHeight, wallHeight);
+            if (in.readBoolean()) {
+                house.setDoor(readDoor());
+            }
+            readWindows(house);
+            return house;
+        }
+
+        case SIMPLE_CHURCH: {
+            SimpleBuildingPart nave = readPart();
+            SimpleBuildingPart tower = readPart();
+            SimpleDoor door = readDoor();
+            SimpleChurch church = new SimpleChurch(nave, tower, door);
+
+            int partCount = readCount();
+            for (int i = 0; i < partCount; i++) {
+                church.addPart(readPart());
+            }
+
+            readWindows(church);
+            return church;
+        }
+
+        default:
+            throw new IOException("Unexpected building type " + type);
+        }
+    }
+
+    private SimpleBuildingPart readPart() throws IOException {
+        Rectangle layout = readRect();
+        int baseHeight = readInt();
+        int topHeight = readInt();
+        Roof roof = readRoof();
+        return new SimpleBuildingPart(layout, baseHeight, topHeight, roof);
+    }
+
+    private Roof readRoof() throws IOException {
+        ElementType type = readType();
+        switch (type) {
+        case ROOF_BATTLEMENT:
+            return new BattlementRoof(readRect(), readInt(), readInt());
+
+        case ROOF_FLAT:
+            return new FlatRoof(readRect(), readInt(), readInt());
+
+        case ROOF_HIP: {
+            Rectangle rc = readRect();
+            int baseHeight = readInt();
+            double pitch = in.readDouble();
+            int maxHeight = readInt();
+            return new HipRoof(rc, baseHeight, pitch, maxHeight);
+        }
+
+        case ROOF_DOME:
+            return new DomeRoof(readRect(), readInt(), readInt());
+
+        case ROOF_SADDLE: {
+            Rectangle rc = readRect();
+            int baseHeight = readInt();
+            Orientation orientation = readOrientation();
+            double pitch = in.readDouble();
+            return new SaddleRoof(rc, baseHeight, orientation, pitch);
+        }
+
+        case ROOF_PENT: {
+            Rectangle rc = readRect();
+            int baseHeight = readInt();
+            Orientation orientation = readOrientation();
+            double pitch = in.readDouble();
+            return new PentRoof(rc, baseHeight, orientation, pitch);
+        }
+
+        case ROOF_CONIC: {
+            Vector2i center = readPos();
+            int radius = readInt();
+            int baseHeight = readInt();
+            int pitch = readInt();
+            return new ConicRoof(center, radius, baseHeight, pitch);
+        }
+
+        default:
+            throw new IOException("Unexpected roof type " + type);
+        }
+    }
+
+    private SimpleDoor readDoor() throws IOException {
+        Orientation orientation = readOrientation();
+        Rectangle rc = readRect();
+        int baseHeight = readInt();
+        int topHeight = readInt();
+        return new SimpleDoor(orientation, rc, baseHeight, topHeight);
+    }
+
+    private void readWindows(AbstractBuilding bldg) throws IOException {
+        int count = readCount();
+        for (int i = 0; i < count; i++) {
+            bldg.addWindow(readWindow());
+        }
+    }
+
+    private void readWindows(MultipartBuilding bldg) throws IOException {
+        int count = readCount();
+        for (int i = 0; i < count; i++) {
+            bldg.addWindow(readWindow());
+        }
+    }
+
+    private SimpleWindow readWindow() throws IOException {
+        Orientation orientation = readOrientation();
+        Rectangle rc = readRect();
+        int baseHeight = readInt();
+        int topHeight = readInt();
+        return new SimpleWindow(orientation, rc, baseHeight, topHeight);
+    }
+
+    private TownWall readTownWall() throws IOException {
+        TownWall tw = new TownWall();
+
+        int wallCount = readCount();
+        for (int i = 0; i < wallCount; i++) {
+            ElementType type = readType();
+            int wallHeight = readInt();
+            Vector2i start = readPos();
+            Vector2i end = readPos();
+            int thickness = readInt();
+
+            switch (type) {
+            case WALL_SOLID:
+                tw.addWall(new SolidWallSegment(start, end, thickness, wallHeight));
+                break;
+
+            case WALL_GATE:
+                tw.addWall(new GateWallSegment(start, end, thickness, wallHeight));
+                break;
+
+            default:
+                throw new IOException("Unexpected wall segment type " + type);
+            }
+        }
+
+        int towerCount = readCount();
+        for (int i = 0; i < towerCount; i++) {
+            Building bldg = readBuilding();
+            if (!(bldg instanceof Tower)) {
+                throw new IOException("Expected a tower, but found " + bldg.getClass());
+            }
+            tw.addTower((Tower) bldg);
+        }
+
+        return tw;
+    }
+
+    private Road readRoad(Function<Vector2i, Junction> junctions) throws IOException {
+        Junction start = junctions.apply(readPos());
+        Junction end = junctions.apply(readPos());
+        double width = in.readDouble();
+
+        int count = readCount();
+        List<Vector2i> points = Lists.newArrayListWithCapacity(count);
+        int x = start.getCoords().x;
+        int z = start.getCoords().y;
+        for (int i = 0; i < count; i++) {
+            x += VarInts.readSigned(in);
+            z += VarInts.readSigned(in);
+            points.add(new Vector2i(x, z));
+        }
+
+        return new Road(start, end, points, width);
+    }
+
+    private Lake readLake() throws IOException {
+        String name = in.readUTF();
+        Lake lake = new Lake(readContour(), name);
+
+        int islandCount = readCount();
+        for (int i = 0; i < islandCount; i++) {
+            lake.addIsland(readContour());
+        }
+
+        return lake;
+    }
+
+    private Contour readContour() throws IOException {
+        Contour contour = new Contour();
+        int count = readCount();
+        int x = originX;
+        int z = originZ;
+        for (int i = 0; i < count; i++) {
+            x += VarInts.readSigned(in);
+            z += VarInts.readSigned(in);
+            contour.addPoint(new Point(x, z));
+        }
+        return contour;
+    }
+
+    private Rectangle readRect() throws IOException {
+        int x = originX + VarInts.readSigned(in);
+        int z = originZ + VarInts.readSigned(in);
+        int width = readInt();
+        int height = readInt();
+        return new Rectangle(x, z, width, height);
+    }
+
+    private Orientation readOrientation() throws IOException {
+        int idx = in.readUnsignedByte();
+        if (idx >= ORIENTATIONS.length) {
+            throw new IOException("Unknown orientation " + idx);
+        }
+        return ORIENTATIONS[idx];
+    }
+
+    private ElementType readType() throws IOException {
+        return ElementType.fromTag(in.readUnsignedByte());
+    }
+
+    private Vector2i readPos() throws IOException {
+        int x = originX + VarInts.readSigned(in);
+        int z = originZ + VarInts.readSigned(in);
+        return new Vector2i(x, z);
+    }
+
+    private int readCount() throws IOException {
+        int count = VarInts.readUnsigned(in);
+        if (count < 0) {
+            throw new IOException("Element count out of range " + count);
+        }
+        return count;
+    }
+
+    private int readInt() throws IOException {
+        return VarInts.readSigned(in);
+    }
+}
@@ -0,0 +1,415 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.persistence;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.geom.Ellipse2D;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+
+import org.terasology.cities.model.City;
+import org.terasology.cities.model.Lake;
+import org.terasology.cities.model.Lot;
+import org.terasology.cities.model.MedievalTown;
+import org.terasology.cities.model.Road;
+import org.terasology.cities.model.SimpleFence;
+import org.terasology.cities.model.SimpleLot;
+import org.terasology.cities.model.bldg.Building;
+import org.terasology.cities.model.bldg.BuildingPart;
+import org.terasology.cities.model.bldg.GateWallSegment;
+import org.terasology.cities.model.bldg.RoundHouse;
+import org.terasology.cities.model.bldg.SimpleBuildingPart;
+import org.terasology.cities.model.bldg.SimpleChurch;
+import org.terasology.cities.model.bldg.SimpleDoor;
+import org.terasology.cities.model.bldg.SimpleHome;
+import org.terasology.cities.model.bldg.SimpleTower;
+import org.terasology.cities.model.bldg.SimpleWindow;
+import org.terasology.cities.model.bldg.SolidWallSegment;
+import org.terasology.cities.model.bldg.Tower;
+import org.terasology.cities.model.bldg.TownWall;
+import org.terasology.cities.model.bldg.WallSegment;
+import org.terasology.cities.model.bldg.Window;
+import org.terasology.cities.model.roof.BattlementRoof;
+import org.terasology.cities.model.roof.ConicRoof;
+import org.terasology.cities.model.roof.DomeRoof;
+import org.terasology.cities.model.roof.FlatRoof;
+import org.terasology.cities.model.roof.HipRoof;
+import org.terasology.cities.model.roof.PentRoof;
+import org.terasology.cities.model.roof.Roof;
+import org.terasology.cities.model.roof.SaddleRoof;
+import org.terasology.commonworld.Orientation;
+import org.terasology.commonworld.contour.Contour;
+import org.terasology.math.Vector2i;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Writes model elements in a compact binary format that can be read by {@link ModelReader}.
+ * <ul>
+ * <li>All integers are variable-length encoded (see {@link VarInts})</li>
+ * <li>Coordinates are relative to an origin, usually the sector origin</li>
+ * <li>Road points and contour points are stored as deltas to their predecessor</li>
+ * <li>Polymorphic elements start with an {@link ElementType} tag</li>
+ * </ul>
+ */
+public class ModelWriter {
+
+    /**
+     * "CITY" in ASCII
+     */
+    static final int MAGIC = 0x43495459;
+
+    /**
+     * Increase this whenever the binary format or the generated content changes
+     */
+    static final int VERSION = 3;
+
+    private final DataOutput out;
+    private final int originX;
+    private final int originZ;
+
+    /**
+     * @param out the output to write to
+     * @param origin all coordinates are written relative to this point
+     */
+    public ModelWriter(DataOutput out, Vector2i origin) {
+        this.out = out;
+        this.originX = origin.x;
+        this.originZ = origin.y;
+    }
+
+    /**
+     * Writes magic number and format version
+     * @throws IOException if writing fails
+     */
+    public void writeHeader() throws IOException {
+        out.writeInt(MAGIC);
+        VarInts.writeUnsigned(out, VERSION);
+    }
+
+    /**
+     * @param cities the cities to write (only {@link MedievalTown}s are supported)
+     * @throws IOException if writing fails or an element type is not supported
+     */
+    public void writeCities(Collection<City> cities) throws IOException {
+        writeCount(cities.size());
+        for (City city : cities) {
+            writeCity(city);
+        }
+    }
+
+    /**
+     * @param roads the roads to write
+     * @throws IOException if writing fails
+     */
+    public void writeRoads(Collection<Road> roads) throws IOException {
+        writeCount(roads.size());
+        for (Road road : roads) {
+            writeRoad(road);
+        }
+    }
+
+    /**
+     * @param lakes the lakes to write
+     * @throws IOException if writing fails
+     */
+    public void writeLakes(Collection<Lake> lakes) throws IOException {
+        writeCount(lakes.size());
+        for (Lake lake : lakes) {
+            writeLake(lake);
+        }
+    }
+
+    private void writeCity(City city) throws IOException {
+        if (!(city instanceof MedievalTown)) {
+            throw new IOException("Unsupported city type " + city.getClass());
+        }
+
+        MedievalTown town = (MedievalTown) city;
+        out.writeUTF(town.getName());
+        writePos(town.getPos());
+        writeInt((int) town.getRadius());
+
+        writeCount(town.getLots().size());
+        for (Lot lot : town.getLots()) {
+            writeLot(lot);
+        }
+
+        out.writeBoolean(town.getTownWall().isPresent());
+        if (town.getTownWall().isPresent()) {
+            writeTownWall(town.getTownWall().get());
+        }
+    }
+
+    private void writeLot(Lot lot) throws IOException {
+        if (!(lot instanceof SimpleLot)) {
+            throw new IOException("Unsupported lot type " + lot.getClass());
+        }
+
+        SimpleLot simpleLot = (SimpleLot) lot;
+        writeRect(simpleLot.getShape());
+
+        writeCount(simpleLot.getBuildings().size());
+        for (Building bldg : simpleLot.getBuildings()) {
+            writeBuilding(bldg);
+        }
+
+        out.writeBoolean(simpleLot.getFence().isPresent());
+        if (simpleLot.getFence().isPresent()) {
+            SimpleFence fence = simpleLot.getFence().get();
+            writeRect(fence.getRect());
+            writeOrientation(fence.getGateOrientation());
+            writePos(fence.getGate());
+        }
+    }
+
+    private void writeBuilding(Building bldg) throws IOException {
+        // test sub-classes first
+        if (bldg instanceof SimpleHome) {
+            SimpleHome home = (SimpleHome) bldg;
+            writeType(ElementType.SIMPLE_HOME);
+            writeRect(home.getLayout());
+            writeInt(home.getBaseHeight());
+            writeInt(home.getWallHeight());
+            writeRoof(home.getRoof());
+            writeDoor(home.getDoor());
+            writeWindows(home.getWindows());
+        } else if (bldg instanceof SimpleTower) {
+            SimpleTower tower = (SimpleTower) bldg;
+            writeType(ElementType.SIMPLE_TOWER);
+            writeRect(tower.getLayout());
+            writeInt(tower.getBaseHeight());
+            writeInt(tower.getWallHeight());
+            writeWindows(tower.getWindows());
+        } else if (bldg instanceof RoundHouse) {
+            RoundHouse house = (RoundHouse) bldg;
+            Ellipse2D layout = house.getLayout();
+            writeType(ElementType.ROUND_HOUSE);
+            writePos((int) layout.getCenterX(), (int) layout.getCenterY());
+            writeInt((int) (layout.getWidth() * 0.5));
+            writeInt(house.getBaseHeight());
+            writeInt(house.getWallHeight());
+            out.writeBoolean(house.getDoor() != null);
+            if (house.getDoor() != null) {
+                writeDoor(house.getDoor());
+            }
+            writeWindows(house.getWindows());
+        } else if (bldg instanceof SimpleChurch) {
+            SimpleChurch church = (SimpleChurch) bldg;
+            writeType(ElementType.SIMPLE_CHURCH);
+            writePart(church.getNave());
+            writePart(church.getTower());
+            writeDoor(church.getDoor());
+
+            List<BuildingPart> others = Lists.newArrayList(church.getParts());
+            others.remove(church.getNave());
+            others.remove(church.getTower());
+            writeCount(others.size());
+            for (BuildingPart part : others) {
+                writePart(part);
+            }
+
+            writeWindows(church.getWindows());
+        } else {
+            throw new IOException("Unsupported building type " + bldg.getClass());
+        }
+    }
+
+    private void writePart(BuildingPart part) throws IOException {
+        if (!(part instanceof SimpleBuildingPart)) {
+            throw new IOException("Unsupported building part type " + part.getClass());
+        }
+
+        SimpleBuildingPart simplePart = (SimpleBuildingPart) part;
+        writeRect(simplePart.getLayout());
+        writeInt(simplePart.getBaseHeight());
+        writeInt(simplePart.getTopHeight());
+        writeRoof(simplePart.getRoof());
+    }
+
+    private void writeRoof(Roof roof) throws IOException {
+        // test sub-classes first
+        if (roof instanceof BattlementRoof) {
+            BattlementRoof flat = (BattlementRoof) roof;
+            writeType(ElementType.ROOF_BATTLEMENT);
+            writeRect(flat.getArea());
+            writeInt(flat.getBaseHeight());
+            writeInt(flat.getBorderHeight(0, 0));
+        } else if (roof instanceof FlatRoof) {
+            FlatRoof flat = (FlatRoof) roof;
+            writeType(ElementType.ROOF_FLAT);
+            writeRect(flat.getArea());
+            writeInt(flat.getBaseHeight());
+            writeInt(flat.getBorderHeight(0, 0));
+        } else if (roof instanceof HipRoof) {
+            HipRoof hip = (HipRoof) roof;
+            writeType(ElementType.ROOF_HIP);
+            writeRect(hip.getArea());
+            writeInt(hip.getBaseHeight());
+            out.writeDouble(hip.getPitch());
+            writeInt(hip.getMaxHeight());
+        } else if (roof instanceof DomeRoof) {
+            DomeRoof dome = (DomeRoof) roof;
+            writeType(ElementType.ROOF_DOME);
+            writeRect(dome.getArea());
+            writeInt(dome.getBaseHeight());
+            writeInt(dome.getHeight());
+        } else if (roof instanceof SaddleRoof) {
+            SaddleRoof saddle = (SaddleRoof) roof;
+            writeType(ElementType.ROOF_SADDLE);
+            writeRect(saddle.getArea());
+            writeInt(saddle.getBaseHeight());
+            writeOrientation(saddle.getOrientation());
+            out.writeDouble(saddle.getPitch());
+        } else if (roof instanceof PentRoof) {
+            PentRoof pent = (PentRoof) roof;
+            writeType(ElementType.ROOF_PENT);
+            writeRect(pent.getArea());
+            writeInt(pent.getBaseHeight());
+            writeOrientation(pent.getOrientation());
+            out.writeDouble(pent.getPitch());
+        } else if (roof instanceof ConicRoof) {
+            ConicRoof conic = (ConicRoof) roof;
+            Ellipse2D area = conic.getArea();
+            writeType(ElementType.ROOF_CONIC);
+            writePos((int) area.getCenterX(), (int) area.getCenterY());
+            writeInt((int) (area.getWidth() * 0.5));
+            writeInt(conic.getBaseHeight());
+            writeInt(conic.getPitch());
+        } else {
+            throw new IOException("Unsupported roof type " + roof.getClass());
+        }
+    }
+
+    private void writeDoor(SimpleDoor door) throws IOException {
+        writeOrientation(door.getOrientation());
+        writeRect(door.getRect());
+        writeInt(door.getBaseHeight());
+        writeInt(door.getTopHeight());
+    }
+
+    private void writeWindows(Collection<Window> windows) throws IOException {
+        writeCount(windows.size());
+        for (Window wnd : windows) {
+            if (!(wnd instanceof SimpleWindow)) {
+                throw new IOException("Unsupported window type " + wnd.getClass());
+            }
+
+            SimpleWindow simpleWnd = (SimpleWindow) wnd;
+            writeOrientation(simpleWnd.getOrientation());
+            writeRect(simpleWnd.getRect());
+            writeInt(simpleWnd.getBaseHeight());
+            writeInt(simpleWnd.getTopHeight());
+        }
+    }
+
+    private void writeTownWall(TownWall tw) throws IOException {
+        writeCount(tw.getWalls().size());
+        for (WallSegment ws : tw.getWalls()) {
+            if (ws instanceof SolidWallSegment) {
+                writeType(ElementType.WALL_SOLID);
+                writeInt(((SolidWallSegment) ws).getWallHeight());
+            } else if (ws instanceof GateWallSegment) {
+                writeType(ElementType.WALL_GATE);
+                writeInt(((GateWallSegment) ws).getWallHeight());
+            } else {
+                throw new IOException("Unsupported wall segment type " + ws.getClass());
+            }
+            writePos(ws.getStart());
+            writePos(ws.getEnd());
+            writeInt(ws.getWallThickness());
+        }
+
+        writeCount(tw.getTowers().size());
+        for (Tower tower : tw.getTowers()) {
+            writeBuilding(tower);
+        }
+    }
+
+    private void writeRoad(Road road) throws IOException {
+        Vector2i start = road.getStart().getCoords();
+        writePos(start);
+        writePos(road.getEnd().getCoords());
+        out.writeDouble(road.getWidth());
+
+        writeCount(road.getPoints().size());
+        int prevX = start.x;
+        int prevZ = start.y;
+        for (Vector2i pt : road.getPoints()) {
+            VarInts.writeSigned(out, pt.x - prevX);
+            VarInts.writeSigned(out, pt.y - prevZ);
+            prevX = pt.x;
+            prevZ = pt.y;
+        }
+    }
+
+    private void writeLake(Lake lake) throws IOException {
+        out.writeUTF(lake.getName());
+        writeContour(lake.getContour());
+
+        writeCount(lake.getIslandContours().size());
+        for (Contour island : lake.getIslandContours()) {
+            writeContour(island);
+        }
+    }
+
+    private void writeContour(Contour contour) throws IOException {
+        writeCount(contour.getPoints().size());
+        int prevX = originX;
+        int prevZ = originZ;
+        for (Point pt : contour.getPoints()) {
+            VarInts.writeSigned(out, pt.x - prevX);
+            VarInts.writeSigned(out, pt.y - prevZ);
+            prevX = pt.x;
+            prevZ = pt.y;
+        }
+    }
+
+    private void writeRect(Rectangle rc) throws IOException {
+        writePos(rc.x, rc.y);
+        writeInt(rc.width);
+        writeInt(rc.height);
+    }
+
+    private void writeOrientation(Orientation orientation) throws IOException {
+        out.writeByte(orientation.ordinal());
+    }
+
+    private void writeType(ElementType type) throws IOException {
+        out.writeByte(type.ordinal());
+    }
+
+    private void writePos(Vector2i pos) throws IOException {
+        writePos(pos.x, pos.y);
+    }
+
+    private void writePos(int x, int z) throws IOException {
+        VarInts.writeSigned(out, x - originX);
+        VarInts.writeSigned(out, z - originZ);
+    }
+
+    private void writeCount(int count) throws IOException {
+        VarInts.writeUnsigned(out, count);
+    }
+
+    private void writeInt(int value) throws IOException {
+        VarInts.writeSigned(out, value);
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.cities.model.City;
+import org.terasology.cities.model.Junction;
+import org.terasology.cities.model.Lake;
+import org.terasology.cities.model.Road;
+import org.terasology.commonworld.Sector;
+import org.terasology.math.Vector2i;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Persists generated sector models on disk. There is one file per sector and stage.
+ * All files of a world live in a directory that is derived from the world seed and
+ * the generator parameters, so that changing either of them never loads stale data.
+ * Files are written in the background and replaced atomically. Files with
+ * a different format version are ignored and regenerated.
+ */
+public class SectorStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(SectorStore.class);
+
+    /**
+     * How long {@link #close()} waits for pending writes
+     */
+    private static final long CLOSE_TIMEOUT_SECONDS = 10;
+
+    private final Path dir;
+
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("Cities-SectorStore-%d")
+            .setDaemon(true)
+            .build());
+
+    /**
+     * @param baseDir the base directory of all sector stores
+     * @param key the key of the world as returned by {@link #createKey(String, Object...)}
+     */
+    public SectorStore(Path baseDir, String key) {
+        this.dir = baseDir.resolve(key);
+    }
+
+    /**
+     * @param seed the world seed
+     * @param params all generator parameters that affect the generated model (including a generator version)
+     * @return a key that uniquely identifies the world
+     */
+    public static String createKey(String seed, Object... params) {
+        Hasher hasher = Hashing.md5().newHasher();
+        putString(hasher, seed);
+        for (Object param : params) {
+            putString(hasher, String.valueOf(param));
+        }
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Adds the length before the string, so that "1", "23" and "12", "3" give different hashes
+     */
+    private static void putString(Hasher hasher, String str) {
+        hasher.putInt(str.length());
+        hasher.putString(str, Charsets.UTF_8);
+    }
+
+    /**
+     * @param generator the function that generates the cities if they are not in the store
+     * @return a function that loads from the store first and saves generated results
+     */
+    public Function<Sector, Set<City>> cities(Function<Sector, Set<City>> generator) {
+        return new StoredFunction<Set<City>>("cities", generator) {
+
+            @Override
+            protected void write(ModelWriter mw, Set<City> value) throws IOException {
+                mw.writeCities(value);
+            }
+
+            @Override
+            protected Set<City> read(ModelReader mr) throws IOException {
+                return mr.readCities();
+            }
+        };
+    }
+
+    /**
+     * @param generator the function that generates the roads if they are not in the store
+     * @param junctions provides junctions for loaded roads
+     * @return a function that loads from the store first and saves generated results
+     */
+    public Function<Sector, Set<Road>> roads(Function<Sector, Set<Road>> generator, final Function<Vector2i, Junction> junctions) {
+        return new StoredFunction<Set<Road>>("roads", generator) {
+
+            @Override
+            protected void write(ModelWriter mw, Set<Road> value) throws IOException {
+                mw.writeRoads(value);
+            }
+
+            @Override
+            protected Set<Road> read(ModelReader mr) throws IOException {
+                return mr.readRoads(junctions);
+            }
+        };
+    }
+
+    /**
+     * @param generator the function that generates the lakes if they are not in the store
+     * @return a function that loads from the store first and saves generated results
+     */
+    public Function<Sector, Set<Lake>> lakes(Function<Sector, Set<Lake>> generator) {
+        return new StoredFunction<Set<Lake>>("lakes", generator) {
+
+            @Override
+            protected void write(ModelWriter mw, Set<Lake> value) throws IOException {
+                mw.writeLakes(value);
+            }
+
+            @Override
+            protected Set<Lake> read(ModelReader mr) throws IOException {
+                return mr.readLakes();
+            }
+        };
+    }
+
+    /**
+     * Waits for pending writes and stops the background thread. Models that are
+     * generated afterwards are no longer stored.
+     */
+    public void close() {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                logger.warn("Pending writes to {} did not finish in time", dir);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Vector2i getOrigin(Sector sector) {
+        Vector2i coords = sector.getCoords();
+        return new Vector2i(coords.x * Sector.SIZE, coords.y * Sector.SIZE);
+    }
+
+    private Path getFile(Sector sector, String stage) {
+        Vector2i coords = sector.getCoords();
+        return dir.resolve(String.format("%d_%d.%s", coords.x, coords.y, stage));
+    }
+
+    /**
+     * Loads from the store and falls back to the generator
+     * @param <T> the stored type
+     */
+    private abstract class StoredFunction<T> implements Function<Sector, T> {
+
+        private final String stage;
+        private final Function<Sector, T> generator;
+
+        StoredFunction(String stage, Function<Sector, T> generator) {
+            this.stage = stage;
+            this.generator = generator;
+        }
+
+        @Override
+        public T apply(Sector sector) {
+            Optional<T> stored = load(sector);
+            if (stored.isPresent()) {
+                return stored.get();
+            }
+
+            T value = generator.apply(sector);
+            save(sector, value);
+            return value;
+        }
+
+        protected abstract void write(ModelWriter mw, T value) throws IOException;
+
+        protected abstract T read(ModelReader mr) throws IOException;
+
+        private Optional<T> load(Sector sector) {
+            Path file = getFile(sector, stage);
+            try (DataInputStream dis = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                ModelReader mr = new ModelReader(dis, getOrigin(sector));
+                mr.readHeader();
+                return Optional.of(read(mr));
+            } catch (NoSuchFileException e) {
+                return Optional.absent();
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Could not load {} - regenerating", file, e);
+                return Optional.absent();
+            }
+        }
+
+        private void save(Sector sector, T value) {
+            final Path file = getFile(sector, stage);
+            final byte[] data;
+
+            // encode on the calling thread, because the model could be modified later on
+            try {
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                DataOutputStream dos = new DataOutputStream(bos);
+                ModelWriter mw = new ModelWriter(dos, getOrigin(sector));
+                mw.writeHeader();
+                write(mw, value);
+                dos.flush();
+                data = bos.toByteArray();
+            } catch (IOException e) {
+                logger.warn("Could not encode {}", file, e);
+                return;
+            }
+
+            try {
+                writer.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        Path tmp = null;
+                        try {
+                            Files.createDirectories(dir);
+                            tmp = Files.createTempFile(dir, null, ".tmp");
+                            Files.write(tmp, data);
+                            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                        } catch (IOException e) {
+                            logger.warn("Could not write {}", file, e);
+                            deleteQuietly(tmp);
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                logger.debug("Store is closed - not writing {}", file);
+            }
+        }
+
+        private void deleteQuietly(Path tmp) {
+            if (tmp == null) {
+                return;
+            }
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException e) {
+                logger.warn("Could not delete {}", tmp, e);
+            }
+        }
+    }
+}
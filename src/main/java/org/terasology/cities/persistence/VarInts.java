@@ -0,0 +1,82 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.persistence;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Variable-length integer encoding (7 bits per byte, little endian groups).
+ * Signed values are zig-zag encoded first, so that small negative numbers are short, too.
+ */
+public final class VarInts {
+
+    private VarInts() {
+        // no instances
+    }
+
+    /**
+     * @param out the output
+     * @param value the value (interpreted as unsigned)
+     * @throws IOException if writing fails
+     */
+    public static void writeUnsigned(DataOutput out, int value) throws IOException {
+        int v = value;
+        while ((v & ~0x7F) != 0) {
+            out.writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+
+    /**
+     * @param out the output
+     * @param value the signed value
+     * @throws IOException if writing fails
+     */
+    public static void writeSigned(DataOutput out, int value) throws IOException {
+        writeUnsigned(out, (value << 1) ^ (value >> 31));
+    }
+
+    /**
+     * @param in the input
+     * @return the value (interpreted as unsigned)
+     * @throws IOException if reading fails or the value is longer than 5 bytes
+     */
+    public static int readUnsigned(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable-length integer");
+    }
+
+    /**
+     * @param in the input
+     * @return the signed value
+     * @throws IOException if reading fails or the value is longer than 5 bytes
+     */
+    public static int readSigned(DataInput in) throws IOException {
+        int raw = readUnsigned(in);
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+}
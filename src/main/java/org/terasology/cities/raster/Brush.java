@@ -27,6 +27,7 @@
 import org.terasology.commonworld.heightmap.HeightMap;
 import org.terasology.commonworld.heightmap.HeightMaps;
 import org.terasology.math.Side;
+import org.terasology.math.SideBitFlag;
 import org.terasology.math.TeraMath;
 
 /**
@@ -51,7 +52,7 @@ public void fillShape(Shape shape, HeightMap hmBottom, int height, BlockTypes ty
      * @param hmTop top height map (exclusive)
      * @param type the block type
      */
-    public void fillShape(Shape shape, HeightMap hmBottom, HeightMap hmTop, BlockTypes type) {
+    public void fillShape(Shape shape, final HeightMap hmBottom, final HeightMap hmTop, final BlockTypes type) {
 
         if (!shape.intersects(getAffectedArea())) {
             return;
@@ -59,19 +60,19 @@ public void fillShape(Shape shape, HeightMap hmBottom, HeightMap hmTop, BlockTyp
 
         Rectangle rc = getIntersectionArea(shape.getBounds());
 
-        for (int z = rc.y; z < rc.y + rc.height; z++) {
-            for (int x = rc.x; x < rc.x + rc.width; x++) {
+        // the shape is flattened once and filled span by span
+        new ShapeScanner(shape).scan(rc, new ShapeScanner.SpanVisitor() {
 
-                if (shape.contains(x, z)) {
+            @Override
+            public void span(int z, int x0, int x1) {
+                for (int x = x0; x < x1; x++) {
                     int y1 = hmBottom.apply(x, z);
                     int y2 = hmTop.apply(x, z);
 
-                    for (int y = y1; y < y2; y++) {
-                        setBlock(x, y, z, type);
-                    }
+                    setColumn(x, z, y1, y2, type);
                 }
             }
-        }
+        });
     }
 
     /**
@@ -167,9 +168,7 @@ public void fillRect(Rectangle rect, HeightMap hmBottom, HeightMap hmTop, BlockT
                 int y1 = hmBottom.apply(x, z);
                 int y2 = hmTop.apply(x, z);
 
-                for (int y = y1; y < y2; y++) {
-                    setBlock(x, y, z, type);
-                }
+                setColumn(x, z, y1, y2, type);
             }
         }
     }
@@ -189,6 +188,21 @@ public boolean affects(Shape shape) {
      */
     public abstract void setBlock(int x, int y, int z, BlockTypes type);
 
+    /**
+     * Sets a vertical run of blocks of the same type. Subclasses should override this
+     * method if they can write runs more efficiently than block by block.
+     * @param x x in world coords
+     * @param z z in world coords
+     * @param yFrom the bottom height in world coords (inclusive)
+     * @param yTo the top height in world coords (exclusive)
+     * @param type the block type
+     */
+    public void setColumn(int x, int z, int yFrom, int yTo, BlockTypes type) {
+        for (int y = yFrom; y < yTo; y++) {
+            setBlock(x, y, z, type);
+        }
+    }
+
     /**
      * @param x x in world coords
      * @param y y in world coords
@@ -198,6 +212,18 @@ public boolean affects(Shape shape) {
      */
     public abstract void setBlock(int x, int y, int z, BlockTypes type, Set<Side> side);
 
+    /**
+     * Subclasses should override this method if they can resolve side masks without allocation.
+     * @param x x in world coords
+     * @param y y in world coords
+     * @param z z in world coords
+     * @param type the block type
+     * @param sides the sides as bit mask (see {@link SideBitFlag})
+     */
+    public void setBlock(int x, int y, int z, BlockTypes type, byte sides) {
+        setBlock(x, y, z, type, SideBitFlag.getSides(sides));
+    }
+
     /**
      * @return the maximum drawing height
      */
@@ -281,9 +307,7 @@ private void drawClippedLine(HeightMap hmBottom, HeightMap hmTop, int x1, int z1
         int z = z1;
 
         while (true) {
-            for (int y = hmBottom.apply(x, z); y < hmTop.apply(x, z); y++) {
-                setBlock(x, y, z, type);
-            }
+            setColumn(x, z, hmBottom.apply(x, z), hmTop.apply(x, z), type);
 
             if (x == x2 && z == z2) {
                 break;
@@ -314,19 +338,32 @@ private void drawClippedLine(HeightMap hmBottom, HeightMap hmTop, int x1, int z1
      * @param type the block type to set
      */
     public void drawCircle(int cx, int cy, int rad, HeightMap hm, BlockTypes type) {
+        drawCircle(cx, cy, rad, hm, HeightMaps.offset(hm, 1), type);
+    }
+
+    /**
+     * Draws a circular wall, see {@link #drawCircle(int, int, int, HeightMap, BlockTypes)}
+     * @param cx the center x
+     * @param cy the center y
+     * @param rad the radius
+     * @param hmBottom the height map at the bottom (inclusive)
+     * @param hmTop the height map for the top (exclusive)
+     * @param type the block type to set
+     */
+    public void drawCircle(int cx, int cy, int rad, HeightMap hmBottom, HeightMap hmTop, BlockTypes type) {
         int d = -rad;
         int x = rad;
         int y = 0;
         while (y <= x) {
-            setBlock(cx + x, hm.apply(cx + x, cy + y), cy + y, type);
-            setBlock(cx - x, hm.apply(cx - x, cy + y), cy + y, type);
-            setBlock(cx - x, hm.apply(cx - x, cy - y), cy - y, type);
-            setBlock(cx + x, hm.apply(cx + x, cy - y), cy - y, type);
+            drawColumn(cx + x, cy + y, hmBottom, hmTop, type);
+            drawColumn(cx - x, cy + y, hmBottom, hmTop, type);
+            drawColumn(cx - x, cy - y, hmBottom, hmTop, type);
+            drawColumn(cx + x, cy - y, hmBottom, hmTop, type);
 
-            setBlock(cx + y, hm.apply(cx + y, cy + x), cy + x, type);
-            setBlock(cx - y, hm.apply(cx - y, cy + x), cy + x, type);
-            setBlock(cx - y, hm.apply(cx - y, cy - x), cy - x, type);
-            setBlock(cx + y, hm.apply(cx + y, cy - x), cy - x, type);
+            drawColumn(cx + y, cy + x, hmBottom, hmTop, type);
+            drawColumn(cx - y, cy + x, hmBottom, hmTop, type);
+            drawColumn(cx - y, cy - x, hmBottom, hmTop, type);
+            drawColumn(cx + y, cy - x, hmBottom, hmTop, type);
 
             d = d + 2 * y + 1;
             y = y + 1;
@@ -337,6 +374,10 @@ public void drawCircle(int cx, int cy, int rad, HeightMap hm, BlockTypes type) {
         }
     }
 
+    private void drawColumn(int x, int z, HeightMap hmBottom, HeightMap hmTop, BlockTypes type) {
+        setColumn(x, z, hmBottom.apply(x, z), hmTop.apply(x, z), type);
+    }
+
     /**
      * @param cx the center x
      * @param cy the center y
@@ -39,6 +39,10 @@ public class ChunkBrush extends Brush {
     private final BlockTheme blockType;
     private final Rectangle affectedArea;
 
+    private final int wx;
+    private final int wy;
+    private final int wz;
+
     /**
      * @param chunk     the chunk to work on
      * @param blockType a mapping String type to block
@@ -47,8 +51,9 @@ public ChunkBrush(CoreChunk chunk, BlockTheme blockType) {
         this.blockType = blockType;
         this.chunk = chunk;
 
-        int wx = chunk.chunkToWorldPositionX(0);
-        int wz = chunk.chunkToWorldPositionZ(0);
+        this.wx = chunk.chunkToWorldPositionX(0);
+        this.wy = chunk.chunkToWorldPositionY(0);
+        this.wz = chunk.chunkToWorldPositionZ(0);
         this.affectedArea = new Rectangle(wx, wz, chunk.getChunkSizeX(), chunk.getChunkSizeZ());
     }
 
@@ -59,12 +64,12 @@ public Rectangle getAffectedArea() {
 
     @Override
     public int getMaxHeight() {
-        return chunk.chunkToWorldPositionY(0) + chunk.getChunkSizeY();
+        return wy + chunk.getChunkSizeY();
     }
 
     @Override
     public int getMinHeight() {
-        return chunk.chunkToWorldPositionY(0);
+        return wy;
     }
 
     /**
@@ -78,6 +83,38 @@ public void setBlock(int x, int y, int z, BlockTypes type) {
         setBlock(x, y, z, blockType.apply(type));
     }
 
+    /**
+     * Resolves the block only once and clips the run to the chunk height
+     * @param x     x in world coords
+     * @param z     z in world coords
+     * @param yFrom the bottom height in world coords (inclusive)
+     * @param yTo   the top height in world coords (exclusive)
+     * @param type  the block type
+     */
+    @Override
+    public void setColumn(int x, int z, int yFrom, int yTo, BlockTypes type) {
+        int lx = x - wx;
+        int lz = z - wz;
+
+        if (lx < 0 || lx >= chunk.getChunkSizeX() || lz < 0 || lz >= chunk.getChunkSizeZ()) {
+            logger.warn("Column at {}/{} not in range [{}..{}]/[{}..{}]", x, z,
+                    wx, wx + chunk.getChunkSizeX() - 1, wz, wz + chunk.getChunkSizeZ() - 1);
+            return;
+        }
+
+        int ly0 = Math.max(yFrom, getMinHeight()) - wy;
+        int ly1 = Math.min(yTo, getMaxHeight()) - wy;
+
+        if (ly0 >= ly1) {
+            return;
+        }
+
+        Block block = blockType.apply(type);
+        for (int ly = ly0; ly < ly1; ly++) {
+            chunk.setBlock(lx, ly, lz, block);
+        }
+    }
+
     /**
      * @param x    x in world coords
      * @param y    y in world coords
@@ -89,6 +126,18 @@ public void setBlock(int x, int y, int z, BlockTypes type, Set<Side> side) {
         setBlock(x, y, z, blockType.apply(type, side));
     }
 
+    /**
+     * @param x     x in world coords
+     * @param y     y in world coords
+     * @param z     z in world coords
+     * @param type  the block type
+     * @param sides the sides as bit mask
+     */
+    @Override
+    public void setBlock(int x, int y, int z, BlockTypes type, byte sides) {
+        setBlock(x, y, z, blockType.apply(type, sides));
+    }
+
     /**
      * @param x     x in world coords
      * @param y     y in world coords
@@ -97,10 +146,6 @@ public void setBlock(int x, int y, int z, BlockTypes type, Set<Side> side) {
      */
     protected void setBlock(int x, int y, int z, Block block) {
 
-        int wx = chunk.chunkToWorldPositionX(0);
-        int wy = chunk.chunkToWorldPositionY(0);
-        int wz = chunk.chunkToWorldPositionZ(0);
-
         int lx = x - wx;
         int ly = y - wy;
         int lz = z - wz;
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.terasology.cities.raster;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.Set;
+
+import org.terasology.cities.BlockTypes;
+import org.terasology.math.Side;
+import org.terasology.math.SideBitFlag;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A brush that does not draw, but records all block operations in a large area
+ * (e.g. a sector) as a compact list of draw commands per chunk column. The commands
+ * of one chunk can then be replayed onto another brush without evaluating the model again.
+ * Commands outside of the recorded area are ignored.
+ * <p>
+ * A command consists of a header (operation, block type and argument), the local position
+ * and one or two heights. Adjacent columns of the same type and height are merged into boxes.
+ * </p>
+ */
+public class RecordingBrush extends Brush {
+
+    private static final int OP_BLOCK = 0;
+    private static final int OP_SIDE_BLOCK = 1;
+    private static final int OP_BOX = 2;
+
+    private static final int OP_BITS = 2;
+    private static final int TYPE_BITS = 6;
+    private static final int ARG_SHIFT = OP_BITS + TYPE_BITS;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private static final BlockTypes[] TYPES = BlockTypes.values();
+
+    private final Rectangle area;
+    private final int cellSizeX;
+    private final int cellSizeZ;
+    private final int cellsX;
+
+    private final int[][] buffers;
+    private final int[] sizes;
+
+    // the start of the last command per cell, used to merge columns into boxes
+    private final int[] lastBox;
+
+    /**
+     * @param area the recorded area - must be aligned to the cell size
+     * @param cellSizeX the chunk size in x direction
+     * @param cellSizeZ the chunk size in z direction
+     */
+    public RecordingBrush(Rectangle area, int cellSizeX, int cellSizeZ) {
+        Preconditions.checkArgument(TYPES.length <= (1 << TYPE_BITS), "Too many block types");
+        Preconditions.checkArgument(area.width % cellSizeX == 0 && area.height % cellSizeZ == 0,
+                "Area %s is not aligned to %s/%s", area, cellSizeX, cellSizeZ);
+
+        this.area = new Rectangle(area);
+        this.cellSizeX = cellSizeX;
+        this.cellSizeZ = cellSizeZ;
+        this.cellsX = area.width / cellSizeX;
+
+        int cellCount = cellsX * (area.height / cellSizeZ);
+        this.buffers = new int[cellCount][];
+        this.sizes = new int[cellCount];
+        this.lastBox = new int[cellCount];
+        Arrays.fill(lastBox, -1);
+    }
+
+    @Override
+    public Rectangle getAffectedArea() {
+        return area;
+    }
+
+    @Override
+    public int getMaxHeight() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public int getMinHeight() {
+        return Integer.MIN_VALUE;
+    }
+
+    @Override
+    public void setBlock(int x, int y, int z, BlockTypes type) {
+        int cell = getCell(x, z);
+        if (cell >= 0) {
+            int i = reserve(cell, 3);
+            buffers[cell][i] = header(OP_BLOCK, type, 0);
+            buffers[cell][i + 1] = pos(x, z);
+            buffers[cell][i + 2] = y;
+        }
+    }
+
+    @Override
+    public void setBlock(int x, int y, int z, BlockTypes type, Set<Side> side) {
+        setBlock(x, y, z, type, SideBitFlag.getSides(side));
+    }
+
+    @Override
+    public void setBlock(int x, int y, int z, BlockTypes type, byte sides) {
+        int cell = getCell(x, z);
+        if (cell >= 0) {
+            int i = reserve(cell, 3);
+            buffers[cell][i] = header(OP_SIDE_BLOCK, type, sides & 0x3F);
+            buffers[cell][i + 1] = pos(x, z);
+            buffers[cell][i + 2] = y;
+        }
+    }
+
+    @Override
+    public void setColumn(int x, int z, int yFrom, int yTo, BlockTypes type) {
+        if (yFrom >= yTo) {
+            return;
+        }
+
+        int cell = getCell(x, z);
+        if (cell < 0) {
+            return;
+        }
+
+        // extend the previous box if this column continues it
+        int last = lastBox[cell];
+        if (last >= 0) {
+            int[] buf = buffers[cell];
+            int len = (buf[last] >>> ARG_SHIFT) + 1;
+            if ((buf[last] & ((1 << ARG_SHIFT) - 1)) == header(OP_BOX, type, 0)
+                    && buf[last + 1] == pos(x - len, z)
+                    && buf[last + 2] == yFrom && buf[last + 3] == yTo) {
+                buf[last] = header(OP_BOX, type, len);
+                return;
+            }
+        }
+
+        int i = reserve(cell, 4);
+        buffers[cell][i] = header(OP_BOX, type, 0);
+        buffers[cell][i + 1] = pos(x, z);
+        buffers[cell][i + 2] = yFrom;
+        buffers[cell][i + 3] = yTo;
+        lastBox[cell] = i;
+    }
+
+    /**
+     * Trims all buffers to their actual size - call this when recording is finished
+     */
+    public void compact() {
+        for (int i = 0; i < buffers.length; i++) {
+            if (buffers[i] != null && buffers[i].length > sizes[i]) {
+                buffers[i] = Arrays.copyOf(buffers[i], sizes[i]);
+            }
+        }
+    }
+
+    /**
+     * @return the number of recorded ints in all cells
+     */
+    public int size() {
+        int total = 0;
+        for (int size : sizes) {
+            total += size;
+        }
+        return total;
+    }
+
+    /**
+     * Replays all commands of the cell that contains the target's affected area
+     * @param target the brush to draw on
+     */
+    public void replay(Brush target) {
+        Rectangle rc = target.getAffectedArea();
+        int cell = getCell(rc.x, rc.y);
+        if (cell < 0 || buffers[cell] == null) {
+            return;
+        }
+
+        int[] buf = buffers[cell];
+        int size = sizes[cell];
+        int i = 0;
+        while (i < size) {
+            int header = buf[i];
+            int op = header & ((1 << OP_BITS) - 1);
+            BlockTypes type = TYPES[(header >>> OP_BITS) & ((1 << TYPE_BITS) - 1)];
+            int arg = header >>> ARG_SHIFT;
+            int x = area.x + (buf[i + 1] & 0xFFFF);
+            int z = area.y + (buf[i + 1] >>> 16);
+
+            switch (op) {
+                case OP_BLOCK:
+                    target.setBlock(x, buf[i + 2], z, type);
+                    i += 3;
+                    break;
+
+                case OP_SIDE_BLOCK:
+                    target.setBlock(x, buf[i + 2], z, type, (byte) arg);
+                    i += 3;
+                    break;
+
+                default:
+                    for (int k = 0; k <= arg; k++) {
+                        target.setColumn(x + k, z, buf[i + 2], buf[i + 3], type);
+                    }
+                    i += 4;
+                    break;
+            }
+        }
+    }
+
+    private int getCell(int x, int z) {
+        if (!area.contains(x, z)) {
+            return -1;
+        }
+        int cx = (x - area.x) / cellSizeX;
+        int cz = (z - area.y) / cellSizeZ;
+        return cz * cellsX + cx;
+    }
+
+    private int pos(int x, int z) {
+        return (x - area.x) | ((z - area.y) << 16);
+    }
+
+    private static int header(int op, BlockTypes type, int arg) {
+        return op | (type.ordinal() << OP_BITS) | (arg << ARG_SHIFT);
+    }
+
+    /**
+     * Reserves space for a new command
+     * @return the start index of the command in the cell's buffer
+     */
+    private int reserve(int cell, int length) {
+        int[] buf = buffers[cell];
+        int size = sizes[cell];
+        if (buf == null) {
+            buffers[cell] = new int[INITIAL_CAPACITY];
+        } else if (size + length > buf.length) {
+            buffers[cell] = Arrays.copyOf(buf, buf.length * 2);
+        }
+
+        sizes[cell] = size + length;
+
+        // any new command ends the current box
+        lastBox[cell] = -1;
+        return size;
+    }
+}
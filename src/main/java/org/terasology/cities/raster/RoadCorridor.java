@@ -0,0 +1,224 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.terasology.cities.raster;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+import javax.vecmath.Point3d;
+
+import org.terasology.commonworld.Sector;
+import org.terasology.math.Vector2i;
+
+/**
+ * A sparse raster of all road corridors in a sector. Every cell that is covered by a road
+ * stores the distance to the nearest road centerline and the graded height of that road.
+ * Only tiles that are touched by a road are allocated.
+ */
+public final class RoadCorridor {
+
+    /**
+     * The height value of cells without a road
+     */
+    public static final int NONE = Integer.MIN_VALUE;
+
+    private static final int TILE_BITS = 5;
+    private static final int TILE_SIZE = 1 << TILE_BITS;
+    private static final int TILE_MASK = TILE_SIZE - 1;
+
+    /**
+     * Distances are stored as unsigned bytes in fractions of a block
+     */
+    private static final int DIST_SCALE = 8;
+    private static final int DIST_MAX = 255;
+
+    private static final short EMPTY = Short.MIN_VALUE;
+
+    private final int minX;
+    private final int minZ;
+    private final int tilesPerSide;
+
+    private final Tile[] tiles;
+
+    private RoadCorridor(int minX, int minZ, int tilesPerSide) {
+        this.minX = minX;
+        this.minZ = minZ;
+        this.tilesPerSide = tilesPerSide;
+        this.tiles = new Tile[tilesPerSide * tilesPerSide];
+    }
+
+    /**
+     * @param sector the sector
+     * @param segments the road segments that cross the sector
+     * @return the road corridors of that sector
+     */
+    public static RoadCorridor create(Sector sector, RoadSegmentIndex segments) {
+        Vector2i coords = sector.getCoords();
+        int tilesPerSide = (Sector.SIZE + TILE_SIZE - 1) / TILE_SIZE;
+        RoadCorridor corridor = new RoadCorridor(coords.x * Sector.SIZE, coords.y * Sector.SIZE, tilesPerSide);
+
+        Rectangle area = new Rectangle(corridor.minX, corridor.minZ, Sector.SIZE, Sector.SIZE);
+
+        for (RoadSegment segment : segments.getAllSegments()) {
+            corridor.addSegment(segment, area);
+        }
+
+        return corridor;
+    }
+
+    private void addSegment(RoadSegment segment, Rectangle area) {
+        Rectangle rc = segment.getBounds().intersection(area);
+        if (rc.isEmpty()) {
+            return;
+        }
+
+        Point3d p0 = segment.getStart();
+        Point3d p1 = segment.getEnd();
+        double halfWidth = segment.getWidth() * 0.5;
+
+        double dx = p1.x - p0.x;
+        double dz = p1.y - p0.y;
+        double lenSq = dx * dx + dz * dz;
+        double maxDistSq = halfWidth * halfWidth;
+
+        for (int z = rc.y; z < rc.y + rc.height; z++) {
+            for (int x = rc.x; x < rc.x + rc.width; x++) {
+
+                // distance to the segment, i.e. a stroke with round caps
+                double t = (lenSq == 0) ? 0 : ((x - p0.x) * dx + (z - p0.y) * dz) / lenSq;
+                t = Math.max(0, Math.min(1, t));
+                double ex = p0.x + t * dx - x;
+                double ez = p0.y + t * dz - z;
+                double distSq = ex * ex + ez * ez;
+
+                if (distSq <= maxDistSq) {
+                    int dist = Math.min(DIST_MAX, (int) (Math.sqrt(distSq) * DIST_SCALE));
+                    set(x, z, dist, segment.getHeight(x, z));
+                }
+            }
+        }
+    }
+
+    /**
+     * Stores the cell if it is closer to this road than to all previous ones
+     */
+    private void set(int x, int z, int dist, int height) {
+        int lx = x - minX;
+        int lz = z - minZ;
+        int tileIdx = (lz >> TILE_BITS) * tilesPerSide + (lx >> TILE_BITS);
+
+        Tile tile = tiles[tileIdx];
+        if (tile == null) {
+            tile = new Tile();
+            tiles[tileIdx] = tile;
+        }
+
+        int idx = ((lz & TILE_MASK) << TILE_BITS) | (lx & TILE_MASK);
+        if (tile.heights[idx] == EMPTY || dist <= (tile.dists[idx] & 0xFF)) {
+            tile.heights[idx] = (short) height;
+            tile.dists[idx] = (byte) dist;
+        }
+    }
+
+    /**
+     * @param x the x world coordinate
+     * @param z the z world coordinate
+     * @return the height of the road surface or {@link #NONE} if there is no road
+     */
+    public int getHeight(int x, int z) {
+        Tile tile = getTile(x, z);
+        if (tile == null) {
+            return NONE;
+        }
+        short height = tile.heights[getIndex(x, z)];
+        return (height == EMPTY) ? NONE : height;
+    }
+
+    /**
+     * @param x the x world coordinate
+     * @param z the z world coordinate
+     * @return true if the cell is covered by a road
+     */
+    public boolean isRoad(int x, int z) {
+        return getHeight(x, z) != NONE;
+    }
+
+    /**
+     * @param x the x world coordinate
+     * @param z the z world coordinate
+     * @return the distance to the nearest road centerline or infinity if there is no road
+     */
+    public double getDistance(int x, int z) {
+        Tile tile = getTile(x, z);
+        if (tile == null) {
+            return Double.POSITIVE_INFINITY;
+        }
+        int idx = getIndex(x, z);
+        if (tile.heights[idx] == EMPTY) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return (double) (tile.dists[idx] & 0xFF) / DIST_SCALE;
+    }
+
+    /**
+     * @param rc a rectangle in world coordinates
+     * @return true if a road might cross the given area
+     */
+    public boolean intersects(Rectangle rc) {
+        int x0 = Math.max(0, rc.x - minX) >> TILE_BITS;
+        int z0 = Math.max(0, rc.y - minZ) >> TILE_BITS;
+        int x1 = Math.min(tilesPerSide * TILE_SIZE, rc.x + rc.width - minX) - 1;
+        int z1 = Math.min(tilesPerSide * TILE_SIZE, rc.y + rc.height - minZ) - 1;
+
+        if (x1 < 0 || z1 < 0) {
+            return false;
+        }
+
+        for (int tz = z0; tz <= z1 >> TILE_BITS; tz++) {
+            for (int tx = x0; tx <= x1 >> TILE_BITS; tx++) {
+                if (tiles[tz * tilesPerSide + tx] != null) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private Tile getTile(int x, int z) {
+        int lx = x - minX;
+        int lz = z - minZ;
+        int size = tilesPerSide * TILE_SIZE;
+        if (lx < 0 || lz < 0 || lx >= size || lz >= size) {
+            return null;
+        }
+        return tiles[(lz >> TILE_BITS) * tilesPerSide + (lx >> TILE_BITS)];
+    }
+
+    private static int getIndex(int x, int z) {
+        return ((z & TILE_MASK) << TILE_BITS) | (x & TILE_MASK);
+    }
+
+    private static class Tile {
+        private final short[] heights = new short[TILE_SIZE * TILE_SIZE];
+        private final byte[] dists = new byte[TILE_SIZE * TILE_SIZE];
+
+        Tile() {
+            Arrays.fill(heights, EMPTY);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.terasology.cities.raster;
+
+import java.awt.Rectangle;
+
+import javax.vecmath.Point3d;
+
+import org.terasology.cities.common.Plane2d;
+import org.terasology.math.TeraMath;
+
+/**
+ * A straight piece of a road with precomputed terrain heights at both ends.
+ * The x and y coords of the points are the horizontal coords, z is the height.
+ */
+public final class RoadSegment {
+
+    private final Point3d start;
+    private final Point3d end;
+    private final double width;
+    private final Plane2d plane;
+
+    /**
+     * @param start the start point (x, z, height)
+     * @param end the end point (x, z, height)
+     * @param width the road width
+     */
+    public RoadSegment(Point3d start, Point3d end, double width) {
+        this.start = new Point3d(start);
+        this.end = new Point3d(end);
+        this.width = width;
+        this.plane = new Plane2d(start, end);
+    }
+
+    /**
+     * @return the start point (x, z, height) - must not be modified
+     */
+    public Point3d getStart() {
+        return start;
+    }
+
+    /**
+     * @return the end point (x, z, height) - must not be modified
+     */
+    public Point3d getEnd() {
+        return end;
+    }
+
+    /**
+     * @return the road width
+     */
+    public double getWidth() {
+        return width;
+    }
+
+    /**
+     * @param x the x world coordinate
+     * @param z the z world coordinate
+     * @return the graded height of the road surface at that position
+     */
+    public int getHeight(int x, int z) {
+        return TeraMath.ceilToInt(plane.getZ(x, z));
+    }
+
+    /**
+     * @return the area that is covered by the segment including round caps
+     */
+    public Rectangle getBounds() {
+        Rectangle rc = new Rectangle((int) start.x, (int) start.y, 0, 0);
+        rc.add((int) end.x, (int) end.y);
+        int margin = TeraMath.ceilToInt(width * 0.5);
+        rc.grow(margin, margin);
+        rc.width++;
+        rc.height++;
+        return rc;
+    }
+}
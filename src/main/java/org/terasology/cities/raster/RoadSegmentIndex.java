@@ -0,0 +1,177 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.terasology.cities.raster;
+
+import java.awt.Rectangle;
+import java.util.Collection;
+import java.util.List;
+import java.util.SortedSet;
+
+import javax.vecmath.Point3d;
+
+import org.terasology.cities.model.Road;
+import org.terasology.commonworld.heightmap.HeightMap;
+import org.terasology.math.Vector2i;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+/**
+ * Splits a set of roads into straight segments and bins them into chunk columns,
+ * so that a chunk only visits the segments that overlap it instead of all segments of all roads.
+ * The terrain heights at the segment ends are sampled once. Segments are kept in road order.
+ */
+public final class RoadSegmentIndex {
+
+    private final int cellSizeX;
+    private final int cellSizeZ;
+
+    private final ImmutableList<RoadSegment> segments;
+
+    /**
+     * Maps cells to indices in the segment list (ascending)
+     */
+    private final ImmutableListMultimap<Vector2i, Integer> cells;
+
+    private RoadSegmentIndex(int cellSizeX, int cellSizeZ, ImmutableList<RoadSegment> segments,
+            ImmutableListMultimap<Vector2i, Integer> cells) {
+        this.cellSizeX = cellSizeX;
+        this.cellSizeZ = cellSizeZ;
+        this.segments = segments;
+        this.cells = cells;
+    }
+
+    /**
+     * @param roads the roads to index
+     * @param heightMap the terrain height map
+     * @param area only segments that intersect this area are indexed
+     * @param cellSizeX the chunk size in x direction
+     * @param cellSizeZ the chunk size in z direction
+     * @return a new index
+     */
+    public static RoadSegmentIndex create(Collection<Road> roads, HeightMap heightMap, Rectangle area, int cellSizeX, int cellSizeZ) {
+        ImmutableList.Builder<RoadSegment> segments = ImmutableList.builder();
+        ImmutableListMultimap.Builder<Vector2i, Integer> cells = ImmutableListMultimap.builder();
+        int count = 0;
+
+        for (Road road : roads) {
+            List<Vector2i> pts = getPoints(road);
+
+            for (int i = 0; i < pts.size() - 1; i++) {
+                Vector2i p0 = pts.get(i);
+                Vector2i p1 = pts.get(i + 1);
+
+                Point3d start = new Point3d(p0.x, p0.y, heightMap.apply(p0.x, p0.y));
+                Point3d end = new Point3d(p1.x, p1.y, heightMap.apply(p1.x, p1.y));
+                RoadSegment segment = new RoadSegment(start, end, road.getWidth());
+
+                Rectangle rc = segment.getBounds().intersection(area);
+                if (rc.isEmpty()) {
+                    continue;
+                }
+
+                int minX = floorDiv(rc.x, cellSizeX);
+                int minZ = floorDiv(rc.y, cellSizeZ);
+                int maxX = floorDiv(rc.x + rc.width - 1, cellSizeX);
+                int maxZ = floorDiv(rc.y + rc.height - 1, cellSizeZ);
+
+                for (int cz = minZ; cz <= maxZ; cz++) {
+                    for (int cx = minX; cx <= maxX; cx++) {
+                        cells.put(new Vector2i(cx, cz), count);
+                    }
+                }
+
+                segments.add(segment);
+                count++;
+            }
+        }
+
+        return new RoadSegmentIndex(cellSizeX, cellSizeZ, segments.build(), cells.build());
+    }
+
+    /**
+     * @param road the road
+     * @return all points of the road including start and end junction
+     */
+    public static List<Vector2i> getPoints(Road road) {
+        List<Vector2i> pts = Lists.newArrayList(road.getPoints());
+        pts.add(0, road.getStart().getCoords());
+        pts.add(road.getEnd().getCoords());
+        return pts;
+    }
+
+    /**
+     * @param area an area in world coordinates
+     * @return all segments that might overlap the area, in road order
+     */
+    public List<RoadSegment> getSegments(Rectangle area) {
+        if (area.isEmpty()) {
+            return ImmutableList.of();
+        }
+
+        int minX = floorDiv(area.x, cellSizeX);
+        int minZ = floorDiv(area.y, cellSizeZ);
+        int maxX = floorDiv(area.x + area.width - 1, cellSizeX);
+        int maxZ = floorDiv(area.y + area.height - 1, cellSizeZ);
+
+        // the common case - a single chunk
+        if (minX == maxX && minZ == maxZ) {
+            return toSegments(cells.get(new Vector2i(minX, minZ)));
+        }
+
+        SortedSet<Integer> indices = Sets.newTreeSet();
+        for (int cz = minZ; cz <= maxZ; cz++) {
+            for (int cx = minX; cx <= maxX; cx++) {
+                indices.addAll(cells.get(new Vector2i(cx, cz)));
+            }
+        }
+        return toSegments(indices);
+    }
+
+    /**
+     * @return all indexed segments in road order
+     */
+    public List<RoadSegment> getAllSegments() {
+        return segments;
+    }
+
+    /**
+     * @return the total number of (segment, cell) entries
+     */
+    public int size() {
+        return cells.size();
+    }
+
+    private List<RoadSegment> toSegments(Collection<Integer> indices) {
+        List<RoadSegment> result = Lists.newArrayListWithCapacity(indices.size());
+        for (Integer idx : indices) {
+            result.add(segments.get(idx));
+        }
+        return result;
+    }
+
+    private static int floorDiv(int x, int y) {
+        int q = x / y;
+        if ((x % y != 0) && ((x ^ y) < 0)) {
+            q--;
+        }
+        return q;
+    }
+}
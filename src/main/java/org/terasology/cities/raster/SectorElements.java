@@ -0,0 +1,139 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.terasology.cities.raster;
+
+import java.awt.Rectangle;
+import java.util.Collection;
+import java.util.List;
+
+import org.terasology.cities.model.City;
+import org.terasology.cities.model.Lot;
+import org.terasology.cities.model.MedievalTown;
+import org.terasology.cities.model.bldg.Building;
+import org.terasology.cities.model.bldg.Tower;
+import org.terasology.cities.model.bldg.TownWall;
+import org.terasology.cities.model.bldg.WallSegment;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Collects the rasterizable elements of a set of cities (lots, wall segments and towers)
+ * that overlap a sector. Elements are kept in rasterization order (per city: lots, walls, towers).
+ * The sector is rasterized only once into a {@link RecordingBrush}, which takes care of
+ * splitting the output per chunk.
+ */
+public final class SectorElements {
+
+    /**
+     * Roofs extend one block beyond the building layout
+     */
+    private static final int ROOF_OVERHANG = 1;
+
+    private final ImmutableList<Object> elements;
+
+    private SectorElements(ImmutableList<Object> elements) {
+        this.elements = elements;
+    }
+
+    /**
+     * @param cities the cities to collect from
+     * @param area only elements that intersect this area are collected
+     * @return a new element list
+     */
+    public static SectorElements create(Collection<? extends City> cities, Rectangle area) {
+        ImmutableList.Builder<Object> elements = ImmutableList.builder();
+
+        for (City city : cities) {
+            if (!(city instanceof MedievalTown)) {
+                continue;
+            }
+
+            for (Lot lot : city.getLots()) {
+                addIfOverlaps(elements, lot, getBounds(lot), area);
+            }
+
+            MedievalTown town = (MedievalTown) city;
+            if (town.getTownWall().isPresent()) {
+                TownWall tw = town.getTownWall().get();
+                for (WallSegment ws : tw.getWalls()) {
+                    addIfOverlaps(elements, ws, getBounds(ws), area);
+                }
+                for (Tower tower : tw.getTowers()) {
+                    addIfOverlaps(elements, tower, getBounds(tower), area);
+                }
+            }
+        }
+
+        return new SectorElements(elements.build());
+    }
+
+    private static void addIfOverlaps(ImmutableList.Builder<Object> elements, Object element, Rectangle bounds, Rectangle area) {
+        if (!bounds.intersection(area).isEmpty()) {
+            elements.add(element);
+        }
+    }
+
+    /**
+     * @return all collected elements in rasterization order
+     */
+    public List<Object> getElements() {
+        return elements;
+    }
+
+    /**
+     * @return the number of collected elements
+     */
+    public int size() {
+        return elements.size();
+    }
+
+    /**
+     * @param lot the lot
+     * @return the area that is covered by the lot, its buildings and roofs
+     */
+    public static Rectangle getBounds(Lot lot) {
+        Rectangle rc = new Rectangle(lot.getShape().getBounds());
+        for (Building bldg : lot.getBuildings()) {
+            rc.add(bldg.getLayout().getBounds());
+        }
+        rc.grow(ROOF_OVERHANG, ROOF_OVERHANG);
+        return rc;
+    }
+
+    /**
+     * @param ws the wall segment
+     * @return the area that is covered by the segment including its thickness
+     */
+    public static Rectangle getBounds(WallSegment ws) {
+        Rectangle rc = new Rectangle(ws.getStart().x, ws.getStart().y, 0, 0);
+        rc.add(ws.getEnd().x, ws.getEnd().y);
+        int margin = ws.getWallThickness() + 1;
+        rc.grow(margin, margin);
+        return rc;
+    }
+
+    /**
+     * @param tower the tower
+     * @return the area that is covered by the tower and its roof
+     */
+    public static Rectangle getBounds(Tower tower) {
+        Rectangle rc = new Rectangle(tower.getLayout().getBounds());
+        rc.grow(ROOF_OVERHANG, ROOF_OVERHANG);
+        return rc;
+    }
+}
@@ -0,0 +1,337 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.terasology.cities.raster;
+
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.Line2D;
+import java.awt.geom.PathIterator;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Converts a shape into horizontal spans of interior cells, one row at a time.
+ * The shape is flattened once into an edge table, so that filling is linear in the
+ * number of cells and edges instead of calling {@link Shape#contains(double, double)} per cell.
+ * Cells are sampled at integer coordinates and follow the insideness rule of {@link Shape}:
+ * points on a left or top boundary are inside, points on a right or bottom boundary are not.
+ * Alternatively, {@link #scanCovered(Rectangle, SpanVisitor)} reports every cell that
+ * the shape touches.
+ */
+public final class ShapeScanner {
+
+    /**
+     * Receives interior spans
+     */
+    public interface SpanVisitor {
+
+        /**
+         * @param z the row
+         * @param x0 the first interior x coord (inclusive)
+         * @param x1 the end of the span (exclusive)
+         */
+        void span(int z, int x0, int x1);
+    }
+
+    private static final double DEFAULT_FLATNESS = 0.1;
+
+    /**
+     * Intersections that are closer than this to a grid line are moved onto it
+     */
+    private static final double GRID_EPSILON = 1e-9;
+
+    private final boolean evenOdd;
+
+    // edges are stored top-down and sorted by their top y coord
+    private final int edgeCount;
+    private final double[] edgeX0;
+    private final double[] edgeY0;
+    private final double[] edgeY1;
+    private final double[] edgeSlope;
+    private final int[] edgeDir;
+
+    // all boundary segments (including horizontal ones) as x0, y0, x1, y1
+    private final double[] segments;
+
+    /**
+     * @param shape the shape
+     */
+    public ShapeScanner(Shape shape) {
+        this(shape, DEFAULT_FLATNESS);
+    }
+
+    /**
+     * @param shape the shape
+     * @param flatness the max. distance between curves and their flattened approximation
+     */
+    public ShapeScanner(Shape shape, double flatness) {
+        evenOdd = shape.getPathIterator(null).getWindingRule() == PathIterator.WIND_EVEN_ODD;
+
+        EdgeList list = new EdgeList();
+
+        // ShapeIterator does not emit the implicit closing segments of open sub-paths
+        // -> detect the start of a new sub-path and close the previous one
+        double startX = 0;
+        double startY = 0;
+        double lastX = 0;
+        double lastY = 0;
+        boolean open = false;
+
+        for (Line2D line : new ShapeIterator(shape, flatness)) {
+            if (!open || line.getX1() != lastX || line.getY1() != lastY) {
+                if (open) {
+                    list.add(lastX, lastY, startX, startY);
+                }
+                startX = line.getX1();
+                startY = line.getY1();
+                open = true;
+            }
+            list.add(line.getX1(), line.getY1(), line.getX2(), line.getY2());
+            lastX = line.getX2();
+            lastY = line.getY2();
+        }
+
+        if (open) {
+            list.add(lastX, lastY, startX, startY);
+        }
+
+        segments = Arrays.copyOf(list.segs, list.segCount * 4);
+
+        edgeCount = list.size;
+        edgeX0 = new double[edgeCount];
+        edgeY0 = new double[edgeCount];
+        edgeSlope = new double[edgeCount];
+        edgeY1 = new double[edgeCount];
+        edgeDir = new int[edgeCount];
+
+        Integer[] order = new Integer[edgeCount];
+        for (int i = 0; i < edgeCount; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, list);
+
+        for (int i = 0; i < edgeCount; i++) {
+            int src = order[i];
+            edgeX0[i] = list.x0[src];
+            edgeY0[i] = list.y0[src];
+            edgeSlope[i] = list.slope[src];
+            edgeY1[i] = list.y1[src];
+            edgeDir[i] = list.dir[src];
+        }
+    }
+
+    /**
+     * @return the number of non-horizontal edges
+     */
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * Reports all interior spans that intersect the clipping rectangle, row by row
+     * @param clip the clipping rectangle
+     * @param visitor the span visitor
+     */
+    public void scan(Rectangle clip, SpanVisitor visitor) {
+        scan(clip, 0, visitor);
+    }
+
+    /**
+     * Reports all cells [x, x + 1) x [z, z + 1) that overlap the interior of the shape.
+     * This is a superset of the cells reported by {@link #scan(Rectangle, SpanVisitor)}.
+     * Cells are reported by row, but not in order and possibly more than once.
+     * @param clip the clipping rectangle
+     * @param visitor the span visitor
+     */
+    public void scanCovered(Rectangle clip, SpanVisitor visitor) {
+        // a cell that is not crossed by the boundary is either completely inside or outside
+        scan(clip, 0.5, visitor);
+        scanBoundary(clip, visitor);
+    }
+
+    /**
+     * Reports all cells whose open interior is crossed by a boundary segment.
+     * Segments that run along grid lines don't cross any cell.
+     */
+    private void scanBoundary(Rectangle clip, SpanVisitor visitor) {
+        int minX = clip.x;
+        int maxX = clip.x + clip.width;
+        int minZ = clip.y;
+        int maxZ = clip.y + clip.height;
+
+        for (int i = 0; i < segments.length; i += 4) {
+            double xa = segments[i];
+            double ya = segments[i + 1];
+            double xb = segments[i + 2];
+            double yb = segments[i + 3];
+
+            if (ya > yb) {
+                double tmp = xa;
+                xa = xb;
+                xb = tmp;
+                tmp = ya;
+                ya = yb;
+                yb = tmp;
+            }
+
+            int firstRow = (int) Math.floor(ya);
+            int endRow = (ya == yb) ? firstRow + 1 : (int) Math.ceil(yb);
+            if (ya == yb && ya == firstRow) {
+                continue;   // on a horizontal grid line
+            }
+
+            double slope = (ya == yb) ? 0 : (xb - xa) / (yb - ya);
+
+            for (int z = Math.max(minZ, firstRow); z < Math.min(maxZ, endRow); z++) {
+                double top = Math.max(ya, z);
+                double bottom = Math.min(yb, z + 1);
+                if (top >= bottom && ya != yb) {
+                    continue;   // touches the row only at a grid line
+                }
+
+                double xTop = snap((ya == yb) ? xa : xa + (top - ya) * slope);
+                double xBottom = snap((ya == yb) ? xb : xa + (bottom - ya) * slope);
+
+                int x0 = Math.max(minX, (int) Math.floor(Math.min(xTop, xBottom)));
+                int x1 = Math.min(maxX, (int) Math.ceil(Math.max(xTop, xBottom)));
+                if (x0 < x1) {
+                    visitor.span(z, x0, x1);
+                }
+            }
+        }
+    }
+
+    private static double snap(double x) {
+        double grid = Math.rint(x);
+        return (Math.abs(x - grid) < GRID_EPSILON) ? grid : x;
+    }
+
+    /**
+     * @param offset the sample position within a cell (0 = top left corner)
+     */
+    private void scan(Rectangle clip, double offset, SpanVisitor visitor) {
+        int minX = clip.x;
+        int maxX = clip.x + clip.width;
+
+        int[] active = new int[edgeCount];
+        int activeCount = 0;
+        double[] xs = new double[edgeCount];
+        int[] dirs = new int[edgeCount];
+
+        int next = 0;
+        for (int z = clip.y; z < clip.y + clip.height; z++) {
+            double y = z + offset;
+
+            // add edges that start at or before this row
+            while (next < edgeCount && edgeY0[next] <= y) {
+                active[activeCount++] = next++;
+            }
+
+            // drop edges that end before this row and compute crossings
+            int count = 0;
+            int keep = 0;
+            for (int i = 0; i < activeCount; i++) {
+                int e = active[i];
+                if (edgeY1[e] > y) {
+                    active[keep++] = e;
+                    double x = edgeX0[e] + (y - edgeY0[e]) * edgeSlope[e] - offset;
+
+                    // insertion sort - the lists are very short
+                    int j = count;
+                    while (j > 0 && xs[j - 1] > x) {
+                        xs[j] = xs[j - 1];
+                        dirs[j] = dirs[j - 1];
+                        j--;
+                    }
+                    xs[j] = x;
+                    dirs[j] = edgeDir[e];
+                    count++;
+                }
+            }
+            activeCount = keep;
+
+            int winding = 0;
+            for (int i = 0; i < count - 1; i++) {
+                winding = evenOdd ? winding ^ 1 : winding + dirs[i];
+                if (winding != 0) {
+                    int x0 = Math.max(minX, (int) Math.ceil(xs[i]));
+                    int x1 = Math.min(maxX, (int) Math.ceil(xs[i + 1]));
+                    if (x0 < x1) {
+                        visitor.span(z, x0, x1);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Collects all boundary segments and non-horizontal edges, sorts the edges by their top y coord
+     */
+    private static class EdgeList implements Comparator<Integer> {
+        private int segCount;
+        private double[] segs = new double[64];
+
+        private int size;
+        private double[] x0 = new double[16];
+        private double[] y0 = new double[16];
+        private double[] slope = new double[16];
+        private double[] y1 = new double[16];
+        private int[] dir = new int[16];
+
+        void add(double xa, double ya, double xb, double yb) {
+            if (segCount * 4 == segs.length) {
+                segs = Arrays.copyOf(segs, segs.length * 2);
+            }
+            segs[segCount * 4] = xa;
+            segs[segCount * 4 + 1] = ya;
+            segs[segCount * 4 + 2] = xb;
+            segs[segCount * 4 + 3] = yb;
+            segCount++;
+
+            if (ya == yb) {
+                return;
+            }
+
+            if (size == x0.length) {
+                int cap = size * 2;
+                x0 = Arrays.copyOf(x0, cap);
+                y0 = Arrays.copyOf(y0, cap);
+                slope = Arrays.copyOf(slope, cap);
+                y1 = Arrays.copyOf(y1, cap);
+                dir = Arrays.copyOf(dir, cap);
+            }
+
+            // store edges top-down, remember the original direction for the winding rule
+            boolean down = ya < yb;
+            double top = down ? ya : yb;
+            double bottom = down ? yb : ya;
+
+            x0[size] = down ? xa : xb;
+            y0[size] = top;
+            slope[size] = (xb - xa) / (yb - ya);
+            y1[size] = bottom;
+            dir[size] = down ? 1 : -1;
+            size++;
+        }
+
+        @Override
+        public int compare(Integer a, Integer b) {
+            return Double.compare(y0[a], y0[b]);
+        }
+    }
+}
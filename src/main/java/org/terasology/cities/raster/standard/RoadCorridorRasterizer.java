@@ -0,0 +1,61 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.terasology.cities.raster.standard;
+
+import java.awt.Rectangle;
+
+import org.terasology.cities.BlockTypes;
+import org.terasology.cities.raster.Brush;
+import org.terasology.cities.raster.Rasterizer;
+import org.terasology.cities.raster.RoadCorridor;
+import org.terasology.cities.raster.TerrainInfo;
+import org.terasology.commonworld.heightmap.HeightMap;
+
+/**
+ * Draws precomputed road corridors on the terrain surface. Every road column is written
+ * in a single pass: foundation up to the road, the road surface and air above it.
+ */
+public class RoadCorridorRasterizer implements Rasterizer<RoadCorridor> {
+
+    @Override
+    public void raster(Brush brush, TerrainInfo ti, RoadCorridor corridor) {
+        Rectangle rc = brush.getAffectedArea();
+
+        if (!corridor.intersects(rc)) {
+            return;
+        }
+
+        HeightMap terrain = ti.getHeightMap();
+
+        for (int z = rc.y; z < rc.y + rc.height; z++) {
+            for (int x = rc.x; x < rc.x + rc.width; x++) {
+                int road = corridor.getHeight(x, z);
+                if (road == RoadCorridor.NONE) {
+                    continue;
+                }
+
+                int surface = terrain.apply(x, z);
+
+                // fill up to the road level and clear area above
+                brush.setColumn(x, z, surface, road, BlockTypes.BUILDING_FOUNDATION);
+                brush.setColumn(x, z, road, road + 1, BlockTypes.ROAD_SURFACE);
+                brush.setColumn(x, z, road + 1, surface + 1, BlockTypes.AIR);
+            }
+        }
+    }
+}
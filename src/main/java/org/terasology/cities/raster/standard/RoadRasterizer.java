@@ -26,18 +26,16 @@
 import javax.vecmath.Point3d;
 
 import org.terasology.cities.BlockTypes;
-import org.terasology.cities.common.Plane2d;
 import org.terasology.cities.model.Road;
 import org.terasology.cities.raster.Brush;
 import org.terasology.cities.raster.Rasterizer;
+import org.terasology.cities.raster.RoadSegment;
+import org.terasology.cities.raster.RoadSegmentIndex;
 import org.terasology.cities.raster.TerrainInfo;
 import org.terasology.commonworld.geom.BoundingBox;
 import org.terasology.commonworld.heightmap.HeightMap;
 import org.terasology.commonworld.heightmap.HeightMapAdapter;
 import org.terasology.commonworld.heightmap.HeightMaps;
-import org.terasology.math.TeraMath;
-
-import com.google.common.collect.Lists;
 
 /**
  * Draws road shapes on the terrain surface
@@ -46,46 +44,56 @@ public class RoadRasterizer implements Rasterizer<Road> {
 
     @Override
     public void raster(Brush brush, TerrainInfo ti, Road road) {
-        List<Vector2i> pts = Lists.newArrayList(road.getPoints());
+        List<Vector2i> pts = RoadSegmentIndex.getPoints(road);
 
-        pts.add(0, road.getStart().getCoords());
-        pts.add(road.getEnd().getCoords());
-        
         // if not affected, exit now 
         Rectangle rc = BoundingBox.getBoundingRect(pts).get();
         if (!brush.affects(rc)) {
             return;
         }
 
-        float strokeWidth = (float) road.getWidth();
-        int cap = BasicStroke.CAP_ROUND;    // end of path
-        int join = BasicStroke.JOIN_ROUND;  // connected path segments
-        BasicStroke thick = new BasicStroke(strokeWidth, cap, join);
+        HeightMap terrain = ti.getHeightMap();
 
         for (int i = 0; i < pts.size() - 1; i++) {
             Vector2i p0 = pts.get(i + 0);
             Vector2i p1 = pts.get(i + 1);
 
-            Line2D line = new Line2D.Double(p0.x, p0.y, p1.x, p1.y);
-            Shape shape = thick.createStrokedShape(line);
-
-            Point3d start = new Point3d(p0.x, p0.y, ti.getHeightMap().apply(p0.x, p0.y));
-            Point3d end = new Point3d(p1.x, p1.y, ti.getHeightMap().apply(p1.x, p1.y));
-            
-            final Plane2d plane = new Plane2d(start, end);
-            HeightMap hm = new HeightMapAdapter() {
-                
-                @Override
-                public int apply(int x, int z) {
-                    return TeraMath.ceilToInt(plane.getZ(x, z));
-                }
-            };
-            
-            // clear area above floor level
-            brush.fillShape(shape, hm, HeightMaps.offset(ti.getHeightMap(), 1), BlockTypes.AIR);
-            brush.fillShape(shape, hm, 1, BlockTypes.ROAD_SURFACE);
-            brush.fillShape(shape, ti.getHeightMap(), hm, BlockTypes.BUILDING_FOUNDATION);
+            Point3d start = new Point3d(p0.x, p0.y, terrain.apply(p0.x, p0.y));
+            Point3d end = new Point3d(p1.x, p1.y, terrain.apply(p1.x, p1.y));
+
+            rasterSegment(brush, ti, new RoadSegment(start, end, road.getWidth()));
         }
     }
 
+    /**
+     * Strokes a single segment with round caps and joins
+     * @param brush the brush
+     * @param ti terrain info
+     * @param segment the road segment
+     */
+    static void rasterSegment(Brush brush, TerrainInfo ti, final RoadSegment segment) {
+        float strokeWidth = (float) segment.getWidth();
+        int cap = BasicStroke.CAP_ROUND;    // end of path
+        int join = BasicStroke.JOIN_ROUND;  // connected path segments
+        BasicStroke thick = new BasicStroke(strokeWidth, cap, join);
+
+        Point3d p0 = segment.getStart();
+        Point3d p1 = segment.getEnd();
+        Line2D line = new Line2D.Double(p0.x, p0.y, p1.x, p1.y);
+        Shape shape = thick.createStrokedShape(line);
+
+        HeightMap hm = new HeightMapAdapter() {
+
+            @Override
+            public int apply(int x, int z) {
+                return segment.getHeight(x, z);
+            }
+        };
+
+        // clear area above floor level
+        brush.fillShape(shape, hm, HeightMaps.offset(ti.getHeightMap(), 1), BlockTypes.AIR);
+        brush.fillShape(shape, hm, 1, BlockTypes.ROAD_SURFACE);
+        brush.fillShape(shape, ti.getHeightMap(), hm, BlockTypes.BUILDING_FOUNDATION);
+    }
+
 }
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.terasology.cities.raster.standard;
+
+import org.terasology.cities.raster.Brush;
+import org.terasology.cities.raster.Rasterizer;
+import org.terasology.cities.raster.RoadSegment;
+import org.terasology.cities.raster.RoadSegmentIndex;
+import org.terasology.cities.raster.TerrainInfo;
+
+/**
+ * Draws only those road segments that overlap the brush area. The terrain heights
+ * at the segment ends are taken from the index.
+ */
+public class RoadSegmentRasterizer implements Rasterizer<RoadSegmentIndex> {
+
+    @Override
+    public void raster(Brush brush, TerrainInfo ti, RoadSegmentIndex index) {
+        for (RoadSegment segment : index.getSegments(brush.getAffectedArea())) {
+            if (brush.affects(segment.getBounds())) {
+                RoadRasterizer.rasterSegment(brush, ti, segment);
+            }
+        }
+    }
+}
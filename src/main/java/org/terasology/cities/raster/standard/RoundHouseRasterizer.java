@@ -60,27 +60,22 @@ public void draw(int x, int z) {
                 int terrain = hmT.apply(x, z);
                 
                 // put foundation concrete below 
-                for (int y = terrain + 1; y < baseHeight; y++) {
-                    brush.setBlock(x, y, z, BlockTypes.BUILDING_FOUNDATION);
-                }
+                brush.setColumn(x, z, terrain + 1, baseHeight, BlockTypes.BUILDING_FOUNDATION);
 
                 // lay floor level
-                brush.setBlock(x, baseHeight, z, BlockTypes.BUILDING_FLOOR);
+                brush.setColumn(x, z, baseHeight, baseHeight + 1, BlockTypes.BUILDING_FLOOR);
 
                 // clear area above floor level
-                for (int y = baseHeight + 1; y <= terrain; y++) {
-                    brush.setBlock(x, y, z, BlockTypes.AIR);
-                }
+                brush.setColumn(x, z, baseHeight + 1, terrain + 1, BlockTypes.AIR);
             }
             
         };
         
         brush.fillCircle(centerX, centerY, rad, pen);
         
-        for (int y = 0; y < house.getWallHeight(); y++) {
-            HeightMap hm = HeightMaps.constant(baseHeight + y + 1); 
-            brush.drawCircle(centerX, centerY, rad, hm, BlockTypes.BUILDING_WALL);
-        }
+        HeightMap wallBottom = HeightMaps.constant(baseHeight + 1);
+        HeightMap wallTop = HeightMaps.constant(baseHeight + 1 + house.getWallHeight());
+        brush.drawCircle(centerX, centerY, rad, wallBottom, wallTop, BlockTypes.BUILDING_WALL);
 
         // door
         SimpleDoor door = house.getDoor();
@@ -17,8 +17,6 @@
 package org.terasology.cities.raster.standard;
 
 import java.awt.Rectangle;
-import java.util.EnumSet;
-import java.util.Set;
 
 import org.terasology.cities.BlockTypes;
 import org.terasology.cities.model.SimpleFence;
@@ -28,6 +26,7 @@
 import org.terasology.commonworld.heightmap.HeightMap;
 import org.terasology.commonworld.heightmap.HeightMaps;
 import org.terasology.math.Side;
+import org.terasology.math.SideBitFlag;
 import org.terasology.math.Vector2i;
 
 /**
@@ -35,6 +34,13 @@
  */
 public class SimpleFenceRasterizer implements Rasterizer<SimpleFence> {
 
+    private static final byte LEFT_RIGHT = SideBitFlag.getSides(Side.LEFT, Side.RIGHT);
+    private static final byte FRONT_BACK = SideBitFlag.getSides(Side.FRONT, Side.BACK);
+    private static final byte BACK_RIGHT = SideBitFlag.getSides(Side.BACK, Side.RIGHT);
+    private static final byte FRONT_RIGHT = SideBitFlag.getSides(Side.FRONT, Side.RIGHT);
+    private static final byte FRONT_LEFT = SideBitFlag.getSides(Side.FRONT, Side.LEFT);
+    private static final byte BACK_LEFT = SideBitFlag.getSides(Side.BACK, Side.LEFT);
+
     @Override
     public void raster(Brush brush, TerrainInfo ti, SimpleFence fence) {
         Rectangle fenceRc = fence.getRect();
@@ -65,33 +71,33 @@ public void raster(Brush brush, TerrainInfo ti, SimpleFence fence) {
 
         // top wall is in brush area
         if (ftop >= btop && ftop <= bbot) {
-            wallX(brush, hm, wallX1, wallX2, ftop, BlockTypes.FENCE, EnumSet.of(Side.LEFT, Side.RIGHT));
+            wallX(brush, hm, wallX1, wallX2, ftop, BlockTypes.FENCE, LEFT_RIGHT);
         }
 
         // bottom wall is in brush area
         if (fbot >= btop && fbot <= bbot) {
-            wallX(brush, hm, wallX1, wallX2, fbot, BlockTypes.FENCE, EnumSet.of(Side.LEFT, Side.RIGHT));
+            wallX(brush, hm, wallX1, wallX2, fbot, BlockTypes.FENCE, LEFT_RIGHT);
         }
 
         // left wall is in brush area
         if (fleft >= bleft && fleft <= bright) {
-            wallZ(brush, hm, fleft, wallZ1, wallZ2, BlockTypes.FENCE, EnumSet.of(Side.FRONT, Side.BACK));
+            wallZ(brush, hm, fleft, wallZ1, wallZ2, BlockTypes.FENCE, FRONT_BACK);
         }       
 
         // right wall is in brush area
         if (fright >= bleft && fright <= bright) {
-            wallZ(brush, hm, fright, wallZ1, wallZ2, BlockTypes.FENCE, EnumSet.of(Side.FRONT, Side.BACK));
+            wallZ(brush, hm, fright, wallZ1, wallZ2, BlockTypes.FENCE, FRONT_BACK);
         }       
 
         // top-left corner post
         if (brushRc.contains(fleft, ftop)) {
             int y = hm.apply(fleft, ftop);
             
-            brush.setBlock(fleft, y, ftop, BlockTypes.FENCE, EnumSet.of(Side.BACK, Side.RIGHT));
+            brush.setBlock(fleft, y, ftop, BlockTypes.FENCE, BACK_RIGHT);
 
             // add higher posts if necessary
             if (hm.apply(fleft + 1, ftop) > y || hm.apply(fleft, ftop + 1) > y) {
-                brush.setBlock(fleft, y + 1, ftop, BlockTypes.FENCE, EnumSet.of(Side.BACK, Side.RIGHT));
+                brush.setBlock(fleft, y + 1, ftop, BlockTypes.FENCE, BACK_RIGHT);
             }
         }
 
@@ -99,11 +105,11 @@ public void raster(Brush brush, TerrainInfo ti, SimpleFence fence) {
         if (brushRc.contains(fleft, fbot)) {
             int y = hm.apply(fleft, fbot);
             
-            brush.setBlock(fleft, y, fbot, BlockTypes.FENCE, EnumSet.of(Side.FRONT, Side.RIGHT));
+            brush.setBlock(fleft, y, fbot, BlockTypes.FENCE, FRONT_RIGHT);
 
             // add higher posts if necessary
             if (hm.apply(fleft + 1, fbot) > y || hm.apply(fleft, fbot - 1) > y) {
-                brush.setBlock(fleft, y + 1, fbot, BlockTypes.FENCE, EnumSet.of(Side.FRONT, Side.RIGHT));
+                brush.setBlock(fleft, y + 1, fbot, BlockTypes.FENCE, FRONT_RIGHT);
             }
         }
 
@@ -111,11 +117,11 @@ public void raster(Brush brush, TerrainInfo ti, SimpleFence fence) {
         if (brushRc.contains(fright, fbot)) {
             int y = hm.apply(fright, fbot);
 
-            brush.setBlock(fright, y, fbot, BlockTypes.FENCE, EnumSet.of(Side.FRONT, Side.LEFT));
+            brush.setBlock(fright, y, fbot, BlockTypes.FENCE, FRONT_LEFT);
 
             // add higher posts if necessary
             if (hm.apply(fright - 1, fbot) > y || hm.apply(fright, fbot - 1) > y) {
-                brush.setBlock(fright, y + 1, fbot, BlockTypes.FENCE, EnumSet.of(Side.FRONT, Side.LEFT));
+                brush.setBlock(fright, y + 1, fbot, BlockTypes.FENCE, FRONT_LEFT);
             }
         }
 
@@ -123,11 +129,11 @@ public void raster(Brush brush, TerrainInfo ti, SimpleFence fence) {
         if (brushRc.contains(fright, ftop)) {
             int y = hm.apply(fright, ftop);
             
-            brush.setBlock(fright, y, ftop, BlockTypes.FENCE, EnumSet.of(Side.BACK, Side.LEFT));
+            brush.setBlock(fright, y, ftop, BlockTypes.FENCE, BACK_LEFT);
 
             // add higher posts if necessary
             if (hm.apply(fright - 1, ftop) > y || hm.apply(fright, ftop + 1) > y) {
-                brush.setBlock(fright, y + 1, ftop, BlockTypes.FENCE, EnumSet.of(Side.BACK, Side.LEFT));
+                brush.setBlock(fright, y + 1, ftop, BlockTypes.FENCE, BACK_LEFT);
             }
         }
         
@@ -151,12 +157,12 @@ public void raster(Brush brush, TerrainInfo ti, SimpleFence fence) {
             
             if (gateBlock != null) {
                 int y = hm.apply(gatePos.x, gatePos.y);
-                brush.setBlock(gatePos.x, y, gatePos.y, gateBlock, EnumSet.of(side));
+                brush.setBlock(gatePos.x, y, gatePos.y, gateBlock, SideBitFlag.getSide(side));
             }
         }
     }
 
-    private void wallX(Brush brush, HeightMap hm, int x1, int x2, int z, BlockTypes type, Set<Side> side) {
+    private void wallX(Brush brush, HeightMap hm, int x1, int x2, int z, BlockTypes type, byte side) {
         for (int x = x1; x <= x2; x++) {
             int y = hm.apply(x, z);
             
@@ -169,7 +175,7 @@ private void wallX(Brush brush, HeightMap hm, int x1, int x2, int z, BlockTypes
         }
     }
     
-    private void wallZ(Brush brush, HeightMap hm, int x, int z1, int z2, BlockTypes type, Set<Side> side) {
+    private void wallZ(Brush brush, HeightMap hm, int x, int z1, int z2, BlockTypes type, byte side) {
         for (int z = z1; z <= z2; z++) {
             int y = hm.apply(x, z);
             
@@ -22,6 +22,7 @@
 import org.terasology.cities.raster.Brush;
 import org.terasology.cities.raster.RasterRegistry;
 import org.terasology.cities.raster.Rasterizer;
+import org.terasology.cities.raster.SectorElements;
 import org.terasology.cities.raster.TerrainInfo;
 
 /**
@@ -34,11 +35,15 @@ public void raster(Brush brush, TerrainInfo ti, TownWall tw) {
         RasterRegistry registry = StandardRegistry.getInstance();
 
         for (WallSegment ws : tw.getWalls()) {
-            registry.rasterize(brush, ti, ws);
+            if (brush.affects(SectorElements.getBounds(ws))) {
+                registry.rasterize(brush, ti, ws);
+            }
         }
 
         for (Tower tower : tw.getTowers()) {
-            registry.rasterize(brush, ti, tower);
+            if (brush.affects(SectorElements.getBounds(tower))) {
+                registry.rasterize(brush, ti, tower);
+            }
         }
 
     }
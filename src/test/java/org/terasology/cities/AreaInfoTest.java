@@ -0,0 +1,146 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.terasology.cities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.BasicStroke;
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.Line2D;
+import java.util.Random;
+
+import org.junit.Test;
+import org.terasology.commonworld.heightmap.HeightMap;
+import org.terasology.commonworld.heightmap.HeightMapAdapter;
+
+/**
+ * Tests {@link AreaInfo}
+ */
+public class AreaInfoTest {
+
+    private final CityTerrainComponent config = new CityTerrainComponent();
+
+    /**
+     * Water in the lower left corner, land elsewhere
+     */
+    private final HeightMap heightMap = new HeightMapAdapter() {
+
+        @Override
+        public int apply(int x, int z) {
+            return (x < 10 && z > 50) ? config.getSeaLevel() : config.getSeaLevel() + 5;
+        }
+    };
+
+    @Test
+    public void testGridMatchesShapes() {
+        Rectangle area = new Rectangle(0, 0, 100, 80);
+        AreaInfo plain = new AreaInfo(config, heightMap);
+        AreaInfo grid = new AreaInfo(config, heightMap, area);
+
+        // the grid is cell-accurate, so only integer rectangles give identical results
+        for (AreaInfo ai : new AreaInfo[] {plain, grid}) {
+            ai.addBlockedArea(new Rectangle(20, 20, 10, 10));
+            ai.addBlockedArea(new Rectangle(25, 28, 40, 3));
+            ai.addBlockedArea(new Rectangle(95, 70, 20, 20));     // partly outside the grid
+        }
+
+        Random r = new Random(1234);
+        for (int i = 0; i < 5000; i++) {
+            int x = r.nextInt(110) - 5;
+            int z = r.nextInt(90) - 5;
+            Rectangle rc = new Rectangle(x, z, 1 + r.nextInt(15), 1 + r.nextInt(15));
+            assertEquals(rc.toString(), plain.isBlocked(rc), grid.isBlocked(rc));
+            assertEquals(plain.isBlocked(x, z), grid.isBlocked(x, z));
+        }
+    }
+
+    @Test
+    public void testPolygon() {
+        Rectangle area = new Rectangle(0, 0, 100, 80);
+        AreaInfo grid = new AreaInfo(config, heightMap, area);
+        Polygon triangle = new Polygon(new int[] {60, 95, 70}, new int[] {5, 30, 60}, 3);
+        grid.addBlockedArea(triangle);
+
+        // skip the water corner
+        for (int z = area.y; z < area.y + area.height; z++) {
+            for (int x = 10; x < area.x + area.width; x++) {
+                assertEquals(triangle.intersects(x, z, 1, 1), grid.isBlocked(new Rectangle(x, z, 1, 1)));
+            }
+        }
+    }
+
+    /**
+     * A diagonal road stroke covers many cells only partly - lots that overlap
+     * such a cell only in their right or bottom edge band must be blocked, too.
+     */
+    @Test
+    public void testStrokedDiagonal() {
+        Rectangle area = new Rectangle(0, 0, 100, 80);
+        BasicStroke stroke = new BasicStroke(4.5f, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER);
+        Shape road = stroke.createStrokedShape(new Line2D.Double(12.3, 3.7, 91.6, 74.2));
+
+        AreaInfo plain = new AreaInfo(config, heightMap);
+        AreaInfo grid = new AreaInfo(config, heightMap, area);
+        plain.addBlockedArea(road);
+        grid.addBlockedArea(road);
+
+        Random r = new Random(4321);
+        for (int i = 0; i < 5000; i++) {
+            int x = 10 + r.nextInt(85);
+            int z = r.nextInt(75);
+            Rectangle rc = new Rectangle(x, z, 1 + r.nextInt(5), 1 + r.nextInt(5));
+            assertEquals(rc.toString(), plain.isBlocked(rc), grid.isBlocked(rc));
+        }
+
+        // the stroke passes through the lower right part of this cell, but not through its top left corner
+        for (int z = area.y; z < area.y + area.height; z++) {
+            for (int x = 10; x < area.x + area.width; x++) {
+                if (road.intersects(x, z, 1, 1) && !road.contains(x, z)) {
+                    assertTrue(grid.isBlocked(new Rectangle(x, z, 1, 1)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testAdjacentLots() {
+        AreaInfo grid = new AreaInfo(config, heightMap, new Rectangle(0, 0, 200, 40));
+        grid.addBlockedArea(new Rectangle(60, 10, 70, 10));  // spans three words per row
+
+        assertTrue(grid.isBlocked(new Rectangle(129, 19, 5, 5)));
+        assertFalse(grid.isBlocked(new Rectangle(130, 10, 10, 10)));
+        assertFalse(grid.isBlocked(new Rectangle(50, 10, 10, 10)));
+        assertFalse(grid.isBlocked(new Rectangle(60, 20, 70, 10)));
+        assertTrue(grid.isBlocked(new Rectangle(64, 12, 1, 1)));
+        assertTrue(grid.isBlocked(new Rectangle(0, 0, 200, 40)));
+    }
+
+    @Test
+    public void testTerrain() {
+        AreaInfo grid = new AreaInfo(config, heightMap, new Rectangle(0, 0, 100, 80));
+
+        assertTrue(grid.isBlocked(new Rectangle(5, 45, 10, 10)));
+        assertFalse(grid.isBlocked(new Rectangle(10, 45, 10, 10)));
+        assertTrue(grid.isBlocked(9, 51));
+        assertFalse(grid.isBlocked(9, 50));
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.terasology.cities;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Test;
+import org.terasology.cities.common.TiledHeightCache;
+import org.terasology.commonworld.heightmap.HeightMap;
+import org.terasology.commonworld.heightmap.HeightMapAdapter;
+
+/**
+ * Tests {@link HeightMapCompatibilityFacetProvider}
+ */
+public class HeightMapCompatibilityFacetProviderTest {
+
+    private final HeightMap source = new HeightMapAdapter() {
+
+        @Override
+        public int apply(int x, int z) {
+            return (x * 7 - z * 3) % 200;
+        }
+    };
+
+    private HeightMapCompatibilityFacetProvider provider;
+
+    @After
+    public void tearDown() {
+        if (provider != null) {
+            provider.close();
+        }
+    }
+
+    /**
+     * Small regions are filled sequentially
+     */
+    @Test
+    public void testSequential() {
+        provider = new HeightMapCompatibilityFacetProvider(source);
+        assertFill(source, -40, -70, 100, 30);
+    }
+
+    /**
+     * Large regions are split into bands of rows that are filled in parallel
+     */
+    @Test
+    public void testParallel() {
+        provider = new HeightMapCompatibilityFacetProvider(source);
+        assertFill(source, -200, -150, 300, 270);
+
+        // the tile cache is shared by all bands
+        provider.close();
+        provider = new HeightMapCompatibilityFacetProvider(new TiledHeightCache(source, 100));
+        assertFill(source, -200, -150, 300, 270);
+    }
+
+    private void assertFill(HeightMap expected, int minX, int minZ, int sizeX, int sizeZ) {
+        float[] data = new float[sizeX * sizeZ];
+        provider.fill(data, minX, minZ, sizeX, sizeZ);
+
+        for (int z = 0; z < sizeZ; z++) {
+            for (int x = 0; x < sizeX; x++) {
+                assertEquals(expected.apply(minX + x, minZ + z), data[z * sizeX + x], 0.0);
+            }
+        }
+    }
+}
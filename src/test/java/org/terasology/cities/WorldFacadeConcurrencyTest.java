@@ -0,0 +1,153 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.terasology.cities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.terasology.cities.model.City;
+import org.terasology.cities.model.Lot;
+import org.terasology.cities.model.Road;
+import org.terasology.cities.raster.RoadCorridor;
+import org.terasology.cities.raster.SectorElements;
+import org.terasology.commonworld.Sector;
+import org.terasology.commonworld.Sectors;
+import org.terasology.commonworld.heightmap.HeightMaps;
+
+import com.google.common.base.Optional;
+
+/**
+ * Requests overlapping sectors from many threads at once and checks
+ * that every sector model is built exactly once and that it equals
+ * the model of a sequential run.
+ */
+public class WorldFacadeConcurrencyTest {
+
+    private static final int THREADS = 8;
+
+    private static final String SEED = "concurrency";
+
+    @Test(timeout = 300000)
+    public void testSingleFlight() throws Exception {
+        final WorldFacade facade = createFacade();
+
+        final List<Sector> sectors = new ArrayList<>();
+        for (int z = -1; z <= 1; z++) {
+            for (int x = -1; x <= 1; x++) {
+                sectors.add(Sectors.getSector(x, z));
+            }
+        }
+
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<List<Object[]>>> results = new ArrayList<>();
+
+        for (int t = 0; t < THREADS; t++) {
+            final long threadSeed = t;
+            results.add(pool.submit(new Callable<List<Object[]>>() {
+
+                @Override
+                public List<Object[]> call() throws Exception {
+                    List<Sector> order = new ArrayList<>(sectors);
+                    Collections.shuffle(order, new Random(threadSeed));
+                    start.await();
+
+                    List<Object[]> models = new ArrayList<>(Collections.nCopies(sectors.size(), (Object[]) null));
+                    for (Sector sector : order) {
+                        Set<Road> roads = facade.getRoads(sector);
+                        RoadCorridor corridor = facade.getRoadCorridor(sector);
+                        Set<City> cities = facade.getCities(sector);
+                        SectorElements elements = facade.getSectorElements(sector);
+                        models.set(sectors.indexOf(sector), new Object[] {roads, corridor, cities, elements});
+                    }
+                    return models;
+                }
+            }));
+        }
+
+        start.countDown();
+
+        List<List<Object[]>> all = new ArrayList<>();
+        for (Future<List<Object[]>> result : results) {
+            all.add(result.get());      // re-throws any exception of the worker thread
+        }
+        pool.shutdown();
+
+        List<Object[]> first = all.get(0);
+        for (List<Object[]> other : all) {
+            for (int i = 0; i < sectors.size(); i++) {
+                for (int k = 0; k < first.get(i).length; k++) {
+                    assertSame(first.get(i)[k], other.get(i)[k]);
+                }
+            }
+        }
+
+        // a fresh facade that is used from a single thread must produce the same content
+        WorldFacade sequential = createFacade();
+        for (int i = 0; i < sectors.size(); i++) {
+            Sector sector = sectors.get(i);
+            Set<Road> roads = sequential.getRoads(sector);
+            Set<City> cities = sequential.getCities(sector);
+
+            assertEquals(roads, first.get(i)[0]);
+            @SuppressWarnings("unchecked")
+            Set<City> concurrentCities = (Set<City>) first.get(i)[2];
+            assertEquals(summarize(cities), summarize(concurrentCities));
+        }
+
+        facade.close();
+        sequential.close();
+    }
+
+    private static WorldFacade createFacade() {
+        return new WorldFacade(SEED, HeightMaps.constant(10),
+                new CityTerrainComponent(), new CitySpawnComponent(), Optional.<Path>absent());
+    }
+
+    /**
+     * City equality does not cover the lots, so a canonical description of their content is compared
+     * @param cities a set of cities
+     * @return a sorted list of city descriptions
+     */
+    private static List<String> summarize(Set<City> cities) {
+        List<String> result = new ArrayList<>();
+        for (City city : cities) {
+            List<String> lots = new ArrayList<>();
+            for (Lot lot : city.getLots()) {
+                lots.add(lot.getShape().getBounds2D() + " " + lot.getBuildings().size());
+            }
+            Collections.sort(lots);
+            result.add(city.getName() + " " + city.getPos() + " " + city.getRadius() + " " + lots);
+        }
+        Collections.sort(result);
+        return result;
+    }
+}
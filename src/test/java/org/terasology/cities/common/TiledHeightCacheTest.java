@@ -0,0 +1,67 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.terasology.cities.common;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.terasology.commonworld.heightmap.HeightMapAdapter;
+
+/**
+ * Tests {@link TiledHeightCache}
+ */
+public class TiledHeightCacheTest {
+
+    /**
+     * Values must match the source and every column must be evaluated only once
+     */
+    @Test
+    public void testValuesAndReuse() {
+        final AtomicInteger calls = new AtomicInteger();
+
+        HeightMapAdapter source = new HeightMapAdapter() {
+
+            @Override
+            public int apply(int x, int z) {
+                calls.incrementAndGet();
+                return (x * 7 - z * 3) % 200;
+            }
+        };
+
+        TiledHeightCache cache = new TiledHeightCache(source, 100);
+
+        for (int pass = 0; pass < 2; pass++) {
+            for (int z = -100; z < 100; z++) {
+                for (int x = -100; x < 100; x++) {
+                    assertEquals((x * 7 - z * 3) % 200, cache.apply(x, z));
+                }
+            }
+        }
+
+        // the area [-100..100[ touches 4x4 tiles of 64x64 blocks
+        assertEquals(16, cache.size());
+        assertEquals(16 * 64 * 64, calls.get());
+
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+        cache.apply(0, 0);
+        assertEquals(17 * 64 * 64, calls.get());
+    }
+}
@@ -23,6 +23,7 @@
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Polygon;
+import java.awt.Rectangle;
 import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
@@ -37,15 +38,16 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.terasology.cities.BlockTypes;
+import org.terasology.cities.CitySpawnComponent;
 import org.terasology.cities.CityTerrainComponent;
 import org.terasology.cities.WorldFacade;
 import org.terasology.cities.model.City;
 import org.terasology.cities.model.Lake;
-import org.terasology.cities.model.Road;
 import org.terasology.cities.raster.Brush;
 import org.terasology.cities.raster.RasterRegistry;
+import org.terasology.cities.raster.RoadSegmentIndex;
 import org.terasology.cities.raster.TerrainInfo;
-import org.terasology.cities.raster.standard.RoadRasterizer;
+import org.terasology.cities.raster.standard.RoadSegmentRasterizer;
 import org.terasology.cities.raster.standard.StandardRegistry;
 import org.terasology.commonworld.Orientation;
 import org.terasology.commonworld.Sector;
@@ -74,6 +76,7 @@ public class SwingRasterizer {
     private static final Logger logger = LoggerFactory.getLogger(SwingRasterizer.class);
 
     private final WorldFacade facade;
+    private final CityTerrainComponent terrainConfig = new CityTerrainComponent();
     private final HeightMap heightMap;
 
     private final Map<BlockTypes, Color> themeMap = Maps.newConcurrentMap();
@@ -106,7 +109,7 @@ public SwingRasterizer(String seed) {
         noiseMap.setSeed(seed);
         heightMap = HeightMaps.symmetric(noiseMap, Symmetries.alongNegativeDiagonal());
         
-        facade = new WorldFacade(seed, heightMap);
+        facade = new WorldFacade(seed, heightMap, terrainConfig, new CitySpawnComponent());
         
         themeMap.put(BlockTypes.AIR, new Color(0, 0, 0, 0));
         themeMap.put(BlockTypes.ROAD_SURFACE, new Color(160, 40, 40));
@@ -246,12 +249,13 @@ public void rasterizeChunk(Graphics2D g, Vector2i coord) {
     }
 
     private void drawRoads(Sector sector, TerrainInfo ti, Brush brush) {
-        Set<Road> roads = facade.getRoads(sector);
+        Vector2i coords = sector.getCoords();
+        Rectangle area = new Rectangle(coords.x * Sector.SIZE, coords.y * Sector.SIZE, Sector.SIZE, Sector.SIZE);
+        RoadSegmentIndex segments = RoadSegmentIndex.create(facade.getRoads(sector), heightMap, area,
+                ChunkConstants.SIZE_X, ChunkConstants.SIZE_Z);
     
-        RoadRasterizer rr = new RoadRasterizer();
-        for (Road road : roads) {
-            rr.raster(brush, ti, road);
-        }
+        RoadSegmentRasterizer rr = new RoadSegmentRasterizer();
+        rr.raster(brush, ti, segments);
     }
     
     private void drawCities(Sector sector, TerrainInfo ti, Brush brush) {
@@ -287,8 +291,6 @@ private void drawBackground(BufferedImage image, int wx, int wz, TerrainInfo ti)
         int height = image.getHeight();
         int maxHeight = 20;
 
-        CityTerrainComponent terrainConfig = WorldFacade.getWorldEntity().getComponent(CityTerrainComponent.class);
-
         for (int z = 0; z < height; z++) {
             for (int x = 0; x < width; x++) {
                 int gx = wx + x;
@@ -141,5 +141,30 @@ public AreaInfo apply(Sector input) {
         logger.info("Created {} lots with {} buildings in {}ms.", lotCount, bdgCount, pLotGen.elapsed(TimeUnit.MILLISECONDS));
     }
 
+    /**
+     * Poisson-disk candidates must yield the same, non-overlapping lots for the same seed
+     */
+    @Test
+    public void testPoissonDisk() {
+        CityTerrainComponent config = new CityTerrainComponent();
+        HeightMap heightMap = HeightMaps.constant(10);
+        City city = new MedievalTown("name", new Vector2i(-200, 150), 120);
+
+        LotGeneratorRandom lg = new LotGeneratorRandom("asd", 10d, 18d, 100, 100, LotGeneratorRandom.Sampling.POISSON_DISK);
+        Set<SimpleLot> lots = lg.generate(city, new AreaInfo(config, heightMap));
+        Set<SimpleLot> again = lg.generate(city, new AreaInfo(config, heightMap));
+
+        assertFalse(lots.isEmpty());
+
+        List<SimpleLot> list = Lists.newArrayList(lots);
+        List<SimpleLot> list2 = Lists.newArrayList(again);
+        assertTrue(list.size() == list2.size());
+        for (int i = 0; i < list.size(); i++) {
+            Rectangle a = list.get(i).getShape();
+            assertTrue(a.equals(list2.get(i).getShape()));
+            for (int j = i + 1; j < list.size(); j++) {
+                assertFalse("lots overlap", a.intersects(list.get(j).getShape()));
+            }
+        }
+    }
 }
-
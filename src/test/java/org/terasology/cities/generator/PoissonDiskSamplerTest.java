@@ -0,0 +1,70 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.terasology.cities.generator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import javax.vecmath.Point2d;
+
+import org.junit.Test;
+import org.terasology.utilities.random.FastRandom;
+
+/**
+ * Tests {@link PoissonDiskSampler}
+ */
+public class PoissonDiskSamplerTest {
+
+    @Test
+    public void testDistances() {
+        double minRad = 20;
+        double maxRad = 120;
+        double minDist = 10;
+        Point2d center = new Point2d(-300, 50);
+
+        List<Point2d> points = PoissonDiskSampler.sample(new FastRandom(123), center.x, center.y, minRad, maxRad, minDist);
+
+        // the ring is filled densely
+        assertFalse(points.isEmpty());
+        assertTrue(points.size() > Math.PI * (maxRad * maxRad - minRad * minRad) / (4 * minDist * minDist));
+
+        for (int i = 0; i < points.size(); i++) {
+            Point2d p = points.get(i);
+            double dist = p.distance(center);
+            assertTrue(dist >= minRad && dist < maxRad);
+            for (int j = i + 1; j < points.size(); j++) {
+                assertTrue(p.distance(points.get(j)) >= minDist);
+            }
+        }
+    }
+
+    @Test
+    public void testDeterministic() {
+        List<Point2d> a = PoissonDiskSampler.sample(new FastRandom(42), 0, 0, 5, 80, 12);
+        List<Point2d> b = PoissonDiskSampler.sample(new FastRandom(42), 0, 0, 5, 80, 12);
+        assertEquals(a, b);
+    }
+
+    @Test
+    public void testEmptyRing() {
+        assertTrue(PoissonDiskSampler.sample(new FastRandom(1), 0, 0, 50, 50, 10).isEmpty());
+    }
+}
@@ -92,9 +92,7 @@ public AreaInfo apply(Sector input) {
 
             @Override
             public Road apply(UnorderedPair<Site> input) {
-                Road road = rgs.apply(input);
-                rmr.apply(road);
-                return road;
+                return rmr.apply(rgs.apply(input));
             }
 
         };
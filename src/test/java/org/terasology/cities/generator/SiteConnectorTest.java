@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.terasology.cities.generator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+import org.terasology.cities.generator.SiteConnector.Topology;
+import org.terasology.cities.model.Site;
+import org.terasology.commonworld.Sector;
+import org.terasology.commonworld.geom.Vector2iUtils;
+
+import com.google.common.base.Function;
+import com.google.common.base.Functions;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Tests {@link SiteConnector}
+ */
+public class SiteConnectorTest {
+
+    @Test
+    public void testRelativeNeighborhood() {
+        Random r = new Random(1234);
+        List<Site> all = Lists.newArrayList();
+        Map<Sector, Set<Site>> sectorSites = Maps.newHashMap();
+        for (int i = 0; i < 200; i++) {
+            Site site = new Site(r.nextInt(4 * Sector.SIZE) - 2 * Sector.SIZE, r.nextInt(4 * Sector.SIZE) - 2 * Sector.SIZE, 10);
+            all.add(site);
+            Sector sector = site.getSector();
+            if (!sectorSites.containsKey(sector)) {
+                sectorSites.put(sector, Sets.<Site>newLinkedHashSet());
+            }
+            sectorSites.get(sector).add(site);
+        }
+
+        Function<Sector, Set<Site>> siteMap = Functions.forMap(sectorSites, ImmutableSet.<Site>of());
+        SiteIndex index = new SiteIndex(siteMap, 64);
+        double maxDist = Sector.SIZE * 0.75;
+
+        SiteConnector dense = new SiteConnector(index, maxDist, Topology.ALL_IN_RANGE);
+        SiteConnector sparse = new SiteConnector(index, maxDist, Topology.RELATIVE_NEIGHBORHOOD);
+
+        Map<Site, Site> denseParents = Maps.newIdentityHashMap();
+        Map<Site, Site> sparseParents = Maps.newIdentityHashMap();
+        int denseCount = 0;
+        int sparseCount = 0;
+
+        for (Site site : all) {
+            Set<Site> denseConns = dense.apply(site);
+            Set<Site> sparseConns = sparse.apply(site);
+
+            assertTrue(denseConns.containsAll(sparseConns));
+
+            for (Site other : sparseConns) {
+                // both ends must agree on the connection (unless it is the fallback to the closest site)
+                if (Vector2iUtils.distance(site.getPos(), other.getPos()) < maxDist) {
+                    assertTrue(sparse.apply(other).contains(site));
+                }
+                union(sparseParents, site, other);
+            }
+            for (Site other : denseConns) {
+                union(denseParents, site, other);
+            }
+
+            denseCount += denseConns.size();
+            sparseCount += sparseConns.size();
+        }
+
+        assertTrue(sparseCount < denseCount);
+
+        // all sites that were reachable before must still be reachable
+        for (Site a : all) {
+            for (Site b : all) {
+                assertEquals(find(denseParents, a) == find(denseParents, b), find(sparseParents, a) == find(sparseParents, b));
+            }
+        }
+    }
+
+    private static Site find(Map<Site, Site> parents, Site site) {
+        Site root = site;
+        while (parents.containsKey(root)) {
+            root = parents.get(root);
+        }
+        return root;
+    }
+
+    private static void union(Map<Site, Site> parents, Site a, Site b) {
+        Site ra = find(parents, a);
+        Site rb = find(parents, b);
+        if (ra != rb) {
+            parents.put(ra, rb);
+        }
+    }
+}
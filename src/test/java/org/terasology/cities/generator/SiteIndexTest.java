@@ -0,0 +1,112 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.terasology.cities.generator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+import org.terasology.cities.model.Site;
+import org.terasology.commonworld.Sector;
+import org.terasology.commonworld.Sectors;
+
+import com.google.common.base.Function;
+import com.google.common.base.Functions;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Tests {@link SiteIndex} against a linear search
+ */
+public class SiteIndexTest {
+
+    @Test
+    public void testAgainstLinearSearch() {
+        Random r = new Random(4711);
+        List<Site> all = Lists.newArrayList();
+        Map<Sector, Set<Site>> sectorSites = Maps.newHashMap();
+        for (int i = 0; i < 300; i++) {
+            Site site = new Site(r.nextInt(3 * Sector.SIZE) - Sector.SIZE, r.nextInt(3 * Sector.SIZE) - Sector.SIZE, 10);
+            all.add(site);
+            Sector sector = site.getSector();
+            if (!sectorSites.containsKey(sector)) {
+                sectorSites.put(sector, Sets.<Site>newLinkedHashSet());
+            }
+            sectorSites.get(sector).add(site);
+        }
+
+        Function<Sector, Set<Site>> siteMap = Functions.forMap(sectorSites, ImmutableSet.<Site>of());
+        SiteIndex index = new SiteIndex(siteMap, 16);
+
+        List<Sector> sectors = Lists.newArrayList();
+        for (int z = -1; z <= 1; z++) {
+            for (int x = -1; x <= 1; x++) {
+                sectors.add(Sectors.getSector(x, z));
+            }
+        }
+
+        for (double maxDist : new double[] {0, 30, 150, 5000}) {
+            for (Site site : all) {
+                Set<Site> expected = Sets.newHashSet();
+                Site closest = null;
+                double closestDistSq = Double.MAX_VALUE;
+                for (Site other : all) {
+                    if (other != site) {
+                        double distSq = distSq(site, other);
+                        if (distSq < maxDist * maxDist) {
+                            expected.add(other);
+                        }
+                        if (distSq < closestDistSq) {
+                            closestDistSq = distSq;
+                            closest = other;
+                        }
+                    }
+                }
+
+                assertEquals(expected, Sets.newHashSet(index.getSitesInRange(sectors, site, maxDist)));
+
+                Optional<Site> found = index.getClosest(sectors, site);
+                assertEquals(closestDistSq, distSq(site, found.get()), 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        SiteIndex index = new SiteIndex(Functions.<Set<Site>>constant(ImmutableSet.<Site>of()), 16);
+        Site site = new Site(10, 10, 10);
+        List<Sector> sectors = Lists.newArrayList(site.getSector());
+
+        assertFalse(index.getClosest(sectors, site).isPresent());
+        assertEquals(0, index.getSitesInRange(sectors, site, 100).size());
+    }
+
+    private static double distSq(Site a, Site b) {
+        double dx = a.getPos().x - b.getPos().x;
+        double dz = a.getPos().y - b.getPos().y;
+        return dx * dx + dz * dz;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.generator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Rectangle;
+import java.util.Collections;
+import java.util.Set;
+
+import org.junit.Test;
+import org.terasology.cities.model.Lake;
+import org.terasology.commonworld.Sector;
+import org.terasology.commonworld.Sectors;
+import org.terasology.commonworld.heightmap.HeightMap;
+import org.terasology.commonworld.heightmap.HeightMapAdapter;
+
+/**
+ * Tests {@link WaterBodyLabeler}
+ */
+public class WaterBodyLabelerTest {
+
+    /**
+     * A lake that crosses a sector border must be traced as a whole and be shared by both sectors
+     */
+    @Test
+    public void testLakeAcrossBorder() {
+        final int cx = Sector.SIZE;
+        final int cz = Sector.SIZE / 2;
+        final int rad = 100;
+
+        HeightMap heightMap = new HeightMapAdapter() {
+
+            @Override
+            public int apply(int x, int z) {
+                int dx = x - cx;
+                int dz = z - cz;
+                return (dx * dx + dz * dz < rad * rad) ? 0 : 20;
+            }
+        };
+
+        WaterBodyLabeler labeler = new WaterBodyLabeler("seed", heightMap, 10);
+
+        // query the eastern sector first to make sure that the order does not matter
+        Set<Lake> east = labeler.apply(Sectors.getSector(1, 0));
+        Set<Lake> west = labeler.apply(Sectors.getSector(0, 0));
+
+        assertEquals(1, west.size());
+        assertEquals(1, east.size());
+
+        Lake lake = west.iterator().next();
+        assertSame(lake, east.iterator().next());
+
+        Rectangle bounds = lake.getContour().getPolygon().getBounds();
+        assertTrue("Lake is cut at the sector border", bounds.x < cx && bounds.x + bounds.width > cx);
+
+        assertTrue(labeler.apply(Sectors.getSector(0, 1)).isEmpty());
+    }
+
+    /**
+     * A sea is clipped at sector borders, and traced only once per sector
+     */
+    @Test
+    public void testSea() {
+        HeightMap heightMap = new HeightMapAdapter() {
+
+            @Override
+            public int apply(int x, int z) {
+                return (x < -3 * Sector.SIZE) ? 0 : 20;
+            }
+        };
+
+        WaterBodyLabeler labeler = new WaterBodyLabeler("seed", heightMap, 10);
+        Sector sector = Sectors.getSector(-5, 0);
+
+        Set<Lake> sea = labeler.apply(sector);
+        assertEquals(1, sea.size());
+        assertEquals(sea, labeler.apply(sector));
+
+        Rectangle sectorRect = new Rectangle(-5 * Sector.SIZE, 0, Sector.SIZE, Sector.SIZE);
+        Rectangle bounds = sea.iterator().next().getContour().getPolygon().getBounds();
+        assertTrue("Sea is not clipped at the sector border", sectorRect.contains(bounds));
+    }
+
+    /**
+     * Component IDs of removed sectors are freed
+     */
+    @Test
+    public void testRetainAround() {
+        HeightMap heightMap = new HeightMapAdapter() {
+
+            @Override
+            public int apply(int x, int z) {
+                // one pond per sector
+                int dx = (x % Sector.SIZE + Sector.SIZE) % Sector.SIZE - Sector.SIZE / 2;
+                int dz = (z % Sector.SIZE + Sector.SIZE) % Sector.SIZE - Sector.SIZE / 2;
+                return (dx * dx + dz * dz < 50 * 50) ? 0 : 20;
+            }
+        };
+
+        WaterBodyLabeler labeler = new WaterBodyLabeler("seed", heightMap, 10);
+        for (int x = 0; x < 5; x++) {
+            assertEquals(1, labeler.apply(Sectors.getSector(x, 0)).size());
+        }
+        assertEquals(5, labeler.getComponentCount());
+
+        labeler.retainAround(Collections.singleton(Sectors.getSector(0, 0)), 0);
+        assertEquals(2, labeler.getComponentCount());
+
+        assertEquals(1, labeler.apply(Sectors.getSector(0, 0)).size());
+        assertEquals(2, labeler.getComponentCount());
+    }
+}
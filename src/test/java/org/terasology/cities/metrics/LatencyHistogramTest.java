@@ -0,0 +1,69 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link LatencyHistogram}
+ */
+public class LatencyHistogramTest {
+
+    /**
+     * Every value must fall into the bucket whose bounds enclose it
+     */
+    @Test
+    public void testBuckets() {
+        long[] values = {0, 1, 15, 16, 17, 31, 32, 1000, 123456789, Long.MAX_VALUE};
+        for (long value : values) {
+            int idx = LatencyHistogram.indexOf(value);
+            assertTrue(idx < LatencyHistogram.BUCKET_COUNT);
+            assertTrue(LatencyHistogram.lowerBound(idx) <= value);
+            if (idx + 1 < LatencyHistogram.BUCKET_COUNT) {
+                assertTrue(value < LatencyHistogram.lowerBound(idx + 1));
+            }
+        }
+    }
+
+    /**
+     * Percentiles must be within the relative bucket error
+     */
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+
+        HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(1000000L, snapshot.getMax());
+        assertEquals(500500.0, snapshot.getMean(), 0.001);
+
+        double maxError = 1.0 / LatencyHistogram.SUB_COUNT;
+        assertEquals(500000, snapshot.getPercentile(50), 500000 * maxError);
+        assertEquals(990000, snapshot.getPercentile(99), 990000 * maxError);
+        assertEquals(1000000L, snapshot.getPercentile(100));
+
+        histogram.reset();
+        assertEquals(0, histogram.snapshot().getCount());
+        assertEquals(0, histogram.snapshot().getPercentile(99));
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.awt.Point;
+import java.util.Collections;
+
+import javax.vecmath.Vector2d;
+
+import org.junit.Test;
+import org.terasology.commonworld.Sector;
+import org.terasology.commonworld.Sectors;
+import org.terasology.commonworld.contour.Contour;
+
+/**
+ * Tests {@link LakeMask}
+ */
+public class LakeMaskTest {
+
+    /**
+     * The mask must agree with the exact contour test everywhere in the sector
+     */
+    @Test
+    public void testAgreesWithContour() {
+        Sector sector = Sectors.getSector(-1, 2);
+        int minX = sector.getCoords().x * Sector.SIZE;
+        int minZ = sector.getCoords().y * Sector.SIZE;
+
+        Contour contour = new Contour();
+        contour.addPoint(new Point(minX + 40, minZ + 32));
+        contour.addPoint(new Point(minX + 200, minZ + 24));
+        contour.addPoint(new Point(minX + 180, minZ + 150));
+        contour.addPoint(new Point(minX + 60, minZ + 131));
+        Lake lake = new Lake(contour, "Testlake");
+
+        LakeMask mask = LakeMask.create(sector, Collections.singleton(lake));
+
+        for (int z = minZ; z < minZ + 256; z++) {
+            for (int x = minX; x < minX + 256; x++) {
+                boolean exact = lake.contains(new Vector2d(x, z));
+                assertEquals("Mismatch at " + x + "/" + z, exact, mask.isWater(x, z));
+            }
+        }
+
+        // positions outside the sector are never covered
+        assertFalse(mask.isWater(minX - 1, minZ + 50));
+        assertFalse(LakeMask.none().isWater(minX + 100, minZ + 50));
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.terasology.cities.persistence;
+
+import java.awt.Point;
+import java.awt.Shape;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.cities.CitySpawnComponent;
+import org.terasology.cities.CityTerrainComponent;
+import org.terasology.cities.WorldFacade;
+import org.terasology.cities.model.City;
+import org.terasology.cities.model.Junction;
+import org.terasology.cities.model.Lake;
+import org.terasology.cities.model.Lot;
+import org.terasology.cities.model.Road;
+import org.terasology.cities.model.bldg.Building;
+import org.terasology.commonworld.Sector;
+import org.terasology.commonworld.Sectors;
+import org.terasology.commonworld.contour.Contour;
+import org.terasology.commonworld.heightmap.HeightMap;
+import org.terasology.commonworld.heightmap.HeightMaps;
+import org.terasology.commonworld.heightmap.NoiseHeightMap;
+import org.terasology.commonworld.symmetry.Symmetries;
+import org.terasology.math.Vector2i;
+
+import com.google.common.base.Function;
+import com.google.common.base.Stopwatch;
+
+/**
+ * Compares size and speed of {@link ModelWriter} and {@link ModelReader} against Java serialization,
+ * using the cities, roads and lakes of generated sectors. The model classes are not {@link Serializable},
+ * so only their bare geometry (positions, lot shapes, building layouts, road points and lake contours)
+ * is serialized. The compact format stores more than that (roofs, doors, windows, heights).
+ * <p>
+ * This is not a unit test - run the main method.
+ */
+public final class ModelCodecBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModelCodecBenchmark.class);
+
+    private static final int ITERATIONS = 50;
+
+    private static final Function<Vector2i, Junction> JUNCTIONS = new Function<Vector2i, Junction>() {
+
+        @Override
+        public Junction apply(Vector2i input) {
+            return new Junction(input);
+        }
+    };
+
+    private ModelCodecBenchmark() {
+        // no instances
+    }
+
+    /**
+     * @param args ignored
+     * @throws Exception if encoding fails
+     */
+    public static void main(String[] args) throws Exception {
+        String seed = "benchmark";
+        NoiseHeightMap noiseMap = new NoiseHeightMap();
+        noiseMap.setSeed(seed);
+        HeightMap heightMap = HeightMaps.symmetric(noiseMap, Symmetries.alongNegativeDiagonal());
+
+        WorldFacade facade = new WorldFacade(seed, heightMap, new CityTerrainComponent(), new CitySpawnComponent());
+
+        List<SectorModel> models = new ArrayList<>();
+        for (int z = -1; z <= 1; z++) {
+            for (int x = -1; x <= 1; x++) {
+                Sector sector = Sectors.getSector(x, z);
+                models.add(new SectorModel(sector, facade.getCities(sector), facade.getRoads(sector), facade.getLakes(sector)));
+            }
+        }
+
+        facade.close();
+
+        // the first run warms up the JIT - only the second one is meaningful
+        run(models, ITERATIONS);
+        run(models, ITERATIONS);
+    }
+
+    private static void run(List<SectorModel> models, int iterations) throws IOException, ClassNotFoundException {
+        int compactSize = 0;
+        Stopwatch compactWrite = Stopwatch.createUnstarted();
+        Stopwatch compactRead = Stopwatch.createUnstarted();
+
+        int javaSize = 0;
+        Stopwatch javaWrite = Stopwatch.createUnstarted();
+        Stopwatch javaRead = Stopwatch.createUnstarted();
+
+        for (int i = 0; i < iterations; i++) {
+            compactSize = 0;
+            javaSize = 0;
+
+            for (SectorModel model : models) {
+                compactWrite.start();
+                byte[] compact = model.encode();
+                compactWrite.stop();
+                compactSize += compact.length;
+
+                compactRead.start();
+                model.decode(compact);
+                compactRead.stop();
+
+                javaWrite.start();
+                byte[] java = serialize(model.getGeometry());
+                javaWrite.stop();
+                javaSize += java.length;
+
+                javaRead.start();
+                deserialize(java);
+                javaRead.stop();
+            }
+        }
+
+        logger.info("{} sectors - compact format: {} bytes, write {}ms, read {}ms",
+                models.size(), compactSize,
+                compactWrite.elapsed(TimeUnit.MILLISECONDS), compactRead.elapsed(TimeUnit.MILLISECONDS));
+        logger.info("{} sectors - Java serialization of the bare geometry: {} bytes, write {}ms, read {}ms",
+                models.size(), javaSize,
+                javaWrite.elapsed(TimeUnit.MILLISECONDS), javaRead.elapsed(TimeUnit.MILLISECONDS));
+    }
+
+    private static byte[] serialize(Serializable obj) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+            oos.writeObject(obj);
+        }
+        return bos.toByteArray();
+    }
+
+    private static Object deserialize(byte[] data) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(data))) {
+            return ois.readObject();
+        }
+    }
+
+    /**
+     * The generated models of one sector
+     */
+    private static final class SectorModel {
+        private final Vector2i origin;
+        private final Set<City> cities;
+        private final Set<Road> roads;
+        private final Set<Lake> lakes;
+
+        SectorModel(Sector sector, Set<City> cities, Set<Road> roads, Set<Lake> lakes) {
+            Vector2i coords = sector.getCoords();
+            this.origin = new Vector2i(coords.x * Sector.SIZE, coords.y * Sector.SIZE);
+            this.cities = cities;
+            this.roads = roads;
+            this.lakes = lakes;
+        }
+
+        byte[] encode() throws IOException {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            ModelWriter writer = new ModelWriter(new DataOutputStream(bos), origin);
+            writer.writeHeader();
+            writer.writeCities(cities);
+            writer.writeRoads(roads);
+            writer.writeLakes(lakes);
+            return bos.toByteArray();
+        }
+
+        void decode(byte[] data) throws IOException {
+            ModelReader reader = new ModelReader(new DataInputStream(new ByteArrayInputStream(data)), origin);
+            reader.readHeader();
+            reader.readCities();
+            reader.readRoads(JUNCTIONS);
+            reader.readLakes();
+        }
+
+        ArrayList<Serializable> getGeometry() {
+            ArrayList<Serializable> geometry = new ArrayList<>();
+
+            for (City city : cities) {
+                geometry.add(city.getName());
+                geometry.add(new Point(city.getPos().x, city.getPos().y));
+                for (Lot lot : city.getLots()) {
+                    addShape(geometry, lot.getShape());
+                    for (Building bldg : lot.getBuildings()) {
+                        addShape(geometry, bldg.getLayout());
+                    }
+                }
+            }
+
+            for (Road road : roads) {
+                ArrayList<Point> points = new ArrayList<>();
+                points.add(new Point(road.getStart().getCoords().x, road.getStart().getCoords().y));
+                for (Vector2i pt : road.getPoints()) {
+                    points.add(new Point(pt.x, pt.y));
+                }
+                points.add(new Point(road.getEnd().getCoords().x, road.getEnd().getCoords().y));
+                geometry.add(points);
+                geometry.add(road.getWidth());
+            }
+
+            for (Lake lake : lakes) {
+                geometry.add(lake.getName());
+                geometry.add(new ArrayList<>(lake.getContour().getPoints()));
+                for (Contour island : lake.getIslandContours()) {
+                    geometry.add(new ArrayList<>(island.getPoints()));
+                }
+            }
+
+            return geometry;
+        }
+
+        private static void addShape(List<Serializable> geometry, Shape shape) {
+            if (shape instanceof Serializable) {
+                geometry.add((Serializable) shape);
+            } else {
+                geometry.add(shape.getBounds());
+            }
+        }
+    }
+}
@@ -0,0 +1,388 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.terasology.cities.model.City;
+import org.terasology.cities.model.Junction;
+import org.terasology.cities.model.Lake;
+import org.terasology.cities.model.Lot;
+import org.terasology.cities.model.MedievalTown;
+import org.terasology.cities.model.Road;
+import org.terasology.cities.model.SimpleFence;
+import org.terasology.cities.model.SimpleLot;
+import org.terasology.cities.model.bldg.Building;
+import org.terasology.cities.model.bldg.BuildingPart;
+import org.terasology.cities.model.bldg.GateWallSegment;
+import org.terasology.cities.model.bldg.RoundHouse;
+import org.terasology.cities.model.bldg.SimpleBuildingPart;
+import org.terasology.cities.model.bldg.SimpleChurch;
+import org.terasology.cities.model.bldg.SimpleDoor;
+import org.terasology.cities.model.bldg.SimpleHome;
+import org.terasology.cities.model.bldg.SimpleTower;
+import org.terasology.cities.model.bldg.SimpleWindow;
+import org.terasology.cities.model.bldg.SolidWallSegment;
+import org.terasology.cities.model.bldg.Tower;
+import org.terasology.cities.model.bldg.TownWall;
+import org.terasology.cities.model.bldg.WallSegment;
+import org.terasology.cities.model.bldg.Window;
+import org.terasology.cities.model.roof.BattlementRoof;
+import org.terasology.cities.model.roof.ConicRoof;
+import org.terasology.cities.model.roof.DomeRoof;
+import org.terasology.cities.model.roof.FlatRoof;
+import org.terasology.cities.model.roof.HipRoof;
+import org.terasology.cities.model.roof.PentRoof;
+import org.terasology.cities.model.roof.Roof;
+import org.terasology.cities.model.roof.SaddleRoof;
+import org.terasology.commonworld.Orientation;
+import org.terasology.commonworld.contour.Contour;
+import org.terasology.math.Vector2i;
+
+import com.google.common.base.Function;
+
+/**
+ * Tests {@link ModelWriter} and {@link ModelReader}
+ */
+public class ModelCodecTest {
+
+    private static final Vector2i ORIGIN = new Vector2i(1024, -2048);
+
+    private final Function<Vector2i, Junction> junctions = new Function<Vector2i, Junction>() {
+
+        @Override
+        public Junction apply(Vector2i input) {
+            return new Junction(input);
+        }
+    };
+
+    /**
+     * Writes and reads cities with all building and roof types
+     * @throws IOException if encoding fails
+     */
+    @Test
+    public void testCities() throws IOException {
+        MedievalTown original = createTown(ORIGIN.x + 500, ORIGIN.y + 300);
+        Set<City> cities = Collections.<City>singleton(original);
+
+        byte[] data = encodeCities(cities);
+        ModelReader reader = new ModelReader(new DataInputStream(new ByteArrayInputStream(data)), ORIGIN);
+        reader.readHeader();
+        Set<City> copy = reader.readCities();
+
+        assertEquals(1, copy.size());
+        MedievalTown town = (MedievalTown) copy.iterator().next();
+        assertEquals("Testtown", town.getName());
+        assertEquals(new Vector2i(ORIGIN.x + 500, ORIGIN.y + 300), town.getPos());
+        assertEquals(3, town.getLots().size());
+        assertTrue(town.getTownWall().isPresent());
+        assertEquals(2, town.getTownWall().get().getWalls().size());
+        assertEquals(1, town.getTownWall().get().getTowers().size());
+
+        int bldgCount = 0;
+        for (Lot lot : town.getLots()) {
+            bldgCount += lot.getBuildings().size();
+        }
+        assertEquals(5, bldgCount);
+
+        // compare all fields, including roofs, heights, doors, windows and fences
+        assertEquals(describe(original), describe(town));
+
+        // element order within hash sets can change, but the size must not
+        assertEquals(data.length, encodeCities(copy).length);
+    }
+
+    /**
+     * Writes and reads roads, including negative deltas
+     * @throws IOException if encoding fails
+     */
+    @Test
+    public void testRoads() throws IOException {
+        Road road = createRoad(ORIGIN.x + 10, ORIGIN.y + 900, 20);
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ModelWriter writer = new ModelWriter(new DataOutputStream(bos), ORIGIN);
+        writer.writeHeader();
+        writer.writeRoads(Collections.singleton(road));
+
+        ModelReader reader = new ModelReader(new DataInputStream(new ByteArrayInputStream(bos.toByteArray())), ORIGIN);
+        reader.readHeader();
+        Set<Road> copy = reader.readRoads(junctions);
+
+        assertEquals(1, copy.size());
+        Road other = copy.iterator().next();
+
+        // roads are equal if junctions, points and width are equal
+        assertEquals(road, other);
+    }
+
+    /**
+     * Writes and reads lakes with islands
+     * @throws IOException if encoding fails
+     */
+    @Test
+    public void testLakes() throws IOException {
+        Lake lake = new Lake(createContour(ORIGIN.x + 200, ORIGIN.y + 200, 50), "Testlake");
+        lake.addIsland(createContour(ORIGIN.x + 210, ORIGIN.y + 210, 5));
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ModelWriter writer = new ModelWriter(new DataOutputStream(bos), ORIGIN);
+        writer.writeHeader();
+        writer.writeLakes(Collections.singleton(lake));
+
+        ModelReader reader = new ModelReader(new DataInputStream(new ByteArrayInputStream(bos.toByteArray())), ORIGIN);
+        reader.readHeader();
+        Set<Lake> copy = reader.readLakes();
+
+        assertEquals(1, copy.size());
+        Lake other = copy.iterator().next();
+        assertEquals("Testlake", other.getName());
+        assertEquals(lake.getContour().getPoints(), other.getContour().getPoints());
+        assertEquals(1, other.getIslandContours().size());
+        assertEquals(lake.getIslandContours().iterator().next().getPoints(),
+                other.getIslandContours().iterator().next().getPoints());
+    }
+
+    /**
+     * Data written with a different version must be rejected
+     * @throws IOException if encoding fails
+     */
+    @Test(expected = IOException.class)
+    public void testVersionMismatch() throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(bos);
+        dos.writeInt(ModelWriter.MAGIC);
+        VarInts.writeUnsigned(dos, ModelWriter.VERSION + 1);
+
+        ModelReader reader = new ModelReader(new DataInputStream(new ByteArrayInputStream(bos.toByteArray())), ORIGIN);
+        reader.readHeader();
+    }
+
+    private static byte[] encodeCities(Set<City> cities) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ModelWriter writer = new ModelWriter(new DataOutputStream(bos), ORIGIN);
+        writer.writeHeader();
+        writer.writeCities(cities);
+        return bos.toByteArray();
+    }
+
+    /**
+     * Model elements don't implement equals(), so a canonical description of all fields
+     * is compared instead. Elements that are stored in sets are sorted.
+     * @param town the town
+     * @return a description of the town and all of its elements
+     */
+    private static String describe(MedievalTown town) {
+        List<String> lots = new ArrayList<>();
+        for (Lot lot : town.getLots()) {
+            lots.add(describe((SimpleLot) lot));
+        }
+        Collections.sort(lots);
+
+        String wall = town.getTownWall().isPresent() ? describe(town.getTownWall().get()) : "none";
+        return town.getName() + " " + town.getPos() + " " + town.getRadius() + " lots " + lots + " wall " + wall;
+    }
+
+    private static String describe(SimpleLot lot) {
+        List<String> bldgs = new ArrayList<>();
+        for (Building bldg : lot.getBuildings()) {
+            bldgs.add(describe(bldg));
+        }
+        Collections.sort(bldgs);
+
+        String fence = "none";
+        if (lot.getFence().isPresent()) {
+            SimpleFence sf = lot.getFence().get();
+            fence = sf.getRect() + " " + sf.getGateOrientation() + " " + sf.getGate();
+        }
+        return lot.getShape() + " " + bldgs + " fence " + fence;
+    }
+
+    private static String describe(Building bldg) {
+        if (bldg instanceof SimpleHome) {
+            SimpleHome home = (SimpleHome) bldg;
+            return "home " + home.getLayout() + " " + home.getBaseHeight() + " " + home.getWallHeight()
+                    + " " + describe(home.getRoof()) + " " + describe(home.getDoor()) + " " + describe(home.getWindows());
+        }
+        if (bldg instanceof SimpleTower) {
+            SimpleTower tower = (SimpleTower) bldg;
+            return "tower " + tower.getLayout() + " " + tower.getBaseHeight() + " " + tower.getWallHeight()
+                    + " " + describe(tower.getRoof()) + " " + describe(tower.getWindows());
+        }
+        if (bldg instanceof RoundHouse) {
+            RoundHouse house = (RoundHouse) bldg;
+            String door = (house.getDoor() != null) ? describe(house.getDoor()) : "none";
+            return "roundhouse " + house.getLayout().getBounds2D() + " " + house.getBaseHeight() + " " + house.getWallHeight()
+                    + " " + door + " " + describe(house.getWindows());
+        }
+        if (bldg instanceof SimpleChurch) {
+            SimpleChurch church = (SimpleChurch) bldg;
+            List<String> parts = new ArrayList<>();
+            for (BuildingPart part : church.getParts()) {
+                parts.add(describe((SimpleBuildingPart) part));
+            }
+            Collections.sort(parts);
+            return "church " + describe(church.getNave()) + " " + describe(church.getTower())
+                    + " " + parts + " " + describe(church.getDoor()) + " " + describe(church.getWindows());
+        }
+        throw new IllegalArgumentException("Unsupported building type " + bldg.getClass());
+    }
+
+    private static String describe(SimpleBuildingPart part) {
+        return part.getLayout() + " " + part.getBaseHeight() + " " + part.getTopHeight() + " " + describe(part.getRoof());
+    }
+
+    private static String describe(Roof roof) {
+        // test sub-classes first
+        if (roof instanceof BattlementRoof || roof instanceof FlatRoof) {
+            FlatRoof flat = (FlatRoof) roof;
+            return roof.getClass().getSimpleName() + " " + flat.getArea() + " " + flat.getBaseHeight() + " " + flat.getBorderHeight(0, 0);
+        }
+        if (roof instanceof HipRoof) {
+            HipRoof hip = (HipRoof) roof;
+            return "hip " + hip.getArea() + " " + hip.getBaseHeight() + " " + hip.getPitch() + " " + hip.getMaxHeight();
+        }
+        if (roof instanceof DomeRoof) {
+            DomeRoof dome = (DomeRoof) roof;
+            return "dome " + dome.getArea() + " " + dome.getBaseHeight() + " " + dome.getHeight();
+        }
+        if (roof instanceof SaddleRoof) {
+            SaddleRoof saddle = (SaddleRoof) roof;
+            return "saddle " + saddle.getArea() + " " + saddle.getBaseHeight() + " " + saddle.getOrientation() + " " + saddle.getPitch();
+        }
+        if (roof instanceof PentRoof) {
+            PentRoof pent = (PentRoof) roof;
+            return "pent " + pent.getArea() + " " + pent.getBaseHeight() + " " + pent.getOrientation() + " " + pent.getPitch();
+        }
+        if (roof instanceof ConicRoof) {
+            ConicRoof conic = (ConicRoof) roof;
+            return "conic " + conic.getArea().getBounds2D() + " " + conic.getBaseHeight() + " " + conic.getPitch();
+        }
+        throw new IllegalArgumentException("Unsupported roof type " + roof.getClass());
+    }
+
+    private static String describe(SimpleDoor door) {
+        return "door " + door.getOrientation() + " " + door.getRect() + " " + door.getBaseHeight() + " " + door.getTopHeight();
+    }
+
+    private static List<String> describe(Collection<Window> windows) {
+        List<String> result = new ArrayList<>();
+        for (Window wnd : windows) {
+            SimpleWindow sw = (SimpleWindow) wnd;
+            result.add("window " + sw.getOrientation() + " " + sw.getRect() + " " + sw.getBaseHeight() + " " + sw.getTopHeight());
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private static String describe(TownWall tw) {
+        List<String> walls = new ArrayList<>();
+        for (WallSegment ws : tw.getWalls()) {
+            int height = (ws instanceof SolidWallSegment)
+                    ? ((SolidWallSegment) ws).getWallHeight()
+                    : ((GateWallSegment) ws).getWallHeight();
+            walls.add(ws.getClass().getSimpleName() + " " + ws.getStart() + " " + ws.getEnd()
+                    + " " + ws.getWallThickness() + " " + height);
+        }
+        Collections.sort(walls);
+
+        List<String> towers = new ArrayList<>();
+        for (Tower tower : tw.getTowers()) {
+            towers.add(describe(tower));
+        }
+        Collections.sort(towers);
+        return walls + " " + towers;
+    }
+
+    private static MedievalTown createTown(int x, int z) {
+        MedievalTown town = new MedievalTown("Testtown", new Vector2i(x, z), 40);
+
+        SimpleLot homeLot = new SimpleLot(new Rectangle(x - 30, z - 30, 20, 20));
+        SimpleDoor door = new SimpleDoor(Orientation.SOUTH, new Rectangle(x - 25, z - 16, 1, 1), 10, 12);
+        SimpleHome home = new SimpleHome(new Rectangle(x - 28, z - 28, 8, 12),
+                new SaddleRoof(new Rectangle(x - 29, z - 29, 10, 14), 14, Orientation.EAST, 1.0), 10, 4, door);
+        home.addWindow(new SimpleWindow(Orientation.WEST, new Rectangle(x - 28, z - 25, 1, 1), 11, 12));
+        homeLot.addBuilding(home);
+        homeLot.addBuilding(new SimpleHome(new Rectangle(x - 18, z - 28, 6, 6),
+                new PentRoof(new Rectangle(x - 19, z - 29, 8, 8), 14, Orientation.NORTH, 0.5), 10, 4, door));
+        homeLot.setFence(new SimpleFence(new Rectangle(x - 30, z - 30, 20, 20), Orientation.SOUTH, new Vector2i(x - 20, z - 11)));
+        town.add(homeLot);
+
+        SimpleLot houseLot = new SimpleLot(new Rectangle(x + 5, z - 30, 20, 20));
+        RoundHouse house = new RoundHouse(new Vector2i(x + 15, z - 20), 5, 10, 4);
+        house.setDoor(new SimpleDoor(Orientation.EAST, new Rectangle(x + 20, z - 20, 1, 1), 10, 12));
+        houseLot.addBuilding(house);
+        houseLot.addBuilding(new SimpleHome(new Rectangle(x + 5, z - 12, 4, 2),
+                new HipRoof(new Rectangle(x + 4, z - 13, 6, 4), 14, 1.0, 3), 10, 4, door));
+        town.add(houseLot);
+
+        SimpleLot churchLot = new SimpleLot(new Rectangle(x - 10, z + 5, 30, 30));
+        SimpleBuildingPart nave = new SimpleBuildingPart(new Rectangle(x - 8, z + 7, 10, 20), 10, 18,
+                new DomeRoof(new Rectangle(x - 9, z + 6, 12, 22), 18, 5));
+        SimpleBuildingPart tower = new SimpleBuildingPart(new Rectangle(x + 2, z + 12, 6, 6), 10, 30,
+                new FlatRoof(new Rectangle(x + 2, z + 12, 6, 6), 30, 1));
+        SimpleChurch church = new SimpleChurch(nave, tower,
+                new SimpleDoor(Orientation.NORTH, new Rectangle(x - 4, z + 7, 2, 1), 10, 13));
+        church.addPart(new SimpleBuildingPart(new Rectangle(x - 12, z + 10, 4, 4), 10, 14,
+                new ConicRoof(new Vector2i(x - 10, z + 12), 3, 14, 2)));
+        church.addWindow(new SimpleWindow(Orientation.WEST, new Rectangle(x - 8, z + 15, 1, 1), 13, 15));
+        churchLot.addBuilding(church);
+        town.add(churchLot);
+
+        TownWall tw = new TownWall();
+        tw.addWall(new SolidWallSegment(new Vector2i(x - 40, z - 40), new Vector2i(x + 40, z - 40), 2, 8));
+        tw.addWall(new GateWallSegment(new Vector2i(x + 40, z - 40), new Vector2i(x + 40, z + 40), 2, 8));
+        SimpleTower wallTower = new SimpleTower(new Rectangle(x + 38, z - 42, 5, 5), 10, 10);
+        assertTrue(wallTower.getRoof() instanceof BattlementRoof);
+        tw.addTower(wallTower);
+        town.setTownWall(tw);
+
+        return town;
+    }
+
+    private static Road createRoad(int x, int z, int length) {
+        List<Vector2i> points = new ArrayList<>();
+        for (int i = 1; i < length; i++) {
+            points.add(new Vector2i(x + i * 3, z - i * 2 + (i % 3)));
+        }
+        return new Road(new Junction(new Vector2i(x, z)), new Junction(new Vector2i(x + length * 3, z - length * 2)), points, 3.5);
+    }
+
+    private static Contour createContour(int x, int z, int size) {
+        Contour contour = new Contour();
+        contour.addPoint(new Point(x, z));
+        contour.addPoint(new Point(x + size, z));
+        contour.addPoint(new Point(x + size, z + size));
+        contour.addPoint(new Point(x, z + size));
+        return contour;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.terasology.cities.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.terasology.cities.model.Junction;
+import org.terasology.cities.model.Road;
+import org.terasology.commonworld.Sector;
+import org.terasology.commonworld.Sectors;
+import org.terasology.math.Vector2i;
+
+import com.google.common.base.Function;
+
+/**
+ * Tests {@link SectorStore}
+ */
+public class SectorStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Function<Vector2i, Junction> junctions = new Function<Vector2i, Junction>() {
+
+        @Override
+        public Junction apply(Vector2i input) {
+            return new Junction(input);
+        }
+    };
+
+    /**
+     * Parameters must not run into each other
+     */
+    @Test
+    public void testKeyDelimiter() {
+        assertEquals(SectorStore.createKey("seed", 1, 23), SectorStore.createKey("seed", 1, 23));
+        assertFalse(SectorStore.createKey("seed", 1, 23).equals(SectorStore.createKey("seed", 12, 3)));
+        assertFalse(SectorStore.createKey("seed1", 2).equals(SectorStore.createKey("seed", 12)));
+    }
+
+    /**
+     * Models that are written before closing the store are loaded by the next store
+     * @throws IOException if the temp. folder cannot be created
+     */
+    @Test
+    public void testCloseAndReload() throws IOException {
+        Path baseDir = folder.newFolder().toPath();
+        String key = SectorStore.createKey("seed", 1);
+        Sector sector = Sectors.getSector(1, 2);
+
+        Road road = new Road(new Junction(new Vector2i(1100, 2100)), new Junction(new Vector2i(1300, 2200)),
+                Collections.singletonList(new Vector2i(1200, 2150)), 4.0);
+        final Set<Road> roads = Collections.singleton(road);
+
+        SectorStore store = new SectorStore(baseDir, key);
+        store.roads(new Function<Sector, Set<Road>>() {
+
+            @Override
+            public Set<Road> apply(Sector input) {
+                return roads;
+            }
+        }, junctions).apply(sector);
+        store.close();
+
+        SectorStore other = new SectorStore(baseDir, key);
+        Set<Road> loaded = other.roads(new Function<Sector, Set<Road>>() {
+
+            @Override
+            public Set<Road> apply(Sector input) {
+                throw new IllegalStateException("should be loaded from disk");
+            }
+        }, junctions).apply(sector);
+        other.close();
+
+        assertEquals(roads, loaded);
+
+        // temp. files are either moved or deleted
+        for (File file : baseDir.resolve(key).toFile().listFiles()) {
+            assertFalse(file.getName().endsWith(".tmp"));
+        }
+    }
+}
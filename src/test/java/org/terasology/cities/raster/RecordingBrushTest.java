@@ -0,0 +1,125 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.terasology.cities.raster;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.Rectangle;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.terasology.cities.BlockTypes;
+import org.terasology.commonworld.heightmap.HeightMaps;
+import org.terasology.math.Side;
+import org.terasology.math.SideBitFlag;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Tests {@link RecordingBrush}
+ */
+public class RecordingBrushTest {
+
+    /**
+     * Replaying the recorded commands of a chunk must produce the same blocks
+     * in the same order as drawing directly into that chunk
+     */
+    @Test
+    public void testReplay() {
+        RecordingBrush recorder = new RecordingBrush(new Rectangle(-64, 0, 128, 64), 32, 32);
+        draw(recorder);
+        recorder.compact();
+
+        for (int cz = 0; cz < 64; cz += 32) {
+            for (int cx = -64; cx < 64; cx += 32) {
+                Rectangle chunk = new Rectangle(cx, cz, 32, 32);
+
+                LogBrush direct = new LogBrush(chunk);
+                draw(direct);
+
+                LogBrush replayed = new LogBrush(chunk);
+                recorder.replay(replayed);
+
+                assertEquals("Chunk at " + cx + "/" + cz, direct.log, replayed.log);
+            }
+        }
+    }
+
+    /**
+     * Adjacent columns of the same type and height are merged
+     */
+    @Test
+    public void testBoxes() {
+        RecordingBrush recorder = new RecordingBrush(new Rectangle(0, 0, 32, 32), 32, 32);
+        recorder.fillRect(new Rectangle(0, 0, 32, 32), 5, 8, BlockTypes.LOT_EMPTY);
+
+        // one box per row: header, position and two heights
+        assertEquals(32 * 4, recorder.size());
+    }
+
+    private static void draw(Brush brush) {
+        brush.fillRect(new Rectangle(-50, 10, 70, 20), HeightMaps.constant(3), 4, BlockTypes.LOT_EMPTY);
+        brush.drawCircle(10, 40, 12, HeightMaps.constant(6), BlockTypes.BUILDING_WALL);
+        brush.setBlock(-33, 7, 31, BlockTypes.FENCE, SideBitFlag.getSides(Side.LEFT, Side.RIGHT));
+        brush.setBlock(100, 7, 31, BlockTypes.FENCE);
+        brush.setColumn(31, 32, 2, 9, BlockTypes.AIR);
+    }
+
+    /**
+     * Logs all blocks in the affected area
+     */
+    private static class LogBrush extends Brush {
+
+        private final List<String> log = Lists.newArrayList();
+        private final Rectangle area;
+
+        LogBrush(Rectangle area) {
+            this.area = area;
+        }
+
+        @Override
+        public void setBlock(int x, int y, int z, BlockTypes type) {
+            if (area.contains(x, z)) {
+                log.add(x + "/" + y + "/" + z + " " + type);
+            }
+        }
+
+        @Override
+        public void setBlock(int x, int y, int z, BlockTypes type, Set<Side> side) {
+            if (area.contains(x, z)) {
+                log.add(x + "/" + y + "/" + z + " " + type + " " + side);
+            }
+        }
+
+        @Override
+        public int getMaxHeight() {
+            return 64;
+        }
+
+        @Override
+        public int getMinHeight() {
+            return 0;
+        }
+
+        @Override
+        public Rectangle getAffectedArea() {
+            return area;
+        }
+    }
+}
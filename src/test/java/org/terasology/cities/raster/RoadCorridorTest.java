@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.terasology.cities.raster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Rectangle;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.terasology.cities.model.Junction;
+import org.terasology.cities.model.Road;
+import org.terasology.commonworld.Sector;
+import org.terasology.commonworld.Sectors;
+import org.terasology.commonworld.heightmap.HeightMap;
+import org.terasology.commonworld.heightmap.HeightMaps;
+import org.terasology.math.Vector2i;
+
+/**
+ * Tests {@link RoadCorridor}
+ */
+public class RoadCorridorTest {
+
+    /**
+     * Cells within half the road width are covered, cells further away are not
+     */
+    @Test
+    public void testCoverage() {
+        Sector sector = Sectors.getSector(0, 0);
+        HeightMap heightMap = HeightMaps.constant(10);
+
+        Road road = new Road(new Junction(new Vector2i(-10, 20)), new Junction(new Vector2i(100, 20)),
+                Collections.singletonList(new Vector2i(50, 20)), 6);
+
+        Rectangle area = new Rectangle(0, 0, Sector.SIZE, Sector.SIZE);
+        RoadSegmentIndex segments = RoadSegmentIndex.create(Collections.singleton(road), heightMap, area, 32, 32);
+        RoadCorridor corridor = RoadCorridor.create(sector, segments);
+
+        assertTrue(corridor.isRoad(0, 20));
+        assertEquals(10, corridor.getHeight(0, 20));
+        assertEquals(0.0, corridor.getDistance(50, 20), 0.0);
+        assertEquals(2.0, corridor.getDistance(50, 22), 0.2);
+        assertTrue(corridor.isRoad(50, 23));
+        assertFalse(corridor.isRoad(50, 24));
+
+        // round cap at the end
+        assertTrue(corridor.isRoad(102, 22));
+        assertFalse(corridor.isRoad(103, 23));
+
+        // outside of the sector
+        assertFalse(corridor.isRoad(-5, 20));
+        assertEquals(RoadCorridor.NONE, corridor.getHeight(-5, 20));
+
+        assertTrue(corridor.intersects(new Rectangle(0, 0, 32, 32)));
+        assertFalse(corridor.intersects(new Rectangle(0, 64, 32, 32)));
+    }
+}
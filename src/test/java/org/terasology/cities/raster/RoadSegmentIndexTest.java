@@ -0,0 +1,90 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.terasology.cities.raster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.terasology.cities.model.Junction;
+import org.terasology.cities.model.Road;
+import org.terasology.commonworld.heightmap.HeightMap;
+import org.terasology.commonworld.heightmap.HeightMapAdapter;
+import org.terasology.math.Vector2i;
+
+/**
+ * Tests {@link RoadSegmentIndex}
+ */
+public class RoadSegmentIndexTest {
+
+    private final HeightMap heightMap = new HeightMapAdapter() {
+
+        @Override
+        public int apply(int x, int z) {
+            return x / 10;
+        }
+    };
+
+    private Road createRoad() {
+        List<Vector2i> points = Arrays.asList(new Vector2i(50, 20), new Vector2i(50, 150));
+        return new Road(new Junction(new Vector2i(0, 20)), new Junction(new Vector2i(200, 150)), points, 6);
+    }
+
+    @Test
+    public void testCells() {
+        RoadSegmentIndex index = RoadSegmentIndex.create(Collections.singleton(createRoad()), heightMap,
+                new Rectangle(0, 0, 1000, 1000), 32, 32);
+
+        List<RoadSegment> all = index.getAllSegments();
+        assertEquals(3, all.size());
+
+        assertEquals(Arrays.asList(all.get(0)), index.getSegments(new Rectangle(0, 0, 32, 32)));
+        assertEquals(Arrays.asList(all.get(0), all.get(1)), index.getSegments(new Rectangle(32, 0, 32, 32)));
+        assertEquals(Arrays.asList(all.get(2)), index.getSegments(new Rectangle(96, 128, 32, 32)));
+        assertTrue(index.getSegments(new Rectangle(160, 0, 32, 32)).isEmpty());
+
+        // several cells - no duplicates, road order
+        assertEquals(Arrays.asList(all.get(0), all.get(1)), index.getSegments(new Rectangle(0, 0, 64, 64)));
+    }
+
+    @Test
+    public void testHeights() {
+        RoadSegmentIndex index = RoadSegmentIndex.create(Collections.singleton(createRoad()), heightMap,
+                new Rectangle(0, 0, 1000, 1000), 32, 32);
+
+        RoadSegment last = index.getAllSegments().get(2);
+        assertEquals(5, last.getStart().z, 0.0);
+        assertEquals(20, last.getEnd().z, 0.0);
+        assertEquals(5, last.getHeight(50, 150));
+        assertEquals(20, last.getHeight(200, 150));
+    }
+
+    @Test
+    public void testClipping() {
+        RoadSegmentIndex index = RoadSegmentIndex.create(Collections.singleton(createRoad()), heightMap,
+                new Rectangle(0, 0, 100, 100), 32, 32);
+
+        // the last segment is outside of the area
+        assertEquals(2, index.getAllSegments().size());
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.terasology.cities.raster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.terasology.cities.model.MedievalTown;
+import org.terasology.cities.model.SimpleLot;
+import org.terasology.cities.model.bldg.SimpleTower;
+import org.terasology.cities.model.bldg.SolidWallSegment;
+import org.terasology.cities.model.bldg.TownWall;
+import org.terasology.math.Vector2i;
+
+/**
+ * Tests {@link SectorElements}
+ */
+public class SectorElementsTest {
+
+    /**
+     * Elements that overlap the area are collected in rasterization order
+     */
+    @Test
+    public void testCollect() {
+        MedievalTown town = new MedievalTown("Testtown", new Vector2i(-20, 40), 60);
+
+        SimpleLot lot = new SimpleLot(new Rectangle(-10, 40, 8, 8));
+        SimpleLot farLot = new SimpleLot(new Rectangle(-300, 40, 8, 8));
+        town.add(lot);
+        town.add(farLot);
+
+        TownWall tw = new TownWall();
+        SolidWallSegment wall = new SolidWallSegment(new Vector2i(-40, 10), new Vector2i(40, 10), 1, 5);
+        SimpleTower tower = new SimpleTower(new Rectangle(40, 8, 4, 4), 3, 10);
+        tw.addWall(wall);
+        tw.addTower(tower);
+        town.setTownWall(tw);
+
+        Rectangle area = new Rectangle(-256, -256, 512, 512);
+        SectorElements elements = SectorElements.create(Collections.singleton(town), area);
+
+        assertEquals(Arrays.<Object>asList(lot, wall, tower), elements.getElements());
+    }
+
+    /**
+     * Elements outside the area are ignored
+     */
+    @Test
+    public void testClipping() {
+        MedievalTown town = new MedievalTown("Testtown", new Vector2i(100, 100), 60);
+        SimpleLot lot = new SimpleLot(new Rectangle(120, 100, 8, 8));
+        town.add(lot);
+
+        SectorElements elements = SectorElements.create(Collections.singleton(town), new Rectangle(0, 0, 64, 64));
+
+        assertEquals(0, elements.size());
+        assertTrue(elements.getElements().isEmpty());
+    }
+}
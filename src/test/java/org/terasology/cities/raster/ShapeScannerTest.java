@@ -0,0 +1,129 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.terasology.cities.raster;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.BasicStroke;
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link ShapeScanner}
+ */
+public class ShapeScannerTest {
+
+    private static final Rectangle CLIP = new Rectangle(-60, -60, 120, 120);
+
+    /**
+     * Stroked lines as used for roads
+     */
+    @Test
+    public void testStroke() {
+        BasicStroke stroke = new BasicStroke(7.5f, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER);
+        assertSameAsContains(stroke.createStrokedShape(new Line2D.Double(3.2, 4.7, 40.1, 27.9)));
+    }
+
+    /**
+     * A concave polygon
+     */
+    @Test
+    public void testPolygon() {
+        assertSameAsContains(new Polygon(new int[] {0, 30, 10, 45}, new int[] {0, 5, 40, 33}, 4));
+    }
+
+    /**
+     * A square with a hole
+     */
+    @Test
+    public void testEvenOdd() {
+        Path2D path = new Path2D.Double(Path2D.WIND_EVEN_ODD);
+        path.append(new Rectangle(-20, -20, 30, 30), false);
+        path.append(new Rectangle(-10, -10, 10, 10), false);
+        assertSameAsContains(path);
+    }
+
+    /**
+     * Overlapping squares and an open sub-path that is implicitly closed
+     */
+    @Test
+    public void testNonZero() {
+        Path2D path = new Path2D.Double(Path2D.WIND_NON_ZERO);
+        path.append(new Rectangle(-20, -20, 30, 30), false);
+        path.append(new Rectangle(-10, -10, 10, 10), false);
+        path.moveTo(20, 20);
+        path.lineTo(50, 25);
+        path.lineTo(30, 50);
+        assertSameAsContains(path);
+    }
+
+    /**
+     * Cells that are touched by a stroke or a polygon only partly are covered, too
+     */
+    @Test
+    public void testCovered() {
+        BasicStroke stroke = new BasicStroke(6f, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER);
+        assertSameAsIntersects(stroke.createStrokedShape(new Line2D.Double(10.3, 10.1, 50.7, -40.2)));
+        assertSameAsIntersects(new Polygon(new int[] {0, 30, 10, 45}, new int[] {0, 5, 40, 33}, 4));
+    }
+
+    private static void assertSameAsIntersects(Shape shape) {
+        final boolean[][] covered = new boolean[CLIP.height][CLIP.width];
+
+        new ShapeScanner(shape).scanCovered(CLIP, new ShapeScanner.SpanVisitor() {
+
+            @Override
+            public void span(int z, int x0, int x1) {
+                for (int x = x0; x < x1; x++) {
+                    covered[z - CLIP.y][x - CLIP.x] = true;
+                }
+            }
+        });
+
+        for (int z = CLIP.y; z < CLIP.y + CLIP.height; z++) {
+            for (int x = CLIP.x; x < CLIP.x + CLIP.width; x++) {
+                assertEquals("Mismatch at " + x + "/" + z, shape.intersects(x, z, 1, 1), covered[z - CLIP.y][x - CLIP.x]);
+            }
+        }
+    }
+
+    private static void assertSameAsContains(Shape shape) {
+        final boolean[][] inside = new boolean[CLIP.height][CLIP.width];
+
+        new ShapeScanner(shape).scan(CLIP, new ShapeScanner.SpanVisitor() {
+
+            @Override
+            public void span(int z, int x0, int x1) {
+                for (int x = x0; x < x1; x++) {
+                    inside[z - CLIP.y][x - CLIP.x] = true;
+                }
+            }
+        });
+
+        for (int z = CLIP.y; z < CLIP.y + CLIP.height; z++) {
+            for (int x = CLIP.x; x < CLIP.x + CLIP.width; x++) {
+                assertEquals("Mismatch at " + x + "/" + z, shape.contains(x, z), inside[z - CLIP.y][x - CLIP.x]);
+            }
+        }
+    }
+}